@@ -1,7 +1,7 @@
 import React, { useEffect, useMemo, useState } from 'react'
 import { Button, Modal, ReportCard, FileInput } from '../../ui'
 import { useAppState } from '../state/AppState'
-import { fetchReports, BackendReport, createReport, downloadReportSecured, updateReport, deleteReport, fetchCases, BackendCase, findCaseByReference, createCaseBackend, getReportPermissions, getCasePermissions, getReportFilesWithAccessCodes, countPendingReportRequestsForOwner, downloadAllReportFiles } from '../services/api'
+import { fetchReports, BackendReport, createReport, downloadReportSecured, updateReport, deleteReport, fetchCases, BackendCase, findCaseByReference, createCaseBackend, getReportPermissions, getCasePermissions, getReportFilesWithAccessCodes, countPendingReportRequestsForOwner, downloadAllReportFiles, apiUrl } from '../services/api'
 import { useAuth } from '../state/AuthState'
 import { ReportRequestModal } from '../components/ReportRequestModal'
 import { ReportRequestsManagementModal } from '../components/ReportRequestsManagementModal'
@@ -34,7 +34,7 @@ const mapBackend = (r: BackendReport): Report => ({
 	// Récupérer le caseId depuis le backend (peut être dans caseId, caseReference ou caseCode)
 	caseId: r.caseId || r.caseReference || r.caseCode,
 	createdBy: r.createdBy,
-	ownerLogo: (r as any).ownerLogo,
+	ownerLogo: apiUrl(r.ownerLogoUrl),
 })
 
 type SortKey = 'date_desc' | 'date_asc' | 'title_asc' | 'status'
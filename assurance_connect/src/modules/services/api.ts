@@ -11,7 +11,8 @@ export type BackendReport = {
   caseReference?: string
   caseCode?: string
   createdBy?: string
-  ownerLogo?: string
+  ownerLogoUrl?: string
+  ownerLogoETag?: string
 }
 
 export type BackendCase = {
@@ -57,6 +58,11 @@ export type ReportRequestDto = {
 
 const API_BASE = import.meta.env.VITE_API_BASE_URL || 'http://localhost:8080'
 
+// URL absolue d'une ressource servie par l'API (ex. logo /api/logos/{empreinte})
+export function apiUrl(path?: string): string | undefined {
+  return path ? `${API_BASE}${path}` : undefined
+}
+
 export async function fetchReports(): Promise<BackendReport[]> {
   const res = await fetch(`${API_BASE}/api/reports`)
   if (!res.ok) throw new Error('Failed to load reports')
@@ -1,4 +1,5 @@
 import React, { createContext, useContext, useMemo, useState, useEffect } from 'react'
+import { apiUrl } from '../services/api'
 
 export type UserRole = 'admin' | 'point_focal'
 
@@ -76,7 +77,7 @@ export const AuthStateProvider: React.FC<React.PropsWithChildren> = ({ children
 					status: userData.status,
 					isActive: userData.isActive,
 					insuranceCompany: userData.insuranceCompany,
-					companyLogo: userData.companyLogo,
+					companyLogo: apiUrl(userData.companyLogoUrl),
 					createdAt: userData.createdAt,
 					lastLoginAt: userData.lastLoginAt,
 					lastLogoutAt: userData.lastLogoutAt,
@@ -3,8 +3,17 @@ package com.assurance.domain;
 import jakarta.persistence.*;
 import java.time.Instant;
 
+// Table partitionnée par mois sur atiso (db/migration/V1.5__partition_audit_events.sql, AuditPartitionService) :
+// filtrer sur atISO limite la lecture aux partitions concernées
 @Entity
-@Table(name = "audit_events")
+@Table(name = "audit_events", indexes = {
+    // Statistiques : comptages par type d'événement, éventuellement bornés dans le temps
+    @Index(name = "idx_audit_events_type_at", columnList = "type, atiso"),
+    // Événements d'une entité (ex. téléchargements d'un rapport)
+    @Index(name = "idx_audit_events_entity", columnList = "entity_type, entity_id, type"),
+    // Activité d'une compagnie sur une période
+    @Index(name = "idx_audit_events_company_at", columnList = "company_code, atiso")
+})
 public class AuditEvent {
     public enum EventType {
         ACCESS_REQUEST_CREATED,
@@ -15,6 +24,12 @@ public class AuditEvent {
         CASE_CREATED
     }
 
+    public enum EntityType {
+        REPORT,
+        CASE,
+        REPORT_REQUEST
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -32,6 +47,17 @@ public class AuditEvent {
     @Column(nullable = false)
     private Instant atISO = Instant.now();
 
+    // Compagnie de l'acteur au moment de l'écriture (null : événement pas encore repris)
+    @Column(name = "company_code", length = 128)
+    private String companyCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", length = 32)
+    private EntityType entityType;
+
+    @Column(name = "entity_id")
+    private Long entityId;
+
     @PrePersist
     public void onCreate() {
         if (atISO == null) atISO = Instant.now();
@@ -51,6 +77,15 @@ public class AuditEvent {
 
     public Instant getAtISO() { return atISO; }
     public void setAtISO(Instant atISO) { this.atISO = atISO; }
+
+    public String getCompanyCode() { return companyCode; }
+    public void setCompanyCode(String companyCode) { this.companyCode = companyCode; }
+
+    public EntityType getEntityType() { return entityType; }
+    public void setEntityType(EntityType entityType) { this.entityType = entityType; }
+
+    public Long getEntityId() { return entityId; }
+    public void setEntityId(Long entityId) { this.entityId = entityId; }
 }
 
 
@@ -0,0 +1,57 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Comptages pré-agrégés des événements d'audit (et des créations de dossiers) par tranche
+ * horaire ou journalière (UTC), type d'événement et acteur. Alimentés par AuditRollupService.
+ */
+@Entity
+@Table(name = "audit_rollups", uniqueConstraints = @UniqueConstraint(
+    name = "uk_audit_rollups_bucket", columnNames = {"granularity", "metric", "bucket_start", "actor"}))
+public class AuditRollup {
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+    // Métrique des lignes de insurance_cases (les autres métriques sont les types d'AuditEvent)
+    public static final String METRIC_CASES = "CASES";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 8)
+    private String granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private Instant bucketStart;
+
+    @Column(nullable = false, length = 64)
+    private String metric;
+
+    @Column(nullable = false, length = 255)
+    private String actor;
+
+    @Column(name = "event_count", nullable = false)
+    private long eventCount;
+
+    public AuditRollup() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getGranularity() { return granularity; }
+    public void setGranularity(String granularity) { this.granularity = granularity; }
+
+    public Instant getBucketStart() { return bucketStart; }
+    public void setBucketStart(Instant bucketStart) { this.bucketStart = bucketStart; }
+
+    public String getMetric() { return metric; }
+    public void setMetric(String metric) { this.metric = metric; }
+
+    public String getActor() { return actor; }
+    public void setActor(String actor) { this.actor = actor; }
+
+    public long getEventCount() { return eventCount; }
+    public void setEventCount(long eventCount) { this.eventCount = eventCount; }
+}
@@ -0,0 +1,58 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Contenu stocké dans le BlobStore, partagé par tous les fichiers (rapports et pièces jointes)
+ * ayant le même contenu. ref_count compte les lignes qui y font référence : le blob n'est
+ * supprimé qu'à la disparition de la dernière.
+ */
+@Entity
+@Table(name = "blob_contents", indexes = @Index(name = "idx_blob_contents_digest", columnList = "content_digest"))
+public class BlobContent {
+    @Id
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    @Column(name = "content_digest", length = 64, nullable = false)
+    private String contentDigest; // SHA-256 (hex) du contenu en clair
+
+    @Column(columnDefinition = "BYTEA")
+    private byte[] iv; // IV du contenu chiffré (partagé par toutes les références)
+
+    @Column(name = "key_id", length = 32)
+    private String keyId;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public BlobContent() {}
+
+    public String getBlobKey() { return blobKey; }
+    public void setBlobKey(String blobKey) { this.blobKey = blobKey; }
+
+    public String getContentDigest() { return contentDigest; }
+    public void setContentDigest(String contentDigest) { this.contentDigest = contentDigest; }
+
+    public byte[] getIv() { return iv; }
+    public void setIv(byte[] iv) { this.iv = iv; }
+
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    public Long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(Long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,87 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Notification diffusée (dossier créé, rapport créé, changement de statut) : une seule ligne
+ * quel que soit le nombre de destinataires. Les destinataires sont déterminés à la lecture
+ * (audience, exclusion de l'auteur) ; l'état lu / corbeille de chacun est porté par
+ * NotificationCursor et BroadcastReceipt.
+ */
+@Entity
+@Table(name = "broadcast_notifications", indexes = @Index(name = "idx_broadcast_notifications_created_at", columnList = "created_at"))
+public class BroadcastNotification {
+    public enum Audience {
+        // Utilisateurs actifs déjà connectés au moins une fois
+        ACTIVE_USERS,
+        // Utilisateurs actifs enregistrés et administrateurs, hors comptes supprimés
+        ACTIVE_REGISTERED_USERS
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 256)
+    private String title;
+
+    @Column(nullable = false, length = 512)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 64)
+    private Notification.NotificationType type;
+
+    @Column(length = 64)
+    private String action;
+
+    @Column(length = 256)
+    private String url;
+
+    @Column(columnDefinition = "TEXT")
+    private String metadata;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Audience audience;
+
+    // Auteur de l'événement, qui ne reçoit pas la notification
+    @Column(name = "excluded_username", length = 128)
+    private String excludedUsername;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public BroadcastNotification() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public Notification.NotificationType getType() { return type; }
+    public void setType(Notification.NotificationType type) { this.type = type; }
+
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getMetadata() { return metadata; }
+    public void setMetadata(String metadata) { this.metadata = metadata; }
+
+    public Audience getAudience() { return audience; }
+    public void setAudience(Audience audience) { this.audience = audience; }
+
+    public String getExcludedUsername() { return excludedUsername; }
+    public void setExcludedUsername(String excludedUsername) { this.excludedUsername = excludedUsername; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
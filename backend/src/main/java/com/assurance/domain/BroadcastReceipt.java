@@ -0,0 +1,52 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Marque individuelle d'un utilisateur sur une notification diffusée (lue, mise à la corbeille
+ * ou restaurée). Seules les diffusions sur lesquelles l'utilisateur a agi en ont une.
+ */
+@Entity
+@Table(name = "broadcast_receipts", uniqueConstraints = @UniqueConstraint(
+    name = "uk_broadcast_receipts_user_broadcast", columnNames = { "user_id", "broadcast_id" }))
+public class BroadcastReceipt {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false, length = 128)
+    private String userId;
+
+    @Column(name = "broadcast_id", nullable = false)
+    private Long broadcastId;
+
+    @Column(name = "read_at")
+    private Instant readAt;
+
+    // null : état donné par le curseur ; true / false : corbeille / restaurée explicitement
+    @Column
+    private Boolean trashed;
+
+    public BroadcastReceipt() {}
+
+    public BroadcastReceipt(String userId, Long broadcastId) {
+        this.userId = userId;
+        this.broadcastId = broadcastId;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public Long getBroadcastId() { return broadcastId; }
+    public void setBroadcastId(Long broadcastId) { this.broadcastId = broadcastId; }
+
+    public Instant getReadAt() { return readAt; }
+    public void setReadAt(Instant readAt) { this.readAt = readAt; }
+
+    public Boolean getTrashed() { return trashed; }
+    public void setTrashed(Boolean trashed) { this.trashed = trashed; }
+}
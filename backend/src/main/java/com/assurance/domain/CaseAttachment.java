@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "case_attachments")
+@Table(name = "case_attachments", indexes = @Index(name = "idx_case_attachments_blob_key", columnList = "blob_key"))
 public class CaseAttachment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,8 +26,15 @@ public class CaseAttachment {
     @Column(columnDefinition = "BYTEA")
     private byte[] iv; // 16 bytes IV pour le chiffrement
 
-    @Column(columnDefinition = "BYTEA")
-    private byte[] cipherText; // Contenu chiffré du fichier
+    @Column(name = "key_id", length = 32)
+    private String keyId; // Clé du trousseau ayant chiffré le contenu (null = clé historique)
+
+    // Le contenu est dans le BlobStore ; l'ancienne colonne cipher_text n'est plus lue que par la migration
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    @Column(name = "content_digest", length = 64)
+    private String contentDigest; // SHA-256 (hex) du contenu en clair
 
     @Column(nullable = false)
     private Instant createdAt = Instant.now();
@@ -84,8 +91,14 @@ public class CaseAttachment {
     public byte[] getIv() { return iv; }
     public void setIv(byte[] iv) { this.iv = iv; }
 
-    public byte[] getCipherText() { return cipherText; }
-    public void setCipherText(byte[] cipherText) { this.cipherText = cipherText; }
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    public String getBlobKey() { return blobKey; }
+    public void setBlobKey(String blobKey) { this.blobKey = blobKey; }
+
+    public String getContentDigest() { return contentDigest; }
+    public void setContentDigest(String contentDigest) { this.contentDigest = contentDigest; }
 
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
@@ -0,0 +1,54 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Logo de compagnie décodé et redimensionné, une ligne par taille standard.
+ * logo_hash est l'empreinte SHA-256 (hex) de l'image d'origine : elle identifie le logo dans
+ * les URL /api/logos/{empreinte}, dont le contenu ne change donc jamais.
+ */
+@Entity
+@Table(name = "company_logos", uniqueConstraints = @UniqueConstraint(
+    name = "uk_company_logos_hash_size", columnNames = { "logo_hash", "size_px" }))
+public class CompanyLogo {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "logo_hash", length = 64, nullable = false)
+    private String logoHash;
+
+    // Côté le plus long en pixels ; 0 pour l'image d'origine (format non redimensionnable)
+    @Column(name = "size_px", nullable = false)
+    private int sizePx;
+
+    @Column(name = "content_type", length = 64, nullable = false)
+    private String contentType;
+
+    @Column(columnDefinition = "BYTEA", nullable = false)
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public CompanyLogo() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getLogoHash() { return logoHash; }
+    public void setLogoHash(String logoHash) { this.logoHash = logoHash; }
+
+    public int getSizePx() { return sizePx; }
+    public void setSizePx(int sizePx) { this.sizePx = sizePx; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -1,5 +1,6 @@
 package com.assurance.domain;
 
+import com.assurance.service.AdminDashboardEntityListener;
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.time.Instant;
@@ -7,7 +8,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "insurance_cases")
+@EntityListeners(AdminDashboardEntityListener.class)
+@Table(name = "insurance_cases", indexes = {
+    @Index(name = "idx_insurance_cases_created_at", columnList = "created_at")
+})
 public class InsuranceCase {
     public enum CaseType { ENQUETE, FRAUDULEUX }
     public enum CaseStatus { SOUS_ENQUETE, FRAUDULEUX, PREUVE_INSUFFISANTE }
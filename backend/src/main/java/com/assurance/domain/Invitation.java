@@ -1,9 +1,11 @@
 package com.assurance.domain;
 
+import com.assurance.service.AdminDashboardEntityListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(AdminDashboardEntityListener.class)
 @Table(name = "invitations")
 public class Invitation {
     
@@ -0,0 +1,44 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Position d'un utilisateur dans le flux des notifications diffusées : toutes les diffusions
+ * d'identifiant inférieur ou égal à lastReadBroadcastId sont lues, celles inférieures ou égales
+ * à trashedBroadcastId sont en corbeille (sauf marque contraire dans BroadcastReceipt)
+ */
+@Entity
+@Table(name = "notification_cursors")
+public class NotificationCursor {
+    @Id
+    @Column(name = "user_id", length = 128)
+    private String userId;
+
+    @Column(name = "last_read_broadcast_id", nullable = false)
+    private long lastReadBroadcastId;
+
+    @Column(name = "trashed_broadcast_id", nullable = false)
+    private long trashedBroadcastId;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now();
+
+    public NotificationCursor() {}
+
+    public NotificationCursor(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public long getLastReadBroadcastId() { return lastReadBroadcastId; }
+    public void setLastReadBroadcastId(long lastReadBroadcastId) { this.lastReadBroadcastId = lastReadBroadcastId; }
+
+    public long getTrashedBroadcastId() { return trashedBroadcastId; }
+    public void setTrashedBroadcastId(long trashedBroadcastId) { this.trashedBroadcastId = trashedBroadcastId; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
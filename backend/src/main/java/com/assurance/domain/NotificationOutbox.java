@@ -0,0 +1,101 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Message à envoyer (email, SMS, notification in-app), écrit dans la transaction du traitement
+ * qui le produit puis envoyé par NotificationOutboxService, hors requête.
+ * PENDING -> PROCESSING (bail jusqu'à nextAttemptAt) -> SENT, ou retour en PENDING avec délai
+ * croissant après un échec, DEAD après le dernier essai.
+ */
+@Entity
+@Table(name = "notification_outbox", indexes = {
+    // Messages dus d'un canal, dans l'ordre d'écriture
+    @Index(name = "idx_notification_outbox_due", columnList = "channel, status, next_attempt_at")
+})
+public class NotificationOutbox {
+    public enum Channel { EMAIL, SMS, IN_APP }
+
+    public enum Status { PENDING, PROCESSING, SENT, DEAD }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Channel channel;
+
+    // Adresse email, numéro de téléphone ou nom d'utilisateur selon le canal
+    @Column(nullable = false, length = 256)
+    private String recipient;
+
+    @Column(length = 512)
+    private String subject;
+
+    // Contenu de l'email / du SMS, ou données de la notification in-app (JSON)
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt = Instant.now();
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    public NotificationOutbox() {}
+
+    public NotificationOutbox(Channel channel, String recipient, String subject, String body) {
+        this.channel = channel;
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Channel getChannel() { return channel; }
+    public void setChannel(Channel channel) { this.channel = channel; }
+
+    public String getRecipient() { return recipient; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getSentAt() { return sentAt; }
+    public void setSentAt(Instant sentAt) { this.sentAt = sentAt; }
+}
@@ -1,10 +1,12 @@
 package com.assurance.domain;
 
+import com.assurance.service.AdminDashboardEntityListener;
 import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "reports")
+@EntityListeners(AdminDashboardEntityListener.class)
+@Table(name = "reports", indexes = @Index(name = "idx_reports_created_at", columnList = "created_at"))
 public class Report {
     public enum Status { DISPONIBLE, EN_ATTENTE, TRAITE }
 
@@ -4,8 +4,10 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "report_files")
+@Table(name = "report_files", indexes = @Index(name = "idx_report_files_blob_key", columnList = "blob_key"))
 public class ReportFile {
+    public enum PreviewStatus { PENDING, READY, UNSUPPORTED, FAILED }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,8 +28,30 @@ public class ReportFile {
     @Column(columnDefinition = "BYTEA")
     private byte[] iv; // 16 bytes IV pour le chiffrement
 
-    @Column(columnDefinition = "BYTEA")
-    private byte[] cipherText; // Contenu chiffré du fichier
+    @Column(name = "key_id", length = 32)
+    private String keyId; // Clé du trousseau ayant chiffré le contenu (null = clé historique)
+
+    // Le contenu est dans le BlobStore ; l'ancienne colonne cipher_text n'est plus lue que par la migration
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    @Column(name = "content_digest", length = 64)
+    private String contentDigest; // SHA-256 (hex) du contenu en clair
+
+    // Aperçu basse résolution généré en arrière-plan (blob dérivé : PNG de la 1re page d'un PDF, JPEG réduit d'une image)
+    @Column(name = "preview_blob_key", length = 64)
+    private String previewBlobKey;
+
+    @Column(name = "preview_content_type", length = 50)
+    private String previewContentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "preview_status", length = 20)
+    private PreviewStatus previewStatus;
+
+    // Échecs de génération de l'aperçu ; un aperçu FAILED est retenté jusqu'à app.preview.max-attempts
+    @Column(name = "preview_attempts")
+    private Integer previewAttempts;
 
     @Column(nullable = false)
     private Instant createdAt = Instant.now();
@@ -84,8 +108,26 @@ public class ReportFile {
     public byte[] getIv() { return iv; }
     public void setIv(byte[] iv) { this.iv = iv; }
 
-    public byte[] getCipherText() { return cipherText; }
-    public void setCipherText(byte[] cipherText) { this.cipherText = cipherText; }
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    public String getBlobKey() { return blobKey; }
+    public void setBlobKey(String blobKey) { this.blobKey = blobKey; }
+
+    public String getContentDigest() { return contentDigest; }
+    public void setContentDigest(String contentDigest) { this.contentDigest = contentDigest; }
+
+    public String getPreviewBlobKey() { return previewBlobKey; }
+    public void setPreviewBlobKey(String previewBlobKey) { this.previewBlobKey = previewBlobKey; }
+
+    public String getPreviewContentType() { return previewContentType; }
+    public void setPreviewContentType(String previewContentType) { this.previewContentType = previewContentType; }
+
+    public PreviewStatus getPreviewStatus() { return previewStatus; }
+    public void setPreviewStatus(PreviewStatus previewStatus) { this.previewStatus = previewStatus; }
+
+    public Integer getPreviewAttempts() { return previewAttempts; }
+    public void setPreviewAttempts(Integer previewAttempts) { this.previewAttempts = previewAttempts; }
 
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
@@ -0,0 +1,81 @@
+package com.assurance.domain;
+
+import java.time.Instant;
+
+/**
+ * Métadonnées d'un fichier de rapport, sans aucune colonne binaire.
+ * Construite directement par les requêtes de liste et de recherche (SELECT new) ;
+ * le contenu est lu séparément depuis le BlobStore.
+ */
+public class ReportFileSummary {
+    private final Long id;
+    private final String fileName;
+    private final String contentType;
+    private final Long sizeBytes;
+    private final String fileType;
+    private final String description;
+    private final String category;
+    private final Boolean isPublic;
+    private final Instant createdAt;
+    private final Instant updatedAt;
+    private final Long reportId;
+
+    // Ordre des paramètres = ordre des colonnes de SUMMARY_SELECT
+    public ReportFileSummary(Long id, String fileName, String contentType, Long sizeBytes, String fileType, String description, String category, Boolean isPublic, Instant createdAt, Instant updatedAt, Long reportId) {
+        this.id = id;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.sizeBytes = sizeBytes;
+        this.fileType = fileType;
+        this.description = description;
+        this.category = category;
+        this.isPublic = isPublic;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.reportId = reportId;
+    }
+
+    public static ReportFileSummary of(ReportFile reportFile) {
+        return new ReportFileSummary(
+                reportFile.getId(),
+                reportFile.getFileName(),
+                reportFile.getContentType(),
+                reportFile.getSizeBytes(),
+                reportFile.getFileType(),
+                reportFile.getDescription(),
+                reportFile.getCategory(),
+                reportFile.getIsPublic(),
+                reportFile.getCreatedAt(),
+                reportFile.getUpdatedAt(),
+                reportFile.getReport().getId());
+    }
+
+    public Long getId() { return id; }
+    public String getFileName() { return fileName; }
+    public String getContentType() { return contentType; }
+    public Long getSizeBytes() { return sizeBytes; }
+    public String getFileType() { return fileType; }
+    public String getDescription() { return description; }
+    public String getCategory() { return category; }
+    public Boolean getIsPublic() { return isPublic; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public Long getReportId() { return reportId; }
+
+    public String getFileExtension() {
+        if (fileName != null && fileName.contains(".")) {
+            return fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
+        }
+        return "";
+    }
+
+    public String getFormattedSize() {
+        if (sizeBytes == null) return "0 B";
+        
+        long bytes = sizeBytes;
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        if (bytes < 1024 * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+        return String.format("%.1f GB", bytes / (1024.0 * 1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,32 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Dernier identifiant de la table source déjà agrégé dans audit_rollups
+ */
+@Entity
+@Table(name = "rollup_watermarks")
+public class RollupWatermark {
+    @Id
+    @Column(length = 64)
+    private String source;
+
+    @Column(name = "last_id", nullable = false)
+    private long lastId;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now();
+
+    public RollupWatermark() {}
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public long getLastId() { return lastId; }
+    public void setLastId(long lastId) { this.lastId = lastId; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,40 @@
+package com.assurance.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Photographie périodique des compteurs de statistiques tenus en mémoire.
+ * last_audit_event_id indique le dernier événement d'audit pris en compte : au démarrage,
+ * seuls les événements postérieurs sont rejoués.
+ */
+@Entity
+@Table(name = "stats_snapshots")
+public class StatsSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "last_audit_event_id", nullable = false)
+    private Long lastAuditEventId;
+
+    @Column(name = "counters_json", columnDefinition = "TEXT", nullable = false)
+    private String countersJson;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public StatsSnapshot() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getLastAuditEventId() { return lastAuditEventId; }
+    public void setLastAuditEventId(Long lastAuditEventId) { this.lastAuditEventId = lastAuditEventId; }
+
+    public String getCountersJson() { return countersJson; }
+    public void setCountersJson(String countersJson) { this.countersJson = countersJson; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -1,11 +1,13 @@
 package com.assurance.domain;
 
+import com.assurance.service.AdminDashboardEntityListener;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 
 @Entity
+@EntityListeners(AdminDashboardEntityListener.class)
 @Table(name = "users")
 public class User {
     
@@ -31,6 +33,10 @@ public class User {
     @Column(columnDefinition = "TEXT")
     private String companyLogo;
     
+    // Empreinte du logo décodé (company_logos) : les réponses ne transportent que son URL
+    @Column(name = "company_logo_hash", length = 64)
+    private String companyLogoHash;
+    
     @Column(nullable = false)
     private String password;
     
@@ -108,6 +114,9 @@ public class User {
     public String getCompanyLogo() { return companyLogo; }
     public void setCompanyLogo(String companyLogo) { this.companyLogo = companyLogo; }
     
+    public String getCompanyLogoHash() { return companyLogoHash; }
+    public void setCompanyLogoHash(String companyLogoHash) { this.companyLogoHash = companyLogoHash; }
+    
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
     
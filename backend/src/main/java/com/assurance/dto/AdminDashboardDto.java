@@ -1,5 +1,6 @@
 package com.assurance.dto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +27,10 @@ public class AdminDashboardDto {
     private List<UserDto> recentlyLoggedIn;
     private List<UserDto> recentlyLoggedOut;
     
+    // Durée de calcul de chaque section (ms) et date de calcul : mis en cache avec le reste
+    private Map<String, Long> sectionTimingsMs;
+    private LocalDateTime generatedAt;
+    
     public AdminDashboardDto() {}
     
     // Getters et Setters
@@ -82,4 +87,10 @@ public class AdminDashboardDto {
     
     public List<UserDto> getRecentlyLoggedOut() { return recentlyLoggedOut; }
     public void setRecentlyLoggedOut(List<UserDto> recentlyLoggedOut) { this.recentlyLoggedOut = recentlyLoggedOut; }
+    
+    public Map<String, Long> getSectionTimingsMs() { return sectionTimingsMs; }
+    public void setSectionTimingsMs(Map<String, Long> sectionTimingsMs) { this.sectionTimingsMs = sectionTimingsMs; }
+    
+    public LocalDateTime getGeneratedAt() { return generatedAt; }
+    public void setGeneratedAt(LocalDateTime generatedAt) { this.generatedAt = generatedAt; }
 }
@@ -1,6 +1,7 @@
 package com.assurance.dto;
 
 import com.assurance.domain.User;
+import com.assurance.service.LogoService;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -11,7 +12,7 @@ public class UserDto {
     private String lastName;
     private LocalDate dateOfBirth;
     private String insuranceCompany;
-    private String companyLogo;
+    private String companyLogoUrl; // /api/logos/{empreinte}, le logo n'est plus transporté
     private String password;
     private String email;
     private User.UserStatus status;
@@ -36,7 +37,7 @@ public class UserDto {
         this.lastName = user.getLastName();
         this.dateOfBirth = user.getDateOfBirth();
         this.insuranceCompany = user.getInsuranceCompany();
-        this.companyLogo = user.getCompanyLogo();
+        this.companyLogoUrl = LogoService.logoUrl(user.getCompanyLogoHash());
         this.password = null; // jamais exposer le mot de passe hashé
         this.email = user.getEmail();
         this.status = user.getStatus();
@@ -65,8 +66,8 @@ public class UserDto {
     public void setDateOfBirth(LocalDate dateOfBirth) { this.dateOfBirth = dateOfBirth; }
     public String getInsuranceCompany() { return insuranceCompany; }
     public void setInsuranceCompany(String insuranceCompany) { this.insuranceCompany = insuranceCompany; }
-    public String getCompanyLogo() { return companyLogo; }
-    public void setCompanyLogo(String companyLogo) { this.companyLogo = companyLogo; }
+    public String getCompanyLogoUrl() { return companyLogoUrl; }
+    public void setCompanyLogoUrl(String companyLogoUrl) { this.companyLogoUrl = companyLogoUrl; }
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
     public String getEmail() { return email; }
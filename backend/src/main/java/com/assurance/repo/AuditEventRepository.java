@@ -1,8 +1,50 @@
 package com.assurance.repo;
 
 import com.assurance.domain.AuditEvent;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
 
 public interface AuditEventRepository extends JpaRepository<AuditEvent, Long> {
-}
 
+    long countByType(AuditEvent.EventType type);
+
+    // [company_code, nombre] : compagnie enregistrée avec l'événement, sans résolution des acteurs
+    @Query("SELECT e.companyCode, COUNT(e) FROM AuditEvent e WHERE e.type = :type GROUP BY e.companyCode")
+    List<Object[]> countByTypeGroupByCompanyCode(@Param("type") AuditEvent.EventType type);
+
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM AuditEvent e")
+    long findMaxId();
+
+    // [type, actor, nombre] des événements d'identifiant compris dans ]afterId, upToId]
+    @Query("SELECT e.type, e.actor, COUNT(e) FROM AuditEvent e WHERE e.id > :afterId AND e.id <= :upToId GROUP BY e.type, e.actor")
+    List<Object[]> countByTypeAndActorBetweenIds(@Param("afterId") long afterId, @Param("upToId") long upToId);
+
+    List<AuditEvent> findTop5ByTypeOrderByAtISODesc(AuditEvent.EventType type);
+
+    // Fin du prochain lot à agréger : au plus batchSize identifiants après afterId,
+    // en s'arrêtant avant le premier événement postérieur à before (transactions peut-être encore en cours)
+    @Query(value = "SELECT COALESCE(MIN(CASE WHEN t.atiso >= :before THEN t.id END) - 1, MAX(t.id), :afterId) "
+            + "FROM (SELECT id, atiso FROM audit_events WHERE id > :afterId ORDER BY id LIMIT :batchSize) t", nativeQuery = true)
+    long findBatchEnd(@Param("afterId") long afterId, @Param("batchSize") int batchSize, @Param("before") Instant before);
+
+    // [date, acteur] des événements pas encore agrégés (identifiant au-delà du filigrane)
+    @Query("SELECT e.atISO, e.actor FROM AuditEvent e WHERE e.id > :afterId AND e.type = :type AND e.atISO >= :from AND e.atISO < :to")
+    List<Object[]> findNotRolledUp(@Param("afterId") long afterId, @Param("type") AuditEvent.EventType type,
+                                   @Param("from") Instant from, @Param("to") Instant to);
+
+    // Reprise des événements antérieurs aux colonnes company_code / entity_type / entity_id
+    List<AuditEvent> findByCompanyCodeIsNullAndIdGreaterThanOrderByIdAsc(Long afterId, Pageable page);
+
+    long countByEntityTypeAndEntityIdAndType(AuditEvent.EntityType entityType, Long entityId, AuditEvent.EventType type);
+
+    // [type, nombre] : parcours de l'index (company_code, atiso)
+    @Query("SELECT e.type, COUNT(e) FROM AuditEvent e WHERE e.companyCode = :companyCode "
+            + "AND e.atISO >= :from AND e.atISO < :to GROUP BY e.type")
+    List<Object[]> countByTypeForCompany(@Param("companyCode") String companyCode,
+                                         @Param("from") Instant from, @Param("to") Instant to);
+}
@@ -0,0 +1,46 @@
+package com.assurance.repo;
+
+import com.assurance.domain.AuditRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface AuditRollupRepository extends JpaRepository<AuditRollup, Long> {
+
+    // Agrège les événements d'identifiant compris dans ]fromId, toId] (unit = 'hour' ou 'day', tranches UTC)
+    @Modifying
+    @Query(value = "INSERT INTO audit_rollups (granularity, bucket_start, metric, actor, event_count) "
+            + "SELECT :granularity, date_trunc(:unit, e.atiso, 'UTC'), e.type, e.actor, COUNT(*) "
+            + "FROM audit_events e WHERE e.id > :fromId AND e.id <= :toId GROUP BY 2, 3, 4 "
+            + "ON CONFLICT (granularity, metric, bucket_start, actor) "
+            + "DO UPDATE SET event_count = audit_rollups.event_count + EXCLUDED.event_count", nativeQuery = true)
+    int rollupAuditEvents(@Param("granularity") String granularity, @Param("unit") String unit,
+                          @Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Modifying
+    @Query(value = "INSERT INTO audit_rollups (granularity, bucket_start, metric, actor, event_count) "
+            + "SELECT :granularity, date_trunc(:unit, c.created_at, 'UTC'), '" + AuditRollup.METRIC_CASES + "', c.created_by, COUNT(*) "
+            + "FROM insurance_cases c WHERE c.id > :fromId AND c.id <= :toId GROUP BY 2, 3, 4 "
+            + "ON CONFLICT (granularity, metric, bucket_start, actor) "
+            + "DO UPDATE SET event_count = audit_rollups.event_count + EXCLUDED.event_count", nativeQuery = true)
+    int rollupCases(@Param("granularity") String granularity, @Param("unit") String unit,
+                    @Param("fromId") long fromId, @Param("toId") long toId);
+
+    // [acteur, nombre] sur les tranches commençant dans [from, to)
+    @Query("SELECT r.actor, SUM(r.eventCount) FROM AuditRollup r WHERE r.granularity = :granularity "
+            + "AND r.metric = :metric AND r.bucketStart >= :from AND r.bucketStart < :to GROUP BY r.actor")
+    List<Object[]> sumByActor(@Param("granularity") String granularity, @Param("metric") String metric,
+                              @Param("from") Instant from, @Param("to") Instant to);
+
+    // [début de tranche, acteur, nombre]
+    @Query("SELECT r.bucketStart, r.actor, r.eventCount FROM AuditRollup r WHERE r.granularity = :granularity "
+            + "AND r.metric = :metric AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<Object[]> findBuckets(@Param("granularity") String granularity, @Param("metric") String metric,
+                               @Param("from") Instant from, @Param("to") Instant to);
+}
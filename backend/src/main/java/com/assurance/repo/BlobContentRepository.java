@@ -0,0 +1,60 @@
+package com.assurance.repo;
+
+import com.assurance.domain.BlobContent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BlobContentRepository extends JpaRepository<BlobContent, String> {
+    
+    // Prendre une référence : crée la ligne ou incrémente le compteur (atomique, verrouille la ligne).
+    // Une ligne sentinelle (insertIfAbsent) reçoit au passage l'empreinte et la taille du contenu.
+    @Modifying
+    @Query(value = "INSERT INTO blob_contents (blob_key, content_digest, iv, key_id, size_bytes, ref_count, created_at) "
+            + "VALUES (:blobKey, :digest, :iv, :keyId, :sizeBytes, 1, now()) "
+            + "ON CONFLICT (blob_key) DO UPDATE SET ref_count = blob_contents.ref_count + 1, "
+            + "content_digest = CASE WHEN blob_contents.content_digest = '' THEN EXCLUDED.content_digest ELSE blob_contents.content_digest END, "
+            + "size_bytes = COALESCE(blob_contents.size_bytes, EXCLUDED.size_bytes)", nativeQuery = true)
+    int acquire(@Param("blobKey") String blobKey, @Param("digest") String digest, @Param("iv") byte[] iv,
+                @Param("keyId") String keyId, @Param("sizeBytes") Long sizeBytes);
+    
+    // Rendre une référence
+    @Modifying
+    @Query(value = "UPDATE blob_contents SET ref_count = ref_count - 1 WHERE blob_key = :blobKey AND ref_count > 0", nativeQuery = true)
+    int release(@Param("blobKey") String blobKey);
+    
+    // Ligne sentinelle à zéro référence : permet de verrouiller une clé encore inconnue de la table
+    @Modifying
+    @Query(value = "INSERT INTO blob_contents (blob_key, content_digest, ref_count, created_at) "
+            + "VALUES (:blobKey, '', 0, now()) ON CONFLICT (blob_key) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("blobKey") String blobKey);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT bc FROM BlobContent bc WHERE bc.blobKey = :blobKey")
+    Optional<BlobContent> lockByBlobKey(@Param("blobKey") String blobKey);
+    
+    // Contenu chiffré déjà stocké avec la même empreinte en clair (réutilisable tel quel)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<BlobContent> findFirstByContentDigestAndKeyIdAndRefCountGreaterThan(String contentDigest, String keyId, int refCount);
+    
+    // Recalcul des compteurs à partir des fichiers existants (y compris ceux enregistrés avant la table).
+    // Un compteur sous-estimé par un upload concurrent reste sûr : la suppression revérifie les fichiers.
+    @Modifying
+    @Query(value = "INSERT INTO blob_contents (blob_key, content_digest, iv, key_id, size_bytes, ref_count, created_at) "
+            + "SELECT blob_key, MAX(COALESCE(content_digest, '')), (ARRAY_AGG(iv))[1], MAX(key_id), MAX(size_bytes), COUNT(*), now() FROM ("
+            + "  SELECT blob_key, content_digest, iv, key_id, size_bytes FROM report_files WHERE blob_key IS NOT NULL"
+            + "  UNION ALL"
+            + "  SELECT blob_key, content_digest, iv, key_id, size_bytes FROM case_attachments WHERE blob_key IS NOT NULL"
+            + "  UNION ALL"
+            + "  SELECT preview_blob_key, preview_blob_key, NULL::bytea, NULL::varchar, NULL::bigint FROM report_files WHERE preview_blob_key IS NOT NULL"
+            + ") refs GROUP BY blob_key "
+            + "ON CONFLICT (blob_key) DO UPDATE SET ref_count = EXCLUDED.ref_count", nativeQuery = true)
+    int recountReferences();
+}
@@ -0,0 +1,46 @@
+package com.assurance.repo;
+
+import com.assurance.domain.BroadcastNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BroadcastNotificationRepository extends JpaRepository<BroadcastNotification, Long> {
+    
+    /**
+     * Diffusions destinées à l'utilisateur depuis since, plus récentes d'abord
+     */
+    @Query("SELECT b FROM BroadcastNotification b WHERE b.createdAt >= :since AND b.audience IN :audiences "
+            + "AND (b.excludedUsername IS NULL OR b.excludedUsername <> :userId) ORDER BY b.createdAt DESC, b.id DESC")
+    List<BroadcastNotification> findVisible(@Param("userId") String userId, @Param("since") Instant since,
+                                            @Param("audiences") Collection<BroadcastNotification.Audience> audiences);
+    
+    /**
+     * Diffusions non lues et hors corbeille (curseur puis marques individuelles)
+     */
+    @Query("SELECT COUNT(b) FROM BroadcastNotification b WHERE b.createdAt >= :since AND b.audience IN :audiences "
+            + "AND (b.excludedUsername IS NULL OR b.excludedUsername <> :userId) AND b.id > :lastReadId "
+            + "AND NOT EXISTS (SELECT r FROM BroadcastReceipt r WHERE r.userId = :userId AND r.broadcastId = b.id "
+            + "AND (r.readAt IS NOT NULL OR r.trashed = true)) "
+            + "AND (b.id > :trashedId OR EXISTS (SELECT r FROM BroadcastReceipt r WHERE r.userId = :userId "
+            + "AND r.broadcastId = b.id AND r.trashed = false))")
+    long countUnread(@Param("userId") String userId, @Param("since") Instant since,
+                     @Param("audiences") Collection<BroadcastNotification.Audience> audiences,
+                     @Param("lastReadId") long lastReadId, @Param("trashedId") long trashedId);
+    
+    @Query("SELECT COALESCE(MAX(b.id), 0) FROM BroadcastNotification b")
+    long findMaxId();
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BroadcastNotification b WHERE b.createdAt < :cutoffDate")
+    int deleteOlderThan(@Param("cutoffDate") Instant cutoffDate);
+}
@@ -0,0 +1,37 @@
+package com.assurance.repo;
+
+import com.assurance.domain.BroadcastReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BroadcastReceiptRepository extends JpaRepository<BroadcastReceipt, Long> {
+    
+    Optional<BroadcastReceipt> findByUserIdAndBroadcastId(String userId, Long broadcastId);
+    
+    List<BroadcastReceipt> findByUserIdAndBroadcastIdGreaterThanEqual(String userId, Long broadcastId);
+    
+    // Marques de lecture rendues inutiles par l'avancée du curseur
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BroadcastReceipt r WHERE r.userId = :userId AND r.broadcastId <= :broadcastId AND r.trashed IS NULL")
+    int deleteReadUpTo(@Param("userId") String userId, @Param("broadcastId") Long broadcastId);
+    
+    // Corbeille globale : les restaurations antérieures ne s'appliquent plus
+    @Modifying
+    @Transactional
+    @Query("UPDATE BroadcastReceipt r SET r.trashed = NULL WHERE r.userId = :userId AND r.broadcastId <= :broadcastId")
+    int resetTrashUpTo(@Param("userId") String userId, @Param("broadcastId") Long broadcastId);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BroadcastReceipt r WHERE NOT EXISTS (SELECT b FROM BroadcastNotification b WHERE b.id = r.broadcastId)")
+    int deleteOrphans();
+}
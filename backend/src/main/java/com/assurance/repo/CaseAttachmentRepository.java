@@ -1,32 +1,51 @@
 package com.assurance.repo;
 
 import com.assurance.domain.CaseAttachment;
+import com.assurance.domain.CaseAttachmentSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CaseAttachmentRepository extends JpaRepository<CaseAttachment, Long> {
     
-    // Trouver toutes les pièces jointes d'un dossier
+    // Colonnes de métadonnées uniquement : les listes et recherches ne chargent jamais de contenu binaire
+    String SUMMARY_SELECT = "SELECT new com.assurance.domain.CaseAttachmentSummary(ca.id, ca.fileName, ca.contentType, "
+            + "ca.sizeBytes, ca.fileType, ca.description, ca.category, ca.isPublic, "
+            + "ca.createdAt, ca.updatedAt, ca.insuranceCase.id) FROM CaseAttachment ca ";
+    
+    // Trouver toutes les pièces jointes d'un dossier (entités complètes, pour les traitements internes)
     List<CaseAttachment> findByInsuranceCaseIdOrderByCreatedAtDesc(Long caseId);
     
+    // Lister les pièces jointes d'un dossier (métadonnées)
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId ORDER BY ca.createdAt DESC")
+    List<CaseAttachmentSummary> findSummariesByCaseId(@Param("caseId") Long caseId);
+    
     // Trouver les pièces jointes par catégorie
-    List<CaseAttachment> findByInsuranceCaseIdAndCategoryOrderByCreatedAtDesc(Long caseId, String category);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND ca.category = :category ORDER BY ca.createdAt DESC")
+    List<CaseAttachmentSummary> findByInsuranceCaseIdAndCategoryOrderByCreatedAtDesc(@Param("caseId") Long caseId, @Param("category") String category);
     
     // Trouver les pièces jointes par type de fichier
-    List<CaseAttachment> findByInsuranceCaseIdAndFileTypeOrderByCreatedAtDesc(Long caseId, String fileType);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND ca.fileType = :fileType ORDER BY ca.createdAt DESC")
+    List<CaseAttachmentSummary> findByInsuranceCaseIdAndFileTypeOrderByCreatedAtDesc(@Param("caseId") Long caseId, @Param("fileType") String fileType);
     
     // Trouver les pièces jointes publiques d'un dossier
-    List<CaseAttachment> findByInsuranceCaseIdAndIsPublicTrueOrderByCreatedAtDesc(Long caseId);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND ca.isPublic = true ORDER BY ca.createdAt DESC")
+    List<CaseAttachmentSummary> findByInsuranceCaseIdAndIsPublicTrueOrderByCreatedAtDesc(@Param("caseId") Long caseId);
     
     // Recherche par nom de fichier (insensible à la casse)
-    @Query("SELECT ca FROM CaseAttachment ca WHERE ca.insuranceCase.id = :caseId AND LOWER(ca.fileName) LIKE LOWER(CONCAT('%', :fileName, '%'))")
-    List<CaseAttachment> findByCaseIdAndFileNameContainingIgnoreCase(@Param("caseId") Long caseId, @Param("fileName") String fileName);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND LOWER(ca.fileName) LIKE LOWER(CONCAT('%', :fileName, '%'))")
+    List<CaseAttachmentSummary> findByCaseIdAndFileNameContainingIgnoreCase(@Param("caseId") Long caseId, @Param("fileName") String fileName);
+    
+    // Trouver une pièce jointe par son ID en vérifiant qu'elle appartient bien au dossier (une seule requête)
+    Optional<CaseAttachment> findByIdAndInsuranceCaseId(Long id, Long caseId);
     
     // Trouver une pièce jointe par son nom exact dans un dossier
     Optional<CaseAttachment> findByInsuranceCaseIdAndFileName(Long caseId, String fileName);
@@ -35,22 +54,45 @@ public interface CaseAttachmentRepository extends JpaRepository<CaseAttachment,
     long countByInsuranceCaseId(Long caseId);
     
     // Trouver les pièces jointes par extension
-    @Query("SELECT ca FROM CaseAttachment ca WHERE ca.insuranceCase.id = :caseId AND ca.fileName LIKE CONCAT('%.', :extension)")
-    List<CaseAttachment> findByCaseIdAndFileExtension(@Param("caseId") Long caseId, @Param("extension") String extension);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND ca.fileName LIKE CONCAT('%.', :extension)")
+    List<CaseAttachmentSummary> findByCaseIdAndFileExtension(@Param("caseId") Long caseId, @Param("extension") String extension);
     
     // Trouver les pièces jointes récentes (derniers 30 jours)
-    @Query("SELECT ca FROM CaseAttachment ca WHERE ca.insuranceCase.id = :caseId AND ca.createdAt >= :thirtyDaysAgo")
-    List<CaseAttachment> findRecentAttachmentsByCaseId(@Param("caseId") Long caseId, @Param("thirtyDaysAgo") java.time.LocalDateTime thirtyDaysAgo);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND ca.createdAt >= :thirtyDaysAgo ORDER BY ca.createdAt DESC")
+    List<CaseAttachmentSummary> findRecentAttachmentsByCaseId(@Param("caseId") Long caseId, @Param("thirtyDaysAgo") Instant thirtyDaysAgo);
     
     // Trouver les pièces jointes par taille (plus grandes que)
-    @Query("SELECT ca FROM CaseAttachment ca WHERE ca.insuranceCase.id = :caseId AND ca.sizeBytes > :minSize ORDER BY ca.sizeBytes DESC")
-    List<CaseAttachment> findByCaseIdAndSizeGreaterThan(@Param("caseId") Long caseId, @Param("minSize") Long minSize);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND ca.sizeBytes > :minSize ORDER BY ca.sizeBytes DESC")
+    List<CaseAttachmentSummary> findByCaseIdAndSizeGreaterThan(@Param("caseId") Long caseId, @Param("minSize") Long minSize);
     
     // Trouver les pièces jointes par description
-    @Query("SELECT ca FROM CaseAttachment ca WHERE ca.insuranceCase.id = :caseId AND LOWER(ca.description) LIKE LOWER(CONCAT('%', :description, '%'))")
-    List<CaseAttachment> findByCaseIdAndDescriptionContainingIgnoreCase(@Param("caseId") Long caseId, @Param("description") String description);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND LOWER(ca.description) LIKE LOWER(CONCAT('%', :description, '%'))")
+    List<CaseAttachmentSummary> findByCaseIdAndDescriptionContainingIgnoreCase(@Param("caseId") Long caseId, @Param("description") String description);
     
     // Trouver les pièces jointes par type de contenu
-    @Query("SELECT ca FROM CaseAttachment ca WHERE ca.insuranceCase.id = :caseId AND ca.contentType LIKE CONCAT('%', :contentType, '%')")
-    List<CaseAttachment> findByCaseIdAndContentTypeContaining(@Param("caseId") Long caseId, @Param("contentType") String contentType);
+    @Query(SUMMARY_SELECT + "WHERE ca.insuranceCase.id = :caseId AND ca.contentType LIKE CONCAT('%', :contentType, '%')")
+    List<CaseAttachmentSummary> findByCaseIdAndContentTypeContaining(@Param("caseId") Long caseId, @Param("contentType") String contentType);
+    
+    // Nombre de lignes référençant un blob (un blob partagé n'est supprimé qu'à la dernière référence)
+    long countByBlobKey(String blobKey);
+    
+    @Query("SELECT ca.blobKey FROM CaseAttachment ca WHERE ca.id = :id")
+    String findBlobKeyById(@Param("id") Long id);
+    
+    // ===== MIGRATION DE L'ANCIENNE COLONNE BYTEA VERS LE BLOBSTORE =====
+    
+    @Query(value = "SELECT COUNT(*) FROM information_schema.columns WHERE table_name = 'case_attachments' AND column_name = 'cipher_text'", nativeQuery = true)
+    long countLegacyContentColumn();
+    
+    @Query(value = "SELECT id FROM case_attachments WHERE blob_key IS NULL AND cipher_text IS NOT NULL ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsPendingBlobMigration(@Param("limit") int limit);
+    
+    @Query(value = "SELECT cipher_text FROM case_attachments WHERE id = :id", nativeQuery = true)
+    byte[] findLegacyContent(@Param("id") Long id);
+    
+    // Ne bascule la ligne que si elle n'a pas déjà été migrée entre-temps
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE case_attachments SET blob_key = :blobKey, content_digest = :digest, cipher_text = NULL WHERE id = :id AND blob_key IS NULL", nativeQuery = true)
+    int completeBlobMigration(@Param("id") Long id, @Param("blobKey") String blobKey, @Param("digest") String digest);
 }
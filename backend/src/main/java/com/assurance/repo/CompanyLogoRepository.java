@@ -0,0 +1,18 @@
+package com.assurance.repo;
+
+import com.assurance.domain.CompanyLogo;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CompanyLogoRepository extends JpaRepository<CompanyLogo, Long> {
+    
+    Optional<CompanyLogo> findByLogoHashAndSizePx(String logoHash, int sizePx);
+    
+    List<CompanyLogo> findByLogoHash(String logoHash);
+    
+    boolean existsByLogoHash(String logoHash);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,11 +18,23 @@ public interface InsuranceCaseRepository extends JpaRepository<InsuranceCase, Lo
     Optional<InsuranceCase> findByReference(String reference);
     List<InsuranceCase> findByCreatedBy(String createdBy);
     
+    @Query("SELECT c.id FROM InsuranceCase c WHERE c.reference = :reference")
+    Optional<Long> findIdByReference(@Param("reference") String reference);
+    
     @Query("SELECT c.status, COUNT(c) FROM InsuranceCase c GROUP BY c.status")
     List<Object[]> countCasesByStatus();
     
     @Query("SELECT c.createdBy, COUNT(c) FROM InsuranceCase c GROUP BY c.createdBy")
     List<Object[]> countCasesByCompany();
+
+    // Fin du prochain lot à agréger (voir AuditEventRepository.findBatchEnd)
+    @Query(value = "SELECT COALESCE(MIN(CASE WHEN t.created_at >= :before THEN t.id END) - 1, MAX(t.id), :afterId) "
+            + "FROM (SELECT id, created_at FROM insurance_cases WHERE id > :afterId ORDER BY id LIMIT :batchSize) t", nativeQuery = true)
+    long findBatchEnd(@Param("afterId") long afterId, @Param("batchSize") int batchSize, @Param("before") Instant before);
+
+    // [date, créateur] des dossiers pas encore agrégés
+    @Query("SELECT c.createdAt, c.createdBy FROM InsuranceCase c WHERE c.id > :afterId AND c.createdAt >= :from AND c.createdAt < :to")
+    List<Object[]> findNotRolledUp(@Param("afterId") long afterId, @Param("from") Instant from, @Param("to") Instant to);
 }
 
 
@@ -0,0 +1,9 @@
+package com.assurance.repo;
+
+import com.assurance.domain.NotificationCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NotificationCursorRepository extends JpaRepository<NotificationCursor, String> {
+}
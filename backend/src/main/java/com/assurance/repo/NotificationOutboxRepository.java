@@ -0,0 +1,34 @@
+package com.assurance.repo;
+
+import com.assurance.domain.NotificationOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+    
+    // Messages dus du canal (en attente, ou bail expiré) ; les lignes prises par une autre instance sont sautées
+    @Query(value = "SELECT id FROM notification_outbox WHERE channel = :channel AND status IN ('PENDING', 'PROCESSING') "
+            + "AND next_attempt_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDue(@Param("channel") String channel, @Param("now") Instant now, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("UPDATE NotificationOutbox o SET o.status = com.assurance.domain.NotificationOutbox.Status.PROCESSING, "
+            + "o.nextAttemptAt = :leaseUntil WHERE o.id IN :ids")
+    int markProcessing(@Param("ids") Collection<Long> ids, @Param("leaseUntil") Instant leaseUntil);
+    
+    long countByStatus(NotificationOutbox.Status status);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM NotificationOutbox o WHERE o.status = com.assurance.domain.NotificationOutbox.Status.SENT AND o.sentAt < :before")
+    int deleteSentBefore(@Param("before") Instant before);
+}
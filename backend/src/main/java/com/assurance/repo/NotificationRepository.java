@@ -2,9 +2,11 @@ package com.assurance.repo;
 
 import com.assurance.domain.Notification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -44,6 +46,16 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     /**
      * Supprime les anciennes notifications (plus de 30 jours)
      */
+    @Modifying
+    @Transactional
     @Query("DELETE FROM Notification n WHERE n.createdAt < :cutoffDate")
     void deleteOldNotifications(@Param("cutoffDate") java.time.Instant cutoffDate);
+    
+    /**
+     * Marque toutes les notifications personnelles d'un utilisateur comme lues
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Notification n SET n.read = true, n.readAt = :readAt WHERE n.userId = :userId AND n.read = false")
+    int markAllAsRead(@Param("userId") String userId, @Param("readAt") java.time.Instant readAt);
 }
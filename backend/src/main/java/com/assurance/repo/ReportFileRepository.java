@@ -1,29 +1,47 @@
 package com.assurance.repo;
 
 import com.assurance.domain.ReportFile;
+import com.assurance.domain.ReportFileSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReportFileRepository extends JpaRepository<ReportFile, Long> {
     
-    // Trouver tous les fichiers d'un rapport
+    // Colonnes de métadonnées uniquement : les listes et recherches ne chargent jamais de contenu binaire
+    String SUMMARY_SELECT = "SELECT new com.assurance.domain.ReportFileSummary(rf.id, rf.fileName, rf.contentType, "
+            + "rf.sizeBytes, rf.fileType, rf.description, rf.category, rf.isPublic, "
+            + "rf.createdAt, rf.updatedAt, rf.report.id) FROM ReportFile rf ";
+    
+    // Trouver tous les fichiers d'un rapport (entités complètes, pour les traitements internes)
     List<ReportFile> findByReportIdOrderByCreatedAtDesc(Long reportId);
     
+    // Lister les fichiers d'un rapport (métadonnées)
+    @Query(SUMMARY_SELECT + "WHERE rf.report.id = :reportId ORDER BY rf.createdAt DESC")
+    List<ReportFileSummary> findSummariesByReportId(@Param("reportId") Long reportId);
+    
     // Trouver les fichiers par type
-    List<ReportFile> findByReportIdAndFileTypeOrderByCreatedAtDesc(Long reportId, String fileType);
+    @Query(SUMMARY_SELECT + "WHERE rf.report.id = :reportId AND rf.fileType = :fileType ORDER BY rf.createdAt DESC")
+    List<ReportFileSummary> findByReportIdAndFileTypeOrderByCreatedAtDesc(@Param("reportId") Long reportId, @Param("fileType") String fileType);
     
     // Trouver les fichiers publics d'un rapport
-    List<ReportFile> findByReportIdAndIsPublicTrueOrderByCreatedAtDesc(Long reportId);
+    @Query(SUMMARY_SELECT + "WHERE rf.report.id = :reportId AND rf.isPublic = true ORDER BY rf.createdAt DESC")
+    List<ReportFileSummary> findByReportIdAndIsPublicTrueOrderByCreatedAtDesc(@Param("reportId") Long reportId);
     
     // Recherche par nom de fichier (insensible à la casse)
-    @Query("SELECT rf FROM ReportFile rf WHERE rf.report.id = :reportId AND LOWER(rf.fileName) LIKE LOWER(CONCAT('%', :fileName, '%'))")
-    List<ReportFile> findByReportIdAndFileNameContainingIgnoreCase(@Param("reportId") Long reportId, @Param("fileName") String fileName);
+    @Query(SUMMARY_SELECT + "WHERE rf.report.id = :reportId AND LOWER(rf.fileName) LIKE LOWER(CONCAT('%', :fileName, '%'))")
+    List<ReportFileSummary> findByReportIdAndFileNameContainingIgnoreCase(@Param("reportId") Long reportId, @Param("fileName") String fileName);
+    
+    // Trouver un fichier par son ID en vérifiant qu'il appartient bien au rapport (une seule requête)
+    Optional<ReportFile> findByIdAndReportId(Long id, Long reportId);
     
     // Trouver un fichier par son nom exact dans un rapport
     Optional<ReportFile> findByReportIdAndFileName(Long reportId, String fileName);
@@ -32,14 +50,63 @@ public interface ReportFileRepository extends JpaRepository<ReportFile, Long> {
     long countByReportId(Long reportId);
     
     // Trouver les fichiers par extension
-    @Query("SELECT rf FROM ReportFile rf WHERE rf.report.id = :reportId AND rf.fileName LIKE CONCAT('%.', :extension)")
-    List<ReportFile> findByReportIdAndFileExtension(@Param("reportId") Long reportId, @Param("extension") String extension);
+    @Query(SUMMARY_SELECT + "WHERE rf.report.id = :reportId AND rf.fileName LIKE CONCAT('%.', :extension)")
+    List<ReportFileSummary> findByReportIdAndFileExtension(@Param("reportId") Long reportId, @Param("extension") String extension);
     
     // Trouver les fichiers récents (derniers 30 jours)
-    @Query("SELECT rf FROM ReportFile rf WHERE rf.report.id = :reportId AND rf.createdAt >= :thirtyDaysAgo")
-    List<ReportFile> findRecentFilesByReportId(@Param("reportId") Long reportId, @Param("thirtyDaysAgo") java.time.LocalDateTime thirtyDaysAgo);
+    @Query(SUMMARY_SELECT + "WHERE rf.report.id = :reportId AND rf.createdAt >= :thirtyDaysAgo ORDER BY rf.createdAt DESC")
+    List<ReportFileSummary> findRecentFilesByReportId(@Param("reportId") Long reportId, @Param("thirtyDaysAgo") Instant thirtyDaysAgo);
     
     // Trouver les fichiers par taille (plus grands que)
-    @Query("SELECT rf FROM ReportFile rf WHERE rf.report.id = :reportId AND rf.sizeBytes > :minSize ORDER BY rf.sizeBytes DESC")
-    List<ReportFile> findByReportIdAndSizeGreaterThan(@Param("reportId") Long reportId, @Param("minSize") Long minSize);
+    @Query(SUMMARY_SELECT + "WHERE rf.report.id = :reportId AND rf.sizeBytes > :minSize ORDER BY rf.sizeBytes DESC")
+    List<ReportFileSummary> findByReportIdAndSizeGreaterThan(@Param("reportId") Long reportId, @Param("minSize") Long minSize);
+    
+    // ===== APERÇUS =====
+    
+    // Fichiers dont l'aperçu reste à générer (uploads récents ou antérieurs au générateur),
+    // puis ceux dont la génération a échoué moins de maxAttempts fois
+    @Query(value = "SELECT id FROM report_files WHERE (preview_status IS NULL OR preview_status = 'PENDING' "
+            + "OR (preview_status = 'FAILED' AND COALESCE(preview_attempts, 0) < :maxAttempts)) AND blob_key IS NOT NULL "
+            + "ORDER BY CASE WHEN preview_status = 'FAILED' THEN 1 ELSE 0 END, id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsPendingPreview(@Param("limit") int limit, @Param("maxAttempts") int maxAttempts);
+    
+    // Aperçus disponibles d'un rapport, fichier principal en premier
+    @Query("SELECT rf FROM ReportFile rf WHERE rf.report.id = :reportId AND rf.previewStatus = com.assurance.domain.ReportFile.PreviewStatus.READY "
+            + "ORDER BY CASE WHEN rf.category = 'main' THEN 0 ELSE 1 END, rf.createdAt DESC")
+    List<ReportFile> findWithPreviewByReportId(@Param("reportId") Long reportId);
+    
+    @Modifying
+    @Query("UPDATE ReportFile rf SET rf.previewBlobKey = :blobKey, rf.previewContentType = :contentType, rf.previewStatus = :status WHERE rf.id = :id")
+    int updatePreview(@Param("id") Long id, @Param("blobKey") String blobKey, @Param("contentType") String contentType,
+                      @Param("status") ReportFile.PreviewStatus status);
+    
+    @Modifying
+    @Query("UPDATE ReportFile rf SET rf.previewStatus = com.assurance.domain.ReportFile.PreviewStatus.FAILED, "
+            + "rf.previewAttempts = COALESCE(rf.previewAttempts, 0) + 1 WHERE rf.id = :id")
+    int recordPreviewFailure(@Param("id") Long id);
+    
+    long countByPreviewBlobKey(String previewBlobKey);
+    
+    // Nombre de lignes référençant un blob (un blob partagé n'est supprimé qu'à la dernière référence)
+    long countByBlobKey(String blobKey);
+    
+    @Query("SELECT rf.blobKey FROM ReportFile rf WHERE rf.id = :id")
+    String findBlobKeyById(@Param("id") Long id);
+    
+    // ===== MIGRATION DE L'ANCIENNE COLONNE BYTEA VERS LE BLOBSTORE =====
+    
+    @Query(value = "SELECT COUNT(*) FROM information_schema.columns WHERE table_name = 'report_files' AND column_name = 'cipher_text'", nativeQuery = true)
+    long countLegacyContentColumn();
+    
+    @Query(value = "SELECT id FROM report_files WHERE blob_key IS NULL AND cipher_text IS NOT NULL ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsPendingBlobMigration(@Param("limit") int limit);
+    
+    @Query(value = "SELECT cipher_text FROM report_files WHERE id = :id", nativeQuery = true)
+    byte[] findLegacyContent(@Param("id") Long id);
+    
+    // Ne bascule la ligne que si elle n'a pas déjà été migrée entre-temps
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE report_files SET blob_key = :blobKey, content_digest = :digest, cipher_text = NULL WHERE id = :id AND blob_key IS NULL", nativeQuery = true)
+    int completeBlobMigration(@Param("id") Long id, @Param("blobKey") String blobKey, @Param("digest") String digest);
 }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -17,6 +18,12 @@ public interface ReportRepository extends JpaRepository<Report, Long> {
     List<Object[]> countReportsByCompany();
     
     List<Report> findByCreatedBy(String createdBy);
+    
+    @Query("SELECT r.createdAt FROM Report r WHERE r.createdAt > :since")
+    List<Instant> findCreatedAtSince(@Param("since") Instant since);
+    
+    @Query("SELECT r.id FROM Report r WHERE r.title = :title")
+    List<Long> findIdsByTitle(@Param("title") String title);
 }
 
 
@@ -0,0 +1,26 @@
+package com.assurance.repo;
+
+import com.assurance.domain.RollupWatermark;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RollupWatermarkRepository extends JpaRepository<RollupWatermark, String> {
+
+    @Modifying
+    @Query(value = "INSERT INTO rollup_watermarks (source, last_id, updated_at) VALUES (:source, 0, now()) "
+            + "ON CONFLICT (source) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("source") String source);
+
+    // Verrou de la ligne : une seule instance agrège une source à la fois
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM RollupWatermark w WHERE w.source = :source")
+    Optional<RollupWatermark> lockBySource(@Param("source") String source);
+}
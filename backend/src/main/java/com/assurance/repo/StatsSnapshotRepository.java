@@ -0,0 +1,23 @@
+package com.assurance.repo;
+
+import com.assurance.domain.StatsSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface StatsSnapshotRepository extends JpaRepository<StatsSnapshot, Long> {
+
+    Optional<StatsSnapshot> findTopByOrderByIdDesc();
+
+    // Seule la dernière photographie est utile au redémarrage
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StatsSnapshot s WHERE s.id < :id")
+    int deleteOlderThan(@Param("id") Long id);
+}
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,6 +39,26 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.lastLoginAt >= :since AND u.lastLogoutAt IS NULL OR u.lastLogoutAt < u.lastLoginAt ORDER BY u.lastLoginAt DESC")
     List<User> findOnlineUsers(@Param("since") LocalDateTime since);
     
+    // Union des trois requêtes précédentes : un seul parcours pour le tableau de bord administrateur
+    @Query("SELECT u FROM User u WHERE u.lastLoginAt >= :since OR u.lastLogoutAt >= :since OR u.lastLogoutAt < u.lastLoginAt")
+    List<User> findLoginActivity(@Param("since") LocalDateTime since);
+    
+    // [username, insuranceCompany, role] : annuaire acteur -> compagnie des statistiques
+    @Query("SELECT u.username, u.insuranceCompany, u.role FROM User u")
+    List<Object[]> findCompanyDirectory();
+    
+    // [username, empreinte du logo] : le logo lui-même n'est pas transféré
+    @Query("SELECT u.username, u.companyLogoHash FROM User u WHERE u.username IN :usernames AND u.companyLogoHash IS NOT NULL")
+    List<Object[]> findLogoHashes(@Param("usernames") Collection<String> usernames);
+    
+    // [isActive, lastLoginAt, status, role, createdAt] : destinataire des notifications diffusées
+    @Query("SELECT u.isActive, u.lastLoginAt, u.status, u.role, u.createdAt FROM User u WHERE u.username = :username")
+    List<Object[]> findNotificationProfile(@Param("username") String username);
+    
+    // Utilisateurs dont le logo n'a pas encore été décodé (antérieurs à la table company_logos)
+    @Query("SELECT u.id FROM User u WHERE u.companyLogo IS NOT NULL AND u.companyLogo <> '' AND u.companyLogoHash IS NULL")
+    List<Long> findIdsWithLogoNotStored();
+    
     @Query("SELECT u.insuranceCompany, COUNT(u) FROM User u GROUP BY u.insuranceCompany")
     List<Object[]> countUsersByCompany();
     
@@ -0,0 +1,113 @@
+package com.assurance.service;
+
+import com.assurance.domain.User;
+import com.assurance.repository.UserRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Résolution de la compagnie d'un acteur (créateur d'un rapport, auteur d'un événement d'audit).
+ *
+ * Les acteurs qui sont des utilisateurs connus prennent leur compagnie réelle (User.insuranceCompany,
+ * « Administrateur » pour les administrateurs). L'annuaire est chargé en une requête et rechargé
+ * à la prochaine résolution après toute modification d'un utilisateur.
+ * Les autres acteurs (« system », anciens noms) passent par la reconnaissance historique par
+ * sous-chaîne, dont le résultat est mémorisé : chaque résolution est une recherche dans une table.
+ */
+@Component
+public class ActorCompanyResolver {
+    public static final String UNKNOWN = "Inconnu";
+    public static final String ADMINISTRATOR = "Administrateur";
+
+    // Motifs historiques, par ordre de priorité (le premier trouvé l'emporte)
+    private static final String[][] LEGACY_PATTERNS = {
+        { "admin", ADMINISTRATOR },
+        { "axa", "AXA" }, { "AXA", "AXA" },
+        { "allianz", "Allianz" }, { "Allianz", "Allianz" },
+        { "generali", "Generali" }, { "Generali", "Generali" },
+        { "groupama", "Groupama" }, { "Groupama", "Groupama" },
+        { "maif", "Maif" }, { "Maif", "Maif" },
+        { "macif", "Macif" }, { "Macif", "Macif" }
+    };
+    // Les acteurs distincts sont peu nombreux ; borne de sécurité contre des valeurs arbitraires
+    private static final int MAX_LEGACY_CACHE = 10_000;
+
+    private final UserRepository userRepository;
+    private final Map<String, String> legacyCache = new ConcurrentHashMap<>();
+    private volatile Map<String, String> directory;
+    private volatile boolean stale = true;
+
+    public ActorCompanyResolver(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Compagnie de l'acteur, « Inconnu » si l'acteur est absent
+     */
+    public String resolve(String actor) {
+        if (actor == null) return UNKNOWN;
+        String company = directory().get(actor);
+        if (company != null) return company;
+
+        company = legacyCache.get(actor);
+        if (company == null) {
+            company = matchLegacy(actor);
+            if (legacyCache.size() < MAX_LEGACY_CACHE) legacyCache.put(actor, company);
+        }
+        return company;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEntityChanged(AdminDashboardChangedEvent event) {
+        if (User.class.getSimpleName().equals(event.getEntityName())) {
+            stale = true;
+        }
+    }
+
+    private Map<String, String> directory() {
+        Map<String, String> current = directory;
+        if (!stale && current != null) return current;
+        synchronized (this) {
+            if (stale || directory == null) {
+                stale = false; // une modification pendant le chargement le redéclenchera
+                try {
+                    directory = loadDirectory();
+                } catch (Exception e) {
+                    stale = true;
+                    System.err.println("Erreur lors du chargement de l'annuaire des compagnies: " + e.getMessage());
+                    if (directory == null) return Map.of();
+                }
+            }
+            return directory;
+        }
+    }
+
+    private Map<String, String> loadDirectory() {
+        List<Object[]> rows = userRepository.findCompanyDirectory();
+        Map<String, String> loaded = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            String username = (String) row[0];
+            String company = (String) row[1];
+            if (username == null) continue;
+            if (row[2] == User.UserRole.ADMIN) {
+                loaded.put(username, ADMINISTRATOR);
+            } else if (company != null && !company.isBlank()) {
+                loaded.put(username, company.trim());
+            }
+        }
+        return loaded;
+    }
+
+    private static String matchLegacy(String actor) {
+        for (String[] pattern : LEGACY_PATTERNS) {
+            if (actor.contains(pattern[0])) return pattern[1];
+        }
+        return actor;
+    }
+}
@@ -0,0 +1,16 @@
+package com.assurance.service;
+
+/**
+ * Publié à chaque écriture d'une entité affichée par le tableau de bord administrateur
+ * (utilisateurs, rapports, dossiers, demandes d'accès, invitations) : le cache est invalidé
+ * après validation de la transaction.
+ */
+public class AdminDashboardChangedEvent {
+    private final String entityName;
+
+    public AdminDashboardChangedEvent(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public String getEntityName() { return entityName; }
+}
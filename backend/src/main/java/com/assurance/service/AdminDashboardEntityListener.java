@@ -0,0 +1,27 @@
+package com.assurance.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener JPA des entités du tableau de bord administrateur (instancié par Spring via Hibernate).
+ * Toute écriture, quel que soit le service qui la fait, invalide le tableau de bord en cache.
+ */
+@Component
+public class AdminDashboardEntityListener {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public AdminDashboardEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        eventPublisher.publishEvent(new AdminDashboardChangedEvent(entity.getClass().getSimpleName()));
+    }
+}
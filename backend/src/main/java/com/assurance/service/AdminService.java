@@ -9,14 +9,37 @@ import com.assurance.dto.ReportDto;
 import com.assurance.dto.UserDto;
 import com.assurance.repo.InsuranceCaseRepository;
 import com.assurance.repo.ReportRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Données du tableau de bord administrateur.
+ *
+ * Les sections indépendantes sont calculées en parallèle sur un pool borné, puis le résultat
+ * est conservé en cache pendant une courte durée ; toute écriture d'une entité affichée
+ * (AdminDashboardEntityListener) l'invalide. La durée de chaque section est exposée dans
+ * le DTO et dans la métrique admin.dashboard.section.
+ */
 @Service
 public class AdminService {
     
@@ -35,41 +58,155 @@ public class AdminService {
     @Autowired
     private InsuranceCaseRepository caseRepository;
     
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final long cacheTtlMs;
+    
+    // Incrémentée à chaque invalidation : un calcul commencé avant n'est pas mis en cache
+    private final AtomicLong generation = new AtomicLong();
+    private volatile CachedDashboard cached;
+    
+    private static final class CachedDashboard {
+        final AdminDashboardDto dashboard;
+        final long generation;
+        final long expiresAt;
+        
+        CachedDashboard(AdminDashboardDto dashboard, long generation, long expiresAt) {
+            this.dashboard = dashboard;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    public AdminService(MeterRegistry meterRegistry,
+                        @Value("${app.admin.dashboard.threads:4}") int threads,
+                        @Value("${app.admin.dashboard.cache-ttl-ms:30000}") long cacheTtlMs) {
+        this.meterRegistry = meterRegistry;
+        this.cacheTtlMs = cacheTtlMs;
+        
+        AtomicInteger threadIndex = new AtomicInteger();
+        // File bornée ; si elle est pleine, la section est calculée par le thread appelant
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(threads * 8),
+            runnable -> {
+                Thread thread = new Thread(runnable, "admin-dashboard-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+    
     /**
      * Récupère les données du tableau de bord administrateur
      */
     public AdminDashboardDto getDashboardData() {
+        CachedDashboard current = cached;
+        if (isFresh(current)) {
+            return current.dashboard;
+        }
+        synchronized (this) {
+            // Un seul calcul à la fois : les appels concurrents réutilisent son résultat
+            current = cached;
+            if (isFresh(current)) {
+                return current.dashboard;
+            }
+            long startGeneration = generation.get();
+            AdminDashboardDto dashboard = loadDashboard();
+            if (generation.get() == startGeneration) {
+                cached = new CachedDashboard(dashboard, startGeneration, System.currentTimeMillis() + cacheTtlMs);
+            }
+            return dashboard;
+        }
+    }
+    
+    private boolean isFresh(CachedDashboard current) {
+        return current != null
+                && current.generation == generation.get()
+                && System.currentTimeMillis() < current.expiresAt;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDashboardDataChanged(AdminDashboardChangedEvent event) {
+        invalidateDashboard();
+    }
+    
+    public void invalidateDashboard() {
+        generation.incrementAndGet();
+    }
+    
+    private AdminDashboardDto loadDashboard() {
         AdminDashboardDto dashboard = new AdminDashboardDto();
+        Map<String, Long> timings = new ConcurrentHashMap<>();
         
-        // Statistiques générales
-        dashboard.setTotalUsers(userService.getTotalUsers());
-        dashboard.setTotalReports(reportRepository.count());
-        dashboard.setTotalCases(caseRepository.count());
-        dashboard.setTotalAccessRequests(reportRequestService.count());
-        dashboard.setPendingAccessRequests(reportRequestService.countPendingRequests());
-        dashboard.setTotalInvitations(invitationService.getTotalInvitations());
-        dashboard.setPendingInvitations(invitationService.getPendingInvitationsCount());
-        
-        // Données récentes
-        dashboard.setRecentUsers(userService.getRecentUsers(10));
-        dashboard.setRecentReports(getRecentReports(10));
-        dashboard.setRecentAccessRequests(getRecentReportRequests(10));
-        dashboard.setRecentInvitations(invitationService.getRecentInvitations(10));
+        CompletableFuture<?>[] sections = {
+            // Statistiques générales, données récentes et répartition par compagnie, par domaine
+            section("users", timings, () -> {
+                dashboard.setTotalUsers(userService.getTotalUsers());
+                dashboard.setRecentUsers(userService.getRecentUsers(10));
+                dashboard.setUsersByCompany(userService.getUsersByCompany());
+            }),
+            section("reports", timings, () -> {
+                dashboard.setTotalReports(reportRepository.count());
+                dashboard.setRecentReports(getRecentReports(10));
+                dashboard.setReportsByCompany(getReportsByCompany());
+            }),
+            section("cases", timings, () -> {
+                dashboard.setTotalCases(caseRepository.count());
+                dashboard.setCasesByStatus(getCasesByStatus());
+                dashboard.setCasesByCompany(getCasesByCompany());
+            }),
+            section("accessRequests", timings, () -> {
+                dashboard.setTotalAccessRequests(reportRequestService.count());
+                dashboard.setPendingAccessRequests(reportRequestService.countPendingRequests());
+                dashboard.setRecentAccessRequests(getRecentReportRequests(10));
+            }),
+            section("invitations", timings, () -> {
+                dashboard.setTotalInvitations(invitationService.getTotalInvitations());
+                dashboard.setPendingInvitations(invitationService.getPendingInvitationsCount());
+                dashboard.setRecentInvitations(invitationService.getRecentInvitations(10));
+            }),
+            // Utilisateurs connectés : en ligne (2 dernières heures), connectés et déconnectés dans les 24h
+            section("sessions", timings, () -> {
+                UserService.LoginActivity activity = userService.getLoginActivity(2, 24);
+                dashboard.setOnlineUsers(activity.online);
+                dashboard.setRecentlyLoggedIn(activity.recentlyLoggedIn);
+                dashboard.setRecentlyLoggedOut(activity.recentlyLoggedOut);
+            })
+        };
         
-        // Statistiques par compagnie
-        dashboard.setReportsByCompany(getReportsByCompany());
-        dashboard.setCasesByStatus(getCasesByStatus());
-        dashboard.setCasesByCompany(getCasesByCompany());
-        dashboard.setUsersByCompany(userService.getUsersByCompany());
-        
-        // Utilisateurs connectés
-        dashboard.setOnlineUsers(userService.getOnlineUsers(2)); // Connectés dans les 2 dernières heures
-        dashboard.setRecentlyLoggedIn(userService.getRecentlyLoggedIn(24)); // Connectés dans les 24h
-        dashboard.setRecentlyLoggedOut(userService.getRecentlyLoggedOut(24)); // Déconnectés dans les 24h
+        try {
+            CompletableFuture.allOf(sections).join();
+        } catch (CompletionException e) {
+            // Même comportement qu'en séquentiel : l'erreur de la section remonte à l'appelant
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
         
+        dashboard.setSectionTimingsMs(new TreeMap<>(timings));
+        dashboard.setGeneratedAt(LocalDateTime.now());
         return dashboard;
     }
     
+    private CompletableFuture<Void> section(String name, Map<String, Long> timings, Runnable loader) {
+        Timer timer = meterRegistry.timer("admin.dashboard.section", "section", name);
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                loader.run();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                timer.record(elapsed, TimeUnit.NANOSECONDS);
+                timings.put(name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }, executor);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
     /**
      * Récupère les rapports récents
      */
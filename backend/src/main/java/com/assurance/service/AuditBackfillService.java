@@ -0,0 +1,103 @@
+package com.assurance.service;
+
+import com.assurance.domain.AuditEvent;
+import com.assurance.repo.AuditEventRepository;
+import com.assurance.repo.InsuranceCaseRepository;
+import com.assurance.repo.ReportRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reprise des événements d'audit écrits avant l'ajout des colonnes company_code, entity_type et entity_id :
+ * la compagnie est déduite de l'acteur, l'entité du message (titre du rapport, référence du dossier).
+ * Traitement par lots en arrière-plan, jusqu'à ce qu'il ne reste plus d'événement sans compagnie.
+ */
+@Service
+public class AuditBackfillService {
+    private static final Pattern REPORT_MESSAGE = Pattern.compile("^Rapport (?:créé|modifié|supprimé): \"(.*)\"$");
+    private static final Pattern AUTO_CASE_MESSAGE = Pattern.compile("^Dossier créé automatiquement: (.+)$");
+    private static final Pattern CASE_MESSAGE = Pattern.compile("^Création dossier \\(.*\\)$");
+
+    private final AuditEventRepository auditEventRepository;
+    private final ReportRepository reportRepository;
+    private final InsuranceCaseRepository caseRepository;
+    private final ActorCompanyResolver companyResolver;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.audit.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.audit.backfill.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean done = false;
+    private long lastId = 0;
+
+    public AuditBackfillService(AuditEventRepository auditEventRepository,
+                                ReportRepository reportRepository,
+                                InsuranceCaseRepository caseRepository,
+                                ActorCompanyResolver companyResolver,
+                                PlatformTransactionManager transactionManager) {
+        this.auditEventRepository = auditEventRepository;
+        this.reportRepository = reportRepository;
+        this.caseRepository = caseRepository;
+        this.companyResolver = companyResolver;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${app.audit.backfill.initial-delay-ms:45000}",
+               fixedDelayString = "${app.audit.backfill.delay-ms:10000}")
+    public void backfillBatch() {
+        if (!enabled || done) return;
+        try {
+            // Dernier identifiant du lot ; lastId n'avance qu'après validation (un lot en échec est repris)
+            Long batchLastId = transactionTemplate.execute(status -> {
+                List<AuditEvent> events = auditEventRepository
+                    .findByCompanyCodeIsNullAndIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+                for (AuditEvent event : events) {
+                    fill(event);
+                }
+                return events.isEmpty() ? null : events.get(events.size() - 1).getId(); // modifications enregistrées à la validation
+            });
+            if (batchLastId == null) {
+                done = true;
+                System.out.println("✅ Reprise des événements d'audit terminée");
+            } else {
+                lastId = batchLastId;
+            }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la reprise des événements d'audit: " + e.getMessage());
+        }
+    }
+
+    private void fill(AuditEvent event) {
+        event.setCompanyCode(companyResolver.resolve(event.getActor()));
+        if (event.getEntityType() != null || event.getMessage() == null) return;
+
+        Matcher report = REPORT_MESSAGE.matcher(event.getMessage());
+        if (report.matches()) {
+            event.setEntityType(AuditEvent.EntityType.REPORT);
+            // Le titre n'est pas unique : l'identifiant n'est repris que s'il est sans ambiguïté
+            List<Long> ids = reportRepository.findIdsByTitle(report.group(1));
+            if (ids.size() == 1) event.setEntityId(ids.get(0));
+            return;
+        }
+        Matcher autoCase = AUTO_CASE_MESSAGE.matcher(event.getMessage());
+        if (autoCase.matches()) {
+            event.setEntityType(AuditEvent.EntityType.CASE);
+            caseRepository.findIdByReference(autoCase.group(1).trim()).ifPresent(event::setEntityId);
+            return;
+        }
+        if (CASE_MESSAGE.matcher(event.getMessage()).matches()) {
+            event.setEntityType(AuditEvent.EntityType.CASE);
+        }
+    }
+}
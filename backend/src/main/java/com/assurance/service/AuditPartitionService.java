@@ -0,0 +1,216 @@
+package com.assurance.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gestion des partitions mensuelles de audit_events (voir db/migration/V1.5__partition_audit_events.sql).
+ *
+ * Une tâche planifiée crée à l'avance les partitions des prochains mois ; les lignes déjà tombées
+ * dans la partition par défaut pour ce mois y sont déplacées avant rattachement.
+ * Si la rétention est activée, les partitions plus anciennes sont exportées en CSV compressé
+ * sur disque local, puis détachées et supprimées.
+ * Sans la migration (table non partitionnée), la tâche ne fait rien.
+ */
+@Service
+public class AuditPartitionService {
+    private static final String PARENT = "audit_events";
+    private static final String DEFAULT_PARTITION = "audit_events_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("^audit_events_(\\d{4})_(\\d{2})$");
+    private static final String COLUMNS = "id, type, message, actor, atiso, company_code, entity_type, entity_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    // Lecture en flux des partitions à archiver (curseur côté serveur, dans une transaction)
+    private final JdbcTemplate exportJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.audit.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${app.audit.retention.enabled:false}")
+    private boolean retentionEnabled;
+
+    @Value("${app.audit.retention.months:24}")
+    private int retentionMonths;
+
+    @Value("${app.audit.retention.archive-dir:./data/audit-archive}")
+    private String archiveDir;
+
+    public AuditPartitionService(JdbcTemplate jdbcTemplate,
+                                 DataSource dataSource,
+                                 PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.exportJdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate.setFetchSize(1000);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${app.audit.partitions.initial-delay-ms:20000}",
+               fixedDelayString = "${app.audit.partitions.delay-ms:21600000}")
+    public void maintainPartitions() {
+        try {
+            if (!isPartitioned()) return;
+            YearMonth current = YearMonth.now(ZoneOffset.UTC);
+            for (int i = 0; i <= monthsAhead; i++) {
+                createPartition(current.plusMonths(i));
+            }
+            if (retentionEnabled && retentionMonths > 0) {
+                archiveOlderThan(current.minusMonths(retentionMonths));
+            }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la maintenance des partitions d'audit: " + e.getMessage());
+        }
+    }
+
+    private boolean isPartitioned() {
+        String kind = jdbcTemplate.queryForObject(
+            "SELECT COALESCE((SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)), '')", String.class, PARENT);
+        return "p".equals(kind);
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    /**
+     * Crée la partition du mois ; les lignes de ce mois présentes dans la partition par défaut y sont déplacées
+     */
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (exists(name)) return;
+
+        String from = bound(month);
+        String to = bound(month.plusMonths(1));
+        transactionTemplate.executeWithoutResult(status -> {
+            // Une seule instance à la fois
+            jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(hashtext('audit_events_partitions'))", Object.class);
+            if (exists(name)) return;
+
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + PARENT + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = 0;
+            if (exists(DEFAULT_PARTITION)) {
+                moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                    + " WHERE atiso >= ?::timestamptz AND atiso < ?::timestamptz RETURNING " + COLUMNS + ") "
+                    + "INSERT INTO " + name + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved", from, to);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ATTACH PARTITION " + name
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            System.out.println("🗂️ Partition d'audit créée: " + name
+                + (moved > 0 ? " (" + moved + " événement(s) repris de la partition par défaut)" : ""));
+        });
+    }
+
+    private void archiveOlderThan(YearMonth firstKept) {
+        for (String name : listMonthlyPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches()) continue;
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(firstKept)) {
+                archivePartition(name);
+            }
+        }
+    }
+
+    private List<String> listMonthlyPartitions() {
+        List<String> names = new ArrayList<>(jdbcTemplate.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname", String.class, PARENT));
+        names.removeIf(name -> !PARTITION_NAME.matcher(name).matches());
+        return names;
+    }
+
+    /**
+     * Exporte la partition en CSV compressé, puis la détache et la supprime si le nombre de lignes n'a pas changé
+     */
+    private void archivePartition(String name) {
+        try {
+            Path dir = Paths.get(archiveDir);
+            Files.createDirectories(dir);
+            Path target = dir.resolve(name + ".csv.gz");
+            Path temp = dir.resolve(name + ".csv.gz.tmp");
+
+            long exported = transactionTemplate.execute(status -> exportPartition(name, temp));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(hashtext('audit_events_partitions'))", Object.class);
+                Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + name, Long.class);
+                if (count == null || count != exported) {
+                    throw new IllegalStateException("la partition " + name + " a changé pendant l'export ("
+                        + exported + " exportés, " + count + " présents)");
+                }
+                jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + name);
+                jdbcTemplate.execute("DROP TABLE " + name);
+            });
+            System.out.println("📦 Partition d'audit archivée: " + name + " (" + exported + " événement(s)) → " + target);
+        } catch (Exception e) {
+            System.err.println("Erreur lors de l'archivage de la partition " + name + ": " + e.getMessage());
+        }
+    }
+
+    private long exportPartition(String name, Path file) {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8))) {
+            out.write(COLUMNS.replace(" ", "") + "\n");
+            long[] rows = {0};
+            exportJdbcTemplate.query("SELECT " + COLUMNS + " FROM " + name + " ORDER BY id", rs -> {
+                try {
+                    out.write(rs.getLong("id") + ","
+                        + csv(rs.getString("type")) + ","
+                        + csv(rs.getString("message")) + ","
+                        + csv(rs.getString("actor")) + ","
+                        + csv(rs.getObject("atiso", OffsetDateTime.class).toInstant().toString()) + ","
+                        + csv(rs.getString("company_code")) + ","
+                        + csv(rs.getString("entity_type")) + ","
+                        + (rs.getObject("entity_id") != null ? rs.getLong("entity_id") : "") + "\n");
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return rows[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("audit_events_%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private static String bound(YearMonth month) {
+        return month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+    }
+}
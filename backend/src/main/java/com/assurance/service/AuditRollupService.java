@@ -0,0 +1,221 @@
+package com.assurance.service;
+
+import com.assurance.domain.AuditEvent;
+import com.assurance.domain.AuditRollup;
+import com.assurance.domain.RollupWatermark;
+import com.assurance.repo.AuditEventRepository;
+import com.assurance.repo.AuditRollupRepository;
+import com.assurance.repo.InsuranceCaseRepository;
+import com.assurance.repo.RollupWatermarkRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Agrégats horaires et journaliers (UTC) des événements d'audit et des créations de dossiers.
+ *
+ * Une tâche planifiée n'agrège que les lignes postérieures au filigrane enregistré pour chaque
+ * source (rollup_watermarks), dans la même transaction que la mise à jour du filigrane.
+ * Les lectures combinent les tranches journalières (jours entiers), les tranches horaires
+ * (début et fin de période) et les quelques lignes pas encore agrégées : le résultat est exact
+ * à l'heure près sans parcourir les tables brutes.
+ */
+@Service
+public class AuditRollupService {
+    private static final String SOURCE_AUDIT_EVENTS = "audit_events";
+    private static final String SOURCE_CASES = "insurance_cases";
+
+    private final AuditRollupRepository auditRollupRepository;
+    private final RollupWatermarkRepository rollupWatermarkRepository;
+    private final AuditEventRepository auditEventRepository;
+    private final InsuranceCaseRepository caseRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Lectures dans un instantané unique : agrégats et filigrane cohérents entre eux
+    private final TransactionTemplate snapshotRead;
+
+    @Value("${app.rollup.batch-size:50000}")
+    private int batchSize;
+
+    @Value("${app.rollup.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    // Les lignes plus récentes attendent le passage suivant (transactions peut-être encore en cours)
+    @Value("${app.rollup.safety-lag-ms:60000}")
+    private long safetyLagMs;
+
+    public AuditRollupService(AuditRollupRepository auditRollupRepository,
+                              RollupWatermarkRepository rollupWatermarkRepository,
+                              AuditEventRepository auditEventRepository,
+                              InsuranceCaseRepository caseRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.auditRollupRepository = auditRollupRepository;
+        this.rollupWatermarkRepository = rollupWatermarkRepository;
+        this.auditEventRepository = auditEventRepository;
+        this.caseRepository = caseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotRead = new TransactionTemplate(transactionManager);
+        this.snapshotRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotRead.setReadOnly(true);
+    }
+
+    @Scheduled(initialDelayString = "${app.rollup.initial-delay-ms:30000}",
+               fixedDelayString = "${app.rollup.delay-ms:60000}")
+    public void rollup() {
+        try {
+            int events = rollupSource(SOURCE_AUDIT_EVENTS);
+            int cases = rollupSource(SOURCE_CASES);
+            if (events + cases > 0) {
+                System.out.println("📈 Agrégats mis à jour: " + events + " lot(s) d'événements, " + cases + " lot(s) de dossiers");
+            }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de l'agrégation des événements d'audit: " + e.getMessage());
+        }
+    }
+
+    // Agrège la source lot par lot jusqu'à rattraper le filigrane ; retourne le nombre de lots traités
+    private int rollupSource(String source) {
+        int batches = 0;
+        while (batches < maxBatchesPerRun && Boolean.TRUE.equals(transactionTemplate.execute(status -> rollupBatch(source)))) {
+            batches++;
+        }
+        return batches;
+    }
+
+    private boolean rollupBatch(String source) {
+        rollupWatermarkRepository.insertIfAbsent(source);
+        RollupWatermark watermark = rollupWatermarkRepository.lockBySource(source).orElseThrow();
+        long fromId = watermark.getLastId();
+        Instant before = Instant.now().minusMillis(safetyLagMs);
+
+        long toId = SOURCE_CASES.equals(source)
+            ? caseRepository.findBatchEnd(fromId, batchSize, before)
+            : auditEventRepository.findBatchEnd(fromId, batchSize, before);
+        if (toId <= fromId) return false;
+
+        for (String granularity : List.of(AuditRollup.HOUR, AuditRollup.DAY)) {
+            String unit = granularity.equals(AuditRollup.HOUR) ? "hour" : "day";
+            if (SOURCE_CASES.equals(source)) {
+                auditRollupRepository.rollupCases(granularity, unit, fromId, toId);
+            } else {
+                auditRollupRepository.rollupAuditEvents(granularity, unit, fromId, toId);
+            }
+        }
+        watermark.setLastId(toId);
+        watermark.setUpdatedAt(Instant.now());
+        rollupWatermarkRepository.save(watermark);
+        return true;
+    }
+
+    /**
+     * Nombre d'événements du type donné dans [from, to) (from arrondi à l'heure)
+     */
+    public long count(AuditEvent.EventType type, Instant from, Instant to) {
+        return sum(countByActor(type, from, to));
+    }
+
+    /**
+     * Nombre de dossiers créés dans [from, to) (from arrondi à l'heure)
+     */
+    public long countCases(Instant from, Instant to) {
+        return sum(countCasesByActor(from, to));
+    }
+
+    public Map<String, Long> countByActor(AuditEvent.EventType type, Instant from, Instant to) {
+        return countByActor(type.name(), from, to);
+    }
+
+    public Map<String, Long> countCasesByActor(Instant from, Instant to) {
+        return countByActor(AuditRollup.METRIC_CASES, from, to);
+    }
+
+    /**
+     * Nombre par acteur et par jour (UTC) dans [from, to), jours triés par ordre chronologique
+     */
+    public SortedMap<LocalDate, Map<String, Long>> dailyTrend(String metric, Instant from, Instant to) {
+        return snapshotRead.execute(status -> readDailyTrend(metric, from, to));
+    }
+
+    private SortedMap<LocalDate, Map<String, Long>> readDailyTrend(String metric, Instant from, Instant to) {
+        Instant start = from.truncatedTo(ChronoUnit.DAYS);
+        SortedMap<LocalDate, Map<String, Long>> trend = new TreeMap<>();
+        for (Object[] row : auditRollupRepository.findBuckets(AuditRollup.DAY, metric, start, to)) {
+            LocalDate day = LocalDate.ofInstant((Instant) row[0], ZoneOffset.UTC);
+            trend.computeIfAbsent(day, d -> new HashMap<>()).merge((String) row[1], ((Number) row[2]).longValue(), Long::sum);
+        }
+        for (Object[] row : findNotRolledUp(metric, start, to)) {
+            LocalDate day = LocalDate.ofInstant((Instant) row[0], ZoneOffset.UTC);
+            trend.computeIfAbsent(day, d -> new HashMap<>()).merge(actorOf(row[1]), 1L, Long::sum);
+        }
+        return trend;
+    }
+
+    /**
+     * Nombre par acteur dans [from, to) : tranches journalières pour les jours entiers,
+     * horaires pour les extrémités, lignes brutes au-delà du filigrane
+     */
+    public Map<String, Long> countByActor(String metric, Instant from, Instant to) {
+        return snapshotRead.execute(status -> readCountByActor(metric, from, to));
+    }
+
+    private Map<String, Long> readCountByActor(String metric, Instant from, Instant to) {
+        Instant start = from.truncatedTo(ChronoUnit.HOURS);
+        Map<String, Long> counts = new HashMap<>();
+        if (!start.isBefore(to)) return counts;
+
+        Instant firstDay = start.truncatedTo(ChronoUnit.DAYS);
+        if (firstDay.isBefore(start)) firstDay = firstDay.plus(Duration.ofDays(1));
+        Instant lastDay = to.truncatedTo(ChronoUnit.DAYS);
+
+        if (firstDay.isBefore(lastDay)) {
+            addBuckets(counts, AuditRollup.HOUR, metric, start, firstDay);
+            addBuckets(counts, AuditRollup.DAY, metric, firstDay, lastDay);
+            addBuckets(counts, AuditRollup.HOUR, metric, lastDay, to);
+        } else {
+            addBuckets(counts, AuditRollup.HOUR, metric, start, to);
+        }
+        for (Object[] row : findNotRolledUp(metric, start, to)) {
+            counts.merge(actorOf(row[1]), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private void addBuckets(Map<String, Long> counts, String granularity, String metric, Instant from, Instant to) {
+        if (!from.isBefore(to)) return;
+        for (Object[] row : auditRollupRepository.sumByActor(granularity, metric, from, to)) {
+            counts.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+    }
+
+    // Lignes postérieures au filigrane (quelques minutes au plus) : [date, acteur]
+    private List<Object[]> findNotRolledUp(String metric, Instant from, Instant to) {
+        if (AuditRollup.METRIC_CASES.equals(metric)) {
+            return caseRepository.findNotRolledUp(watermark(SOURCE_CASES), from, to);
+        }
+        return auditEventRepository.findNotRolledUp(watermark(SOURCE_AUDIT_EVENTS),
+            AuditEvent.EventType.valueOf(metric), from, to);
+    }
+
+    private long watermark(String source) {
+        return rollupWatermarkRepository.findById(source).map(RollupWatermark::getLastId).orElse(0L);
+    }
+
+    private static String actorOf(Object actor) {
+        return actor != null ? (String) actor : "";
+    }
+
+    private static long sum(Map<String, Long> counts) {
+        long total = 0;
+        for (long count : counts.values()) total += count;
+        return total;
+    }
+}
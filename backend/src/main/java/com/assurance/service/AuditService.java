@@ -0,0 +1,267 @@
+package com.assurance.service;
+
+import com.assurance.domain.AuditEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Écriture des événements d'audit.
+ *
+ * Chaque événement porte, en plus du message, la compagnie de l'acteur et l'entité concernée :
+ * les statistiques les interrogent par index au lieu de réanalyser les messages.
+ *
+ * Les événements sont mis en file (bornée, sans verrou) après validation de la transaction
+ * appelante, puis insérés par lots JDBC par un thread dédié, dès que la taille de lot est atteinte
+ * ou à intervalle régulier : la requête ne paie plus l'INSERT. File pleine : écriture synchrone
+ * (par défaut) ou abandon compté. La file est vidée à l'arrêt de l'application.
+ */
+@Service
+public class AuditService {
+    private static final int MAX_MESSAGE_LENGTH = 512;
+    private static final int MAX_ACTOR_LENGTH = 128;
+    private static final String INSERT_SQL =
+        "INSERT INTO audit_events (type, message, actor, atiso, company_code, entity_type, entity_id) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ActorCompanyResolver companyResolver;
+    private final ReportStatsService reportStatsService;
+    private final TransactionTemplate newTransaction;
+
+    private final ConcurrentLinkedQueue<AuditEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledThreadPoolExecutor writer;
+    private final Counter dropped;
+
+    // Réglages reçus par le constructeur : le thread d'écriture démarre avant l'injection des champs
+    private final int queueCapacity;
+    private final int batchSize;
+    private final boolean syncFallback;
+    private final long shutdownTimeoutMs;
+
+    public AuditService(JdbcTemplate jdbcTemplate,
+                        ActorCompanyResolver companyResolver,
+                        ReportStatsService reportStatsService,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.audit.writer.flush-interval-ms:500}") long flushIntervalMs,
+                        @Value("${app.audit.writer.queue-capacity:10000}") int queueCapacity,
+                        @Value("${app.audit.writer.batch-size:200}") int batchSize,
+                        @Value("${app.audit.writer.sync-fallback:true}") boolean syncFallback,
+                        @Value("${app.audit.writer.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.syncFallback = syncFallback;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.companyResolver = companyResolver;
+        this.reportStatsService = reportStatsService;
+        // Transaction propre : l'écriture peut avoir lieu après validation de la transaction appelante
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "audit-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("audit.writer.queue", queued, AtomicInteger::get)
+            .description("Événements d'audit en attente d'écriture")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("audit.writer.dropped")
+            .description("Événements d'audit abandonnés (file pleine)")
+            .register(meterRegistry);
+    }
+
+    public void record(AuditEvent.EventType type, String actor, String message,
+                       AuditEvent.EntityType entityType, Long entityId) {
+        record(type, actor, message, entityType, entityId, null);
+    }
+
+    /**
+     * @param companyCode compagnie connue de l'appelant (ex. compagnie du demandeur) ; déduite de l'acteur si null
+     */
+    public void record(AuditEvent.EventType type, String actor, String message,
+                       AuditEvent.EntityType entityType, Long entityId, String companyCode) {
+        AuditEvent evt = new AuditEvent();
+        evt.setType(type);
+        evt.setActor(truncate(actor != null && !actor.isBlank() ? actor : "system", MAX_ACTOR_LENGTH));
+        evt.setMessage(truncate(message, MAX_MESSAGE_LENGTH));
+        evt.setAtISO(Instant.now());
+        evt.setEntityType(entityType);
+        evt.setEntityId(entityId);
+        evt.setCompanyCode(truncate(companyCode != null && !companyCode.isBlank()
+                ? companyCode.trim() : companyResolver.resolve(evt.getActor()), 128));
+
+        // Un traitement annulé ne laisse pas d'événement d'audit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(evt);
+                }
+            });
+        } else {
+            enqueue(evt);
+        }
+    }
+
+    private void enqueue(AuditEvent evt) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            if (syncFallback) {
+                writeQuietly(List.of(evt));
+            } else {
+                dropped.increment();
+                System.err.println("File d'audit pleine, événement abandonné: " + evt.getType() + " / " + evt.getActor());
+            }
+            return;
+        }
+        queue.offer(evt);
+        if (queued.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Arrêt en cours : la file sera vidée par shutdown()
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Erreur lors de l'écriture des événements d'audit: " + e.getMessage());
+        }
+    }
+
+    // Vide la file par lots ; un seul appelant à la fois (thread d'écriture, puis arrêt)
+    private void flush() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        AuditEvent evt;
+        while ((evt = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(evt);
+            if (batch.size() >= batchSize) {
+                writeQuietly(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) writeQuietly(batch);
+    }
+
+    private void writeQuietly(List<AuditEvent> batch) {
+        try {
+            write(batch);
+        } catch (Exception e) {
+            // Lot rejeté : réessai ligne par ligne pour ne perdre que les événements invalides
+            if (batch.size() == 1) {
+                System.err.println("Événement d'audit non enregistré (" + batch.get(0).getType() + "): " + e.getMessage());
+                return;
+            }
+            for (AuditEvent evt : batch) {
+                writeQuietly(List.of(evt));
+            }
+            return;
+        }
+        for (AuditEvent evt : batch) {
+            reportStatsService.record(evt);
+        }
+    }
+
+    private void write(List<AuditEvent> batch) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        newTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+            connection -> connection.prepareStatement(INSERT_SQL, new String[] { "id" }),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    AuditEvent evt = batch.get(i);
+                    ps.setString(1, evt.getType().name());
+                    ps.setString(2, evt.getMessage());
+                    ps.setString(3, evt.getActor());
+                    ps.setObject(4, evt.getAtISO().atOffset(ZoneOffset.UTC));
+                    ps.setString(5, evt.getCompanyCode());
+                    ps.setString(6, evt.getEntityType() != null ? evt.getEntityType().name() : null);
+                    if (evt.getEntityId() != null) {
+                        ps.setLong(7, evt.getEntityId());
+                    } else {
+                        ps.setNull(7, Types.BIGINT);
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            },
+            keys));
+
+        // Identifiants générés, dans l'ordre du lot (les statistiques suivent le dernier identifiant vu)
+        List<Map<String, Object>> generated = keys.getKeyList();
+        for (int i = 0; i < batch.size() && i < generated.size(); i++) {
+            Object id = generated.get(i).get("id");
+            if (id instanceof Number number) batch.get(i).setId(number.longValue());
+        }
+    }
+
+    /**
+     * Nombre d'événements en attente d'écriture
+     */
+    public int pending() {
+        return queued.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.shutdownNow();
+        int remaining = queued.get();
+        flushQuietly();
+        if (remaining > 0) {
+            System.out.println("📝 File d'audit vidée à l'arrêt (" + remaining + " événement(s))");
+        }
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+}
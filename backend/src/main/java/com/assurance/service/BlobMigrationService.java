@@ -0,0 +1,142 @@
+package com.assurance.service;
+
+import com.assurance.repo.CaseAttachmentRepository;
+import com.assurance.repo.ReportFileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Migration en arrière-plan du contenu des fichiers depuis les anciennes colonnes BYTEA
+ * (report_files.cipher_text, case_attachments.cipher_text) vers le BlobStore.
+ *
+ * Chaque ligne est migrée individuellement : le blob est écrit, puis la ligne bascule
+ * sur sa clé et en prend la référence dans une même courte transaction, sous verrou de la ligne
+ * blob_contents (une suppression concurrente ne peut pas s'intercaler). Les lectures restent
+ * possibles pendant la migration grâce au repli de FileService sur l'ancienne colonne.
+ */
+@Service
+public class BlobMigrationService {
+    private final ReportFileRepository reportFileRepository;
+    private final CaseAttachmentRepository caseAttachmentRepository;
+    private final BlobStore blobStore;
+    private final BlobReferenceService blobReferenceService;
+    private final TransactionTemplate transaction;
+
+    @Value("${app.storage.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.storage.migration.batch-size:20}")
+    private int batchSize;
+
+    // Passe à true quand plus aucune ligne n'est à migrer dans les deux tables
+    private volatile boolean completed = false;
+
+    // Compteurs de références recalculés une fois par démarrage
+    private volatile boolean referencesCounted = false;
+
+    public BlobMigrationService(ReportFileRepository reportFileRepository,
+                                CaseAttachmentRepository caseAttachmentRepository,
+                                BlobStore blobStore,
+                                BlobReferenceService blobReferenceService,
+                                PlatformTransactionManager transactionManager) {
+        this.reportFileRepository = reportFileRepository;
+        this.caseAttachmentRepository = caseAttachmentRepository;
+        this.blobStore = blobStore;
+        this.blobReferenceService = blobReferenceService;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${app.storage.migration.initial-delay-ms:30000}",
+               fixedDelayString = "${app.storage.migration.delay-ms:30000}")
+    public void migrateBatch() {
+        if (!enabled || completed) return;
+
+        try {
+            if (!referencesCounted) {
+                int contents = blobReferenceService.recountReferences();
+                referencesCounted = true;
+                System.out.println("📦 Références de contenu recalculées: " + contents + " blob(s)");
+            }
+
+            int reportFiles = migrateReportFiles();
+            int attachments = migrateCaseAttachments();
+
+            if (reportFiles > 0 || attachments > 0) {
+                System.out.println("📦 Migration BYTEA -> BlobStore: " + reportFiles + " fichier(s) de rapport, "
+                        + attachments + " pièce(s) jointe(s)");
+            } else {
+                completed = true;
+                System.out.println("✅ Migration BYTEA -> BlobStore terminée");
+            }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la migration des fichiers vers le BlobStore: " + e.getMessage());
+        }
+    }
+
+    private int migrateReportFiles() throws Exception {
+        if (reportFileRepository.countLegacyContentColumn() == 0) return 0;
+
+        int migrated = 0;
+        List<Long> ids = reportFileRepository.findIdsPendingBlobMigration(batchSize);
+        for (Long id : ids) {
+            byte[] content = reportFileRepository.findLegacyContent(id);
+            if (content == null) continue;
+
+            String blobKey = blobStore.put(new ByteArrayInputStream(content));
+            String digest = FileService.sha256Hex(content);
+            if (switchToBlob(blobKey, digest, content.length,
+                    () -> reportFileRepository.completeBlobMigration(id, blobKey, digest) > 0)) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    private int migrateCaseAttachments() throws Exception {
+        if (caseAttachmentRepository.countLegacyContentColumn() == 0) return 0;
+
+        int migrated = 0;
+        List<Long> ids = caseAttachmentRepository.findIdsPendingBlobMigration(batchSize);
+        for (Long id : ids) {
+            byte[] content = caseAttachmentRepository.findLegacyContent(id);
+            if (content == null) continue;
+
+            String blobKey = blobStore.put(new ByteArrayInputStream(content));
+            String digest = FileService.sha256Hex(content);
+            if (switchToBlob(blobKey, digest, content.length,
+                    () -> caseAttachmentRepository.completeBlobMigration(id, blobKey, digest) > 0)) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    /**
+     * Bascule la ligne sur le blob et en prend la référence dans une seule transaction.
+     * Si la ligne a été supprimée ou migrée entre-temps, ou si la transaction échoue,
+     * le blob fraîchement écrit est supprimé s'il n'est pas référencé par ailleurs.
+     */
+    private boolean switchToBlob(String blobKey, String digest, long sizeBytes, BooleanSupplier completeMigration) {
+        boolean switched = false;
+        try {
+            switched = Boolean.TRUE.equals(transaction.execute(status -> {
+                blobReferenceService.lock(blobKey);
+                if (!completeMigration.getAsBoolean()) return false;
+                blobReferenceService.acquire(blobKey, digest, null, null, sizeBytes, false);
+                return true;
+            }));
+            return switched;
+        } finally {
+            if (!switched) {
+                blobReferenceService.deleteIfUnreferenced(blobKey);
+            }
+        }
+    }
+}
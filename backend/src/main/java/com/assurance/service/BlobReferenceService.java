@@ -0,0 +1,156 @@
+package com.assurance.service;
+
+import com.assurance.domain.BlobContent;
+import com.assurance.repo.BlobContentRepository;
+import com.assurance.repo.CaseAttachmentRepository;
+import com.assurance.repo.ReportFileRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+/**
+ * Comptage des références vers les blobs (table blob_contents).
+ *
+ * Un contenu identique envoyé plusieurs fois (fichier principal et prévisualisation, mêmes scans
+ * dans plusieurs dossiers) n'est stocké qu'une fois ; chaque ReportFile / CaseAttachment
+ * en prend une référence. Le blob est supprimé après validation de la transaction qui rend
+ * la dernière référence, sous verrou de la ligne pour exclure un upload concurrent du même contenu.
+ */
+@Service
+public class BlobReferenceService {
+    private final BlobContentRepository blobContentRepository;
+    private final ReportFileRepository reportFileRepository;
+    private final CaseAttachmentRepository caseAttachmentRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate newTransaction;
+
+    public BlobReferenceService(BlobContentRepository blobContentRepository,
+                                ReportFileRepository reportFileRepository,
+                                CaseAttachmentRepository caseAttachmentRepository,
+                                BlobStore blobStore,
+                                PlatformTransactionManager transactionManager) {
+        this.blobContentRepository = blobContentRepository;
+        this.reportFileRepository = reportFileRepository;
+        this.caseAttachmentRepository = caseAttachmentRepository;
+        this.blobStore = blobStore;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Prend une référence sur le contenu qui vient d'être écrit dans le BlobStore.
+     *
+     * Sans chiffrement, la clé du blob est déjà l'empreinte du contenu : un contenu identique
+     * retombe sur la même ligne. Avec chiffrement (IV aléatoire), un contenu existant de même
+     * empreinte en clair est recherché et réutilisé, et le blob fraîchement écrit est abandonné.
+     *
+     * @return la ligne de contenu à référencer (clé, IV et clé de chiffrement à recopier sur le fichier)
+     */
+    @Transactional
+    public BlobContent acquire(String blobKey, String digest, byte[] iv, String keyId, long sizeBytes, boolean encrypted) {
+        if (encrypted) {
+            Optional<BlobContent> existing =
+                blobContentRepository.findFirstByContentDigestAndKeyIdAndRefCountGreaterThan(digest, keyId, 0);
+            if (existing.isPresent() && !existing.get().getBlobKey().equals(blobKey)) {
+                BlobContent shared = existing.get();
+                blobContentRepository.acquire(shared.getBlobKey(), digest, shared.getIv(), keyId, sizeBytes);
+                releaseAfterCompletion(blobKey); // copie chiffrée en double, jamais référencée
+                return shared;
+            }
+        }
+        blobContentRepository.acquire(blobKey, digest, iv, keyId, sizeBytes);
+        return blobContentRepository.findById(blobKey)
+            .orElseThrow(() -> new IllegalStateException("Référence de contenu introuvable: " + blobKey));
+    }
+
+    /**
+     * Rend une référence ; le blob sera supprimé après validation s'il n'est plus référencé
+     */
+    @Transactional
+    public void release(String blobKey) {
+        if (blobKey == null) return;
+        blobContentRepository.release(blobKey);
+        releaseAfterCommit(blobKey);
+    }
+
+    /**
+     * Recalcule les compteurs à partir des fichiers existants (reprise des fichiers antérieurs à la table)
+     */
+    @Transactional
+    public int recountReferences() {
+        return blobContentRepository.recountReferences();
+    }
+
+    /**
+     * Verrouille la ligne du blob (créée au besoin, à zéro référence) jusqu'à la fin de la
+     * transaction en cours : exclut une suppression concurrente de la même clé
+     */
+    Optional<BlobContent> lock(String blobKey) {
+        blobContentRepository.insertIfAbsent(blobKey);
+        return blobContentRepository.lockByBlobKey(blobKey);
+    }
+
+    /**
+     * Supprime le blob s'il n'est plus référencé, dans une transaction dédiée.
+     * La ligne est verrouillée (lock) pour que la suppression et une prise de
+     * référence concurrente sur la même clé s'excluent.
+     */
+    void deleteIfUnreferenced(String blobKey) {
+        try {
+            newTransaction.executeWithoutResult(status -> {
+                BlobContent content = lock(blobKey).orElse(null);
+                if (content == null || content.getRefCount() > 0) return;
+
+                // Filet de sécurité : lignes antérieures à la table encore non comptées
+                if (reportFileRepository.countByBlobKey(blobKey) > 0 || caseAttachmentRepository.countByBlobKey(blobKey) > 0
+                        || reportFileRepository.countByPreviewBlobKey(blobKey) > 0) {
+                    return;
+                }
+                try {
+                    blobStore.delete(blobKey);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+                blobContentRepository.delete(content);
+            });
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la suppression du blob " + blobKey + ": " + e.getMessage());
+        }
+    }
+
+    private void releaseAfterCommit(String blobKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteIfUnreferenced(blobKey);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteIfUnreferenced(blobKey);
+            }
+        });
+    }
+
+    /**
+     * Après la transaction, quelle qu'en soit l'issue : un blob écrit lors d'un upload annulé
+     * ou une copie abandonnée ne doit pas rester orphelin
+     */
+    void releaseAfterCompletion(String blobKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteIfUnreferenced(blobKey);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                deleteIfUnreferenced(blobKey);
+            }
+        });
+    }
+}
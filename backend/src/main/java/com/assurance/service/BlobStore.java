@@ -0,0 +1,42 @@
+package com.assurance.service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stockage du contenu binaire des fichiers (rapports et pièces jointes) en dehors de la base.
+ * Les entités ne conservent qu'une clé de blob, la taille et l'empreinte du contenu.
+ */
+public interface BlobStore {
+
+    /**
+     * Enregistre le contenu lu depuis le flux et retourne la clé du blob.
+     * Le flux n'est pas fermé par cette méthode.
+     */
+    String put(InputStream content) throws IOException;
+
+    /**
+     * Ouvre le contenu d'un blob en lecture (à fermer par l'appelant)
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Taille du blob en octets
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Ressource Spring sur le blob, utilisée pour servir les téléchargements en flux
+     * (y compris les requêtes partielles Range)
+     */
+    Resource resource(String key) throws IOException;
+
+    boolean exists(String key);
+
+    /**
+     * Supprime un blob (sans effet s'il n'existe pas)
+     */
+    void delete(String key) throws IOException;
+}
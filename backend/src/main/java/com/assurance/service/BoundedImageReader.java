@@ -0,0 +1,53 @@
+package com.assurance.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Décodage des images envoyées par les utilisateurs (logos, aperçus).
+ *
+ * Les dimensions sont lues dans l'en-tête avant tout décodage : une image déclarant plus de
+ * maxPixels pixels est refusée (un petit PNG peut annoncer un canevas de plusieurs gigaoctets).
+ * Les autres sont décodées par sous-échantillonnage, en gardant au moins deux fois la taille
+ * cible sur le côté le plus long, pour ne jamais allouer le raster complet d'une grande photo.
+ */
+final class BoundedImageReader {
+
+    private BoundedImageReader() {
+    }
+
+    /**
+     * @return l'image sous-échantillonnée, ou null si ImageIO ne reconnaît pas le format
+     * @throws IllegalArgumentException si l'image déclare plus de maxPixels pixels
+     */
+    static BufferedImage read(ImageInputStream input, long maxPixels, int targetSize) throws IOException {
+        if (input == null) return null;
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) return null;
+
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if (width <= 0 || height <= 0 || (long) width * height > maxPixels) {
+                throw new IllegalArgumentException("image trop grande (" + width + "x" + height
+                        + ", maximum " + maxPixels + " pixels)");
+            }
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            int step = Math.max(1, Math.max(width, height) / Math.max(1, 2 * targetSize));
+            if (step > 1) {
+                param.setSourceSubsampling(step, step, 0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+}
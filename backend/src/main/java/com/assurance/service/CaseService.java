@@ -3,7 +3,6 @@ package com.assurance.service;
 import com.assurance.domain.AuditEvent;
 import com.assurance.domain.InsuranceCase;
 import com.assurance.domain.User;
-import com.assurance.repo.AuditEventRepository;
 import com.assurance.repo.InsuranceCaseRepository;
 import com.assurance.repository.UserRepository;
 import com.assurance.service.InAppNotificationService;
@@ -21,17 +20,19 @@ import java.security.SecureRandom;
 @Service
 public class CaseService {
     private final InsuranceCaseRepository insuranceCaseRepository;
-    private final AuditEventRepository auditEventRepository;
+    private final AuditService auditService;
     private final UserRepository userRepository;
+    private final FileService fileService;
     private final SecureRandom secureRandom = new SecureRandom();
     
     @Autowired
     private InAppNotificationService notificationService;
 
-    public CaseService(InsuranceCaseRepository insuranceCaseRepository, AuditEventRepository auditEventRepository, UserRepository userRepository) {
+    public CaseService(InsuranceCaseRepository insuranceCaseRepository, AuditService auditService, UserRepository userRepository, FileService fileService) {
         this.insuranceCaseRepository = insuranceCaseRepository;
-        this.auditEventRepository = auditEventRepository;
+        this.auditService = auditService;
         this.userRepository = userRepository;
+        this.fileService = fileService;
     }
 
     public List<InsuranceCase> list() {
@@ -68,11 +69,9 @@ public class CaseService {
 		InsuranceCase saved = insuranceCaseRepository.save(item);
 
 		// Créer l'événement d'audit
-		AuditEvent evt = new AuditEvent();
-		evt.setType(AuditEvent.EventType.CASE_CREATED);
-		evt.setActor(actorName);
-		evt.setMessage("Création dossier (" + item.getType() + ")");
-		auditEventRepository.save(evt);
+		auditService.record(AuditEvent.EventType.CASE_CREATED, actorName,
+				"Création dossier (" + item.getType() + ")",
+				AuditEvent.EntityType.CASE, saved.getId());
 		
 		// Envoyer une notification à tous les utilisateurs
 		try {
@@ -94,6 +93,16 @@ public class CaseService {
 		return saved;
 	}
 
+    /**
+     * Supprime un dossier ; ses pièces jointes partent en cascade et leurs blobs
+     * sont libérés après validation de la transaction.
+     */
+    @Transactional
+    public void delete(InsuranceCase insuranceCase) {
+        fileService.releaseCaseAttachmentBlobs(insuranceCase.getId());
+        insuranceCaseRepository.delete(insuranceCase);
+    }
+
     private String generateReference() {
         byte[] bytes = new byte[8];
         secureRandom.nextBytes(bytes);
@@ -124,7 +133,7 @@ public class CaseService {
                 
                 // Supprimer tous sauf le premier (le plus récent)
                 for (int i = 1; i < duplicates.size(); i++) {
-                    insuranceCaseRepository.delete(duplicates.get(i));
+                    delete(duplicates.get(i));
                     deletedCount++;
                 }
             }
@@ -1,23 +1,85 @@
 package com.assurance.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.SecureRandom;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class CryptoService {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
     private final SecureRandom secureRandom = new SecureRandom();
+    private final KeyRing keyRing;
+
+    // Cipher réutilisés entre opérations : Cipher.getInstance fait une recherche de fournisseur à chaque appel.
+    // Un pool partagé plutôt qu'un ThreadLocal : un flux peut changer de thread (réponse asynchrone)
+    // et, avec des threads virtuels, un ThreadLocal ne serait jamais réutilisé.
+    private final Deque<Cipher> cipherPool = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pooledCiphers = new AtomicInteger();
+    private final int maxPooledCiphers;
+
+    private final Timer encryptBufferTimer;
+    private final Timer decryptBufferTimer;
+    private final Timer encryptSegmentTimer;
+    private final Timer decryptSegmentTimer;
+    private final Counter encryptedBytes;
+    private final Counter decryptedBytes;
+    private final SegmentedGcm.Hooks streamHooks;
+
+    public CryptoService(KeyRing keyRing,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.crypto.cipher-pool-size:64}") int maxPooledCiphers) {
+        this.keyRing = keyRing;
+        this.maxPooledCiphers = maxPooledCiphers;
+
+        // Latence par opération (buffer entier ou segment) ; le débit se lit sur les compteurs d'octets
+        this.encryptBufferTimer = timer(meterRegistry, "encrypt", "buffer");
+        this.decryptBufferTimer = timer(meterRegistry, "decrypt", "buffer");
+        this.encryptSegmentTimer = timer(meterRegistry, "encrypt", "segment");
+        this.decryptSegmentTimer = timer(meterRegistry, "decrypt", "segment");
+        this.encryptedBytes = Counter.builder("crypto.bytes").tag("operation", "encrypt")
+            .baseUnit("bytes").description("Octets chiffrés").register(meterRegistry);
+        this.decryptedBytes = Counter.builder("crypto.bytes").tag("operation", "decrypt")
+            .baseUnit("bytes").description("Octets déchiffrés").register(meterRegistry);
+        Gauge.builder("crypto.cipher.pool.size", pooledCiphers, AtomicInteger::get)
+            .description("Cipher disponibles dans le pool").register(meterRegistry);
 
-    // NOTE: In production, store and rotate keys using a KMS. Here we use a static demo key.
-    private final byte[] keyBytes;
+        this.streamHooks = new SegmentedGcm.Hooks() {
+            @Override
+            public void segment(boolean encrypt, int plainBytes, long nanos) {
+                (encrypt ? encryptSegmentTimer : decryptSegmentTimer).record(nanos, TimeUnit.NANOSECONDS);
+                (encrypt ? encryptedBytes : decryptedBytes).increment(plainBytes);
+            }
 
-    public CryptoService() {
-        // 32 bytes (256-bit) static demo key
-        this.keyBytes = "0123456789ABCDEF0123456789ABCDEF".getBytes();
+            @Override
+            public void release(Cipher cipher) {
+                releaseCipher(cipher);
+            }
+        };
+    }
+
+    private static Timer timer(MeterRegistry registry, String operation, String mode) {
+        return Timer.builder("crypto.operation")
+            .tag("operation", operation)
+            .tag("mode", mode)
+            .description("Durée des opérations de chiffrement AES-GCM")
+            .register(registry);
     }
 
     public byte[] randomIv() {
@@ -26,27 +88,130 @@ public class CryptoService {
         return iv;
     }
 
-    public byte[] encrypt(byte[] iv, byte[] plain) {
+    /**
+     * Identifiant de la clé à utiliser pour un nouveau chiffrement (à enregistrer avec le contenu)
+     */
+    public String activeKeyId() {
+        return keyRing.activeKeyId();
+    }
+
+    public byte[] encrypt(String keyId, byte[] iv, byte[] plain) {
+        Cipher cipher = borrowCipher();
+        long start = System.nanoTime();
         try {
-            SecretKey key = new SecretKeySpec(keyBytes, "AES");
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
-            return cipher.doFinal(plain);
+            cipher.init(Cipher.ENCRYPT_MODE, keyRing.key(keyId), new GCMParameterSpec(128, iv));
+            byte[] result = cipher.doFinal(plain);
+            encryptBufferTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            encryptedBytes.increment(plain.length);
+            return result;
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
+        } finally {
+            releaseCipher(cipher);
         }
     }
 
-    public byte[] decrypt(byte[] iv, byte[] cipherText) {
+    public byte[] decrypt(String keyId, byte[] iv, byte[] cipherText) {
+        Cipher cipher = borrowCipher();
+        long start = System.nanoTime();
         try {
-            SecretKey key = new SecretKeySpec(keyBytes, "AES");
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
-            return cipher.doFinal(cipherText);
+            cipher.init(Cipher.DECRYPT_MODE, keyRing.key(keyId), new GCMParameterSpec(128, iv));
+            byte[] result = cipher.doFinal(cipherText);
+            decryptBufferTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            decryptedBytes.increment(result.length);
+            return result;
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed", e);
+        } finally {
+            releaseCipher(cipher);
         }
     }
-}
 
+    /**
+     * Chiffre un flux à la volée au format segmenté (voir SegmentedGcm) : la mémoire utilisée
+     * est bornée à un segment quelle que soit la taille du fichier.
+     */
+    public InputStream encryptingStream(String keyId, byte[] iv, InputStream plain) {
+        return new SegmentedGcm.EncryptingInputStream(plain, borrowCipher(), keyRing.key(keyId), iv, streamHooks);
+    }
+
+    /**
+     * Variante en écriture : les octets écrits sont chiffrés vers le flux cible, close() scelle le dernier segment
+     */
+    public OutputStream encryptingOutputStream(String keyId, byte[] iv, OutputStream cipherOut) {
+        return new SegmentedGcm.EncryptingOutputStream(cipherOut, borrowCipher(), keyRing.key(keyId), iv, streamHooks);
+    }
+
+    /**
+     * Déchiffre à la volée un contenu au format segmenté. Chaque segment est authentifié avant d'être rendu.
+     */
+    public InputStream decryptingStream(String keyId, byte[] iv, InputStream cipherIn) {
+        return new SegmentedGcm.DecryptingInputStream(cipherIn, borrowCipher(), keyRing.key(keyId), iv, streamHooks);
+    }
+
+    /**
+     * Ressource déchiffrée à la volée au-dessus d'une ressource chiffrée au format segmenté.
+     * Sa taille est connue sans lecture, ce qui permet à Spring MVC de servir des plages (Range).
+     */
+    public Resource decryptingResource(String keyId, byte[] iv, Resource encrypted) {
+        return new DecryptingResource(encrypted, keyId, iv);
+    }
+
+    private Cipher borrowCipher() {
+        Cipher cipher = cipherPool.pollFirst();
+        if (cipher != null) {
+            pooledCiphers.decrementAndGet();
+            return cipher;
+        }
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (Exception e) {
+            throw new RuntimeException("Cipher unavailable", e);
+        }
+    }
+
+    private void releaseCipher(Cipher cipher) {
+        if (pooledCiphers.incrementAndGet() <= maxPooledCiphers) {
+            cipherPool.offerFirst(cipher);
+        } else {
+            pooledCiphers.decrementAndGet();
+        }
+    }
+
+    private class DecryptingResource extends AbstractResource {
+        private final Resource encrypted;
+        private final String keyId;
+        private final byte[] iv;
+
+        private DecryptingResource(Resource encrypted, String keyId, byte[] iv) {
+            this.encrypted = encrypted;
+            this.keyId = keyId;
+            this.iv = iv;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return decryptingStream(keyId, iv, encrypted.getInputStream());
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return SegmentedGcm.plainSize(encrypted.contentLength());
+        }
+
+        @Override
+        public boolean exists() {
+            return encrypted.exists();
+        }
 
+        @Override
+        public long lastModified() throws IOException {
+            return encrypted.lastModified();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Decrypted " + encrypted.getDescription();
+        }
+    }
+}
@@ -9,12 +9,19 @@ import org.springframework.stereotype.Service;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 public class EmailService {
     
     @Autowired
     private JavaMailSender mailSender;
     
+    // Connexions SMTP réutilisées et débit limité (SmtpConnectionPool)
+    @Autowired
+    private SmtpConnectionPool connectionPool;
+    
     /**
      * Envoie un email simple
      */
@@ -43,15 +50,7 @@ public class EmailService {
      */
     public void sendEmail(String to, String subject, String htmlContent) {
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true); // true pour HTML
-            
-            mailSender.send(message);
-            System.out.println("Email HTML envoyé avec succès à: " + to);
+            deliver(to, subject, htmlContent);
         } catch (MessagingException e) {
             System.err.println("Erreur lors de l'envoi de l'email HTML: " + e.getMessage());
             // Fallback: afficher dans les logs pour le débogage
@@ -62,4 +61,64 @@ public class EmailService {
             System.out.println("==================");
         }
     }
+    
+    /**
+     * Envoie un email HTML en propageant l'échec (envois différés de NotificationOutboxService, réessayés)
+     */
+    public void deliver(String to, String subject, String htmlContent) throws MessagingException {
+        MessagingException failure = deliverBatch(List.of(new OutgoingEmail(to, subject, htmlContent))).get(0);
+        if (failure != null) throw failure;
+    }
+    
+    /**
+     * Envoie plusieurs emails HTML sur une même connexion SMTP
+     *
+     * @return pour chaque email, l'exception d'envoi ou null s'il a été remis
+     */
+    public List<MessagingException> deliverBatch(List<OutgoingEmail> emails) {
+        List<MessagingException> results = new ArrayList<>(emails.size());
+        List<MimeMessage> messages = new ArrayList<>(emails.size());
+        List<Integer> positions = new ArrayList<>(emails.size());
+        for (OutgoingEmail email : emails) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+                helper.setTo(email.getTo());
+                helper.setSubject(email.getSubject());
+                helper.setText(email.getHtmlContent(), true); // true pour HTML
+                positions.add(results.size());
+                messages.add(message);
+                results.add(null);
+            } catch (MessagingException e) {
+                results.add(e); // adresse invalide : les autres emails partent quand même
+            }
+        }
+        
+        List<MessagingException> sent = connectionPool.sendBatch(messages);
+        for (int i = 0; i < sent.size(); i++) {
+            MessagingException failure = sent.get(i);
+            int position = positions.get(i);
+            if (failure == null) {
+                System.out.println("Email HTML envoyé avec succès à: " + emails.get(position).getTo());
+            }
+            results.set(position, failure);
+        }
+        return results;
+    }
+    
+    public static class OutgoingEmail {
+        private final String to;
+        private final String subject;
+        private final String htmlContent;
+        
+        public OutgoingEmail(String to, String subject, String htmlContent) {
+            this.to = to;
+            this.subject = subject;
+            this.htmlContent = htmlContent;
+        }
+        
+        public String getTo() { return to; }
+        public String getSubject() { return subject; }
+        public String getHtmlContent() { return htmlContent; }
+    }
 }
@@ -0,0 +1,35 @@
+package com.assurance.service;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Contenu d'un fichier prêt à être servi : métadonnées d'en-tête et ressource lisible en flux.
+ */
+public class FileContent {
+    private final String fileName;
+    private final String contentType;
+    private final String digest; // SHA-256 du contenu en clair, sert d'ETag
+    private final Resource resource;
+
+    public FileContent(String fileName, String contentType, String digest, Resource resource) {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.digest = digest;
+        this.resource = resource;
+    }
+
+    public String getFileName() { return fileName; }
+
+    public String getContentType() { return contentType; }
+
+    public String getDigest() { return digest; }
+
+    public Resource getResource() { return resource; }
+
+    /**
+     * ETag fort dérivé de l'empreinte du contenu (null pour les fichiers pas encore migrés)
+     */
+    public String getETag() {
+        return digest != null ? "\"" + digest + "\"" : null;
+    }
+}
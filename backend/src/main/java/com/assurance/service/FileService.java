@@ -2,11 +2,26 @@ package com.assurance.service;
 
 import com.assurance.domain.*;
 import com.assurance.repo.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,21 +32,34 @@ public class FileService {
     private final InsuranceCaseRepository insuranceCaseRepository;
     private final CaseAttachmentRepository caseAttachmentRepository;
     private final CryptoService cryptoService;
+    private final BlobStore blobStore;
+    private final BlobReferenceService blobReferenceService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Configuration
     private static final long MAX_FILE_SIZE = 50 * 1024 * 1024; // 50MB
     private static final boolean ENABLE_ENCRYPTION = false; // Désactivé temporairement
 
+    // Taille des morceaux lus depuis l'upload : borne la mémoire utilisée par fichier
+    @Value("${app.storage.chunk-size:65536}")
+    private int chunkSize;
+
     public FileService(ReportRepository reportRepository, 
                       ReportFileRepository reportFileRepository,
                       InsuranceCaseRepository insuranceCaseRepository,
                       CaseAttachmentRepository caseAttachmentRepository,
-                      CryptoService cryptoService) {
+                      CryptoService cryptoService,
+                      BlobStore blobStore,
+                      BlobReferenceService blobReferenceService,
+                      ApplicationEventPublisher eventPublisher) {
         this.reportRepository = reportRepository;
         this.reportFileRepository = reportFileRepository;
         this.insuranceCaseRepository = insuranceCaseRepository;
         this.caseAttachmentRepository = caseAttachmentRepository;
         this.cryptoService = cryptoService;
+        this.blobStore = blobStore;
+        this.blobReferenceService = blobReferenceService;
+        this.eventPublisher = eventPublisher;
     }
 
     // ===== GESTION DES FICHIERS DE RAPPORTS =====
@@ -47,18 +75,17 @@ public class FileService {
         // supprimer d'abord les fichiers existants de cette catégorie
         if (fileType != null) {
             String category = fileType.trim().toLowerCase();
-            List<ReportFile> existing = getReportFiles(reportId);
+            List<ReportFile> existing = reportFileRepository.findByReportIdOrderByCreatedAtDesc(reportId);
             for (ReportFile f : existing) {
                 String existingCategory = f.getCategory() != null ? f.getCategory().toLowerCase() : "";
                 boolean isPreviewDesc = f.getDescription() != null && f.getDescription().toLowerCase().contains("prévisualisation");
                 if (("main".equals(category) && "main".equals(existingCategory)) ||
                     ("preview".equals(category) && ("preview".equals(existingCategory) || isPreviewDesc))) {
-                    reportFileRepository.delete(f);
+                    deleteReportFileInternal(f);
                 }
             }
         }
         
-        byte[] fileBytes = file.getBytes();
         ReportFile reportFile = new ReportFile(report, file.getOriginalFilename(), file.getContentType(), file.getSize());
         reportFile.setDescription(description);
         reportFile.setFileType(determineFileType(file.getOriginalFilename(), file.getContentType()));
@@ -71,17 +98,20 @@ public class FileService {
                                (description != null && description.toLowerCase().contains("prévisualisation"));
         reportFile.setIsPublic(isPreviewFile);
         
-        if (ENABLE_ENCRYPTION) {
-            byte[] iv = cryptoService.randomIv();
-            byte[] cipher = cryptoService.encrypt(iv, fileBytes);
-            reportFile.setIv(iv);
-            reportFile.setCipherText(cipher);
-        } else {
-            reportFile.setIv(new byte[16]);
-            reportFile.setCipherText(fileBytes);
-        }
+        byte[] iv = ENABLE_ENCRYPTION ? cryptoService.randomIv() : new byte[16];
+        String keyId = ENABLE_ENCRYPTION ? cryptoService.activeKeyId() : null;
+        BlobContent content = ingest(file, keyId, iv);
+        // Contenu éventuellement partagé avec d'autres fichiers : IV et clé sont ceux du blob référencé
+        reportFile.setIv(content.getIv());
+        reportFile.setKeyId(content.getKeyId());
+        reportFile.setContentDigest(content.getContentDigest());
+        reportFile.setBlobKey(content.getBlobKey());
+        reportFile.setPreviewStatus(ReportFile.PreviewStatus.PENDING);
         
-        return reportFileRepository.save(reportFile);
+        ReportFile saved = reportFileRepository.save(reportFile);
+        // L'aperçu est généré en arrière-plan, après validation de la transaction
+        eventPublisher.publishEvent(new ReportFileUploadedEvent(saved.getId()));
+        return saved;
     }
 
     @Transactional
@@ -91,21 +121,19 @@ public class FileService {
         
         validateFile(file);
         
-        byte[] fileBytes = file.getBytes();
         CaseAttachment attachment = new CaseAttachment(insuranceCase, file.getOriginalFilename(), file.getContentType(), file.getSize());
         attachment.setDescription(description);
         attachment.setCategory(category);
         attachment.setFileType(determineFileType(file.getOriginalFilename(), file.getContentType()));
         
-        if (ENABLE_ENCRYPTION) {
-            byte[] iv = cryptoService.randomIv();
-            byte[] cipher = cryptoService.encrypt(iv, fileBytes);
-            attachment.setIv(iv);
-            attachment.setCipherText(cipher);
-        } else {
-            attachment.setIv(new byte[16]);
-            attachment.setCipherText(fileBytes);
-        }
+        byte[] iv = ENABLE_ENCRYPTION ? cryptoService.randomIv() : new byte[16];
+        String keyId = ENABLE_ENCRYPTION ? cryptoService.activeKeyId() : null;
+        BlobContent content = ingest(file, keyId, iv);
+        // Contenu éventuellement partagé avec d'autres fichiers : IV et clé sont ceux du blob référencé
+        attachment.setIv(content.getIv());
+        attachment.setKeyId(content.getKeyId());
+        attachment.setContentDigest(content.getContentDigest());
+        attachment.setBlobKey(content.getBlobKey());
         
         return caseAttachmentRepository.save(attachment);
     }
@@ -115,48 +143,176 @@ public class FileService {
     public byte[] downloadReportFile(Long fileId) throws IOException {
         ReportFile reportFile = reportFileRepository.findById(fileId)
             .orElseThrow(() -> new IllegalArgumentException("Fichier introuvable avec l'ID: " + fileId));
-        
-        if (ENABLE_ENCRYPTION) {
-            return cryptoService.decrypt(reportFile.getIv(), reportFile.getCipherText());
+        return readContent(reportFile);
+    }
+
+    /**
+     * Ouvre le contenu d'un fichier de rapport sous forme de ressource lisible en flux.
+     * Une ressource sur disque permet à Spring MVC de servir les requêtes Range (206)
+     * sans charger le fichier en mémoire.
+     */
+    public FileContent openReportFile(Long fileId) throws IOException {
+        ReportFile reportFile = reportFileRepository.findById(fileId)
+            .orElseThrow(() -> new IllegalArgumentException("Fichier introuvable avec l'ID: " + fileId));
+        return openReportFile(reportFile);
+    }
+
+    /**
+     * Métadonnées d'un fichier, uniquement s'il appartient au rapport indiqué.
+     * Le contrôle d'appartenance est fait par la requête elle-même.
+     */
+    public Optional<ReportFile> findReportFile(Long reportId, Long fileId) {
+        return reportFileRepository.findByIdAndReportId(fileId, reportId);
+    }
+
+    public FileContent openReportFile(ReportFile reportFile) throws IOException {
+        Resource resource;
+        if (reportFile.getBlobKey() != null) {
+            resource = blobStore.resource(reportFile.getBlobKey());
+            if (ENABLE_ENCRYPTION) {
+                // Déchiffrement par segments à la volée : mémoire bornée, requêtes Range possibles
+                resource = cryptoService.decryptingResource(reportFile.getKeyId(), reportFile.getIv(), resource);
+            }
         } else {
-            return reportFile.getCipherText();
+            resource = new ByteArrayResource(readContent(reportFile)); // repli : contenu pas encore migré
         }
+        return new FileContent(reportFile.getFileName(), reportFile.getContentType(), reportFile.getContentDigest(), resource);
+    }
+
+    private byte[] readContent(ReportFile reportFile) throws IOException {
+        Long fileId = reportFile.getId();
+        String blobKey = reportFile.getBlobKey();
+        if (blobKey != null) {
+            return readBlob(blobKey, reportFile.getKeyId(), reportFile.getIv());
+        }
+        // Ligne pas encore migrée hors de la colonne BYTEA (ancien format chiffré d'un seul bloc)
+        byte[] stored = reportFileRepository.findLegacyContent(fileId);
+        if (stored == null) {
+            // Migrée entre-temps par BlobMigrationService
+            return readBlob(reportFileRepository.findBlobKeyById(fileId), reportFile.getKeyId(), reportFile.getIv());
+        }
+        return ENABLE_ENCRYPTION ? cryptoService.decrypt(reportFile.getKeyId(), reportFile.getIv(), stored) : stored;
     }
 
     public byte[] downloadCaseAttachment(Long attachmentId) throws IOException {
         CaseAttachment attachment = caseAttachmentRepository.findById(attachmentId)
             .orElseThrow(() -> new IllegalArgumentException("Pièce jointe introuvable avec l'ID: " + attachmentId));
-        
-        if (ENABLE_ENCRYPTION) {
-            return cryptoService.decrypt(attachment.getIv(), attachment.getCipherText());
+        return readContent(attachment);
+    }
+
+    public FileContent openCaseAttachment(Long attachmentId) throws IOException {
+        CaseAttachment attachment = caseAttachmentRepository.findById(attachmentId)
+            .orElseThrow(() -> new IllegalArgumentException("Pièce jointe introuvable avec l'ID: " + attachmentId));
+        return openCaseAttachment(attachment);
+    }
+
+    /**
+     * Métadonnées d'une pièce jointe, uniquement si elle appartient au dossier indiqué
+     */
+    public Optional<CaseAttachment> findCaseAttachment(Long caseId, Long attachmentId) {
+        return caseAttachmentRepository.findByIdAndInsuranceCaseId(attachmentId, caseId);
+    }
+
+    public FileContent openCaseAttachment(CaseAttachment attachment) throws IOException {
+        Resource resource;
+        if (attachment.getBlobKey() != null) {
+            resource = blobStore.resource(attachment.getBlobKey());
+            if (ENABLE_ENCRYPTION) {
+                // Déchiffrement par segments à la volée : mémoire bornée, requêtes Range possibles
+                resource = cryptoService.decryptingResource(attachment.getKeyId(), attachment.getIv(), resource);
+            }
         } else {
-            return attachment.getCipherText();
+            resource = new ByteArrayResource(readContent(attachment)); // repli : contenu pas encore migré
+        }
+        return new FileContent(attachment.getFileName(), attachment.getContentType(), attachment.getContentDigest(), resource);
+    }
+
+    private byte[] readContent(CaseAttachment attachment) throws IOException {
+        Long attachmentId = attachment.getId();
+        String blobKey = attachment.getBlobKey();
+        if (blobKey != null) {
+            return readBlob(blobKey, attachment.getKeyId(), attachment.getIv());
+        }
+        // Ligne pas encore migrée hors de la colonne BYTEA (ancien format chiffré d'un seul bloc)
+        byte[] stored = caseAttachmentRepository.findLegacyContent(attachmentId);
+        if (stored == null) {
+            // Migrée entre-temps par BlobMigrationService
+            return readBlob(caseAttachmentRepository.findBlobKeyById(attachmentId), attachment.getKeyId(), attachment.getIv());
+        }
+        return ENABLE_ENCRYPTION ? cryptoService.decrypt(attachment.getKeyId(), attachment.getIv(), stored) : stored;
+    }
+
+    // ===== APERÇUS =====
+
+    public boolean isEncryptionEnabled() {
+        return ENABLE_ENCRYPTION;
+    }
+
+    /**
+     * Aperçu à afficher pour un rapport : celui du fichier principal s'il est prêt, sinon le plus récent
+     */
+    public Optional<ReportFile> findReportPreview(Long reportId) {
+        return reportFileRepository.findWithPreviewByReportId(reportId).stream().findFirst();
+    }
+
+    public FileContent openPreview(ReportFile reportFile) throws IOException {
+        if (reportFile.getPreviewBlobKey() == null) {
+            throw new IllegalArgumentException("Aucun aperçu disponible pour le fichier: " + reportFile.getId());
+        }
+        String extension = "image/png".equals(reportFile.getPreviewContentType()) ? ".png" : ".jpg";
+        // Le blob d'aperçu est adressé par son contenu : sa clé sert directement d'ETag
+        return new FileContent("apercu-" + reportFile.getId() + extension, reportFile.getPreviewContentType(),
+            reportFile.getPreviewBlobKey(), blobStore.resource(reportFile.getPreviewBlobKey()));
+    }
+
+    /**
+     * Enregistre l'aperçu généré pour un fichier (blob dérivé, compté comme une référence).
+     * Sans effet si le fichier a été supprimé pendant la génération.
+     */
+    @Transactional
+    public void attachPreview(Long fileId, byte[] preview, String contentType) throws IOException {
+        String blobKey = blobStore.put(new ByteArrayInputStream(preview));
+        releaseBlobOnRollback(blobKey);
+        blobReferenceService.acquire(blobKey, sha256Hex(preview), null, null, preview.length, false);
+        if (reportFileRepository.updatePreview(fileId, blobKey, contentType, ReportFile.PreviewStatus.READY) == 0) {
+            blobReferenceService.release(blobKey);
         }
     }
 
+    @Transactional
+    public void markPreview(Long fileId, ReportFile.PreviewStatus status) {
+        reportFileRepository.updatePreview(fileId, null, null, status);
+    }
+
+    // Échec compté : l'aperçu sera retenté par PreviewService.sweepPending tant qu'il reste des essais
+    @Transactional
+    public void markPreviewFailed(Long fileId) {
+        reportFileRepository.recordPreviewFailure(fileId);
+    }
+
     // ===== RECHERCHE ET LISTAGE =====
 
-    public List<ReportFile> getReportFiles(Long reportId) {
-        return reportFileRepository.findByReportIdOrderByCreatedAtDesc(reportId);
+    public List<ReportFileSummary> getReportFiles(Long reportId) {
+        return reportFileRepository.findSummariesByReportId(reportId);
     }
 
-    public List<CaseAttachment> getCaseAttachments(Long caseId) {
-        return caseAttachmentRepository.findByInsuranceCaseIdOrderByCreatedAtDesc(caseId);
+    public List<CaseAttachmentSummary> getCaseAttachments(Long caseId) {
+        return caseAttachmentRepository.findSummariesByCaseId(caseId);
     }
 
-    public List<ReportFile> searchReportFiles(Long reportId, String fileName) {
+    public List<ReportFileSummary> searchReportFiles(Long reportId, String fileName) {
         return reportFileRepository.findByReportIdAndFileNameContainingIgnoreCase(reportId, fileName);
     }
 
-    public List<CaseAttachment> searchCaseAttachments(Long caseId, String fileName) {
+    public List<CaseAttachmentSummary> searchCaseAttachments(Long caseId, String fileName) {
         return caseAttachmentRepository.findByCaseIdAndFileNameContainingIgnoreCase(caseId, fileName);
     }
 
-    public List<ReportFile> getReportFilesByType(Long reportId, String fileType) {
+    public List<ReportFileSummary> getReportFilesByType(Long reportId, String fileType) {
         return reportFileRepository.findByReportIdAndFileTypeOrderByCreatedAtDesc(reportId, fileType);
     }
 
-    public List<CaseAttachment> getCaseAttachmentsByCategory(Long caseId, String category) {
+    public List<CaseAttachmentSummary> getCaseAttachmentsByCategory(Long caseId, String category) {
         return caseAttachmentRepository.findByInsuranceCaseIdAndCategoryOrderByCreatedAtDesc(caseId, category);
     }
 
@@ -166,7 +322,17 @@ public class FileService {
     public void deleteReportFile(Long fileId) {
         ReportFile reportFile = reportFileRepository.findById(fileId)
             .orElseThrow(() -> new IllegalArgumentException("Fichier introuvable avec l'ID: " + fileId));
-        reportFileRepository.delete(reportFile);
+        deleteReportFileInternal(reportFile);
+    }
+
+    /**
+     * Supprime tous les fichiers d'un rapport ainsi que leurs blobs devenus orphelins
+     */
+    @Transactional
+    public void deleteAllReportFiles(Long reportId) {
+        for (ReportFile reportFile : reportFileRepository.findByReportIdOrderByCreatedAtDesc(reportId)) {
+            deleteReportFileInternal(reportFile);
+        }
     }
 
     @Transactional
@@ -174,6 +340,106 @@ public class FileService {
         CaseAttachment attachment = caseAttachmentRepository.findById(attachmentId)
             .orElseThrow(() -> new IllegalArgumentException("Pièce jointe introuvable avec l'ID: " + attachmentId));
         caseAttachmentRepository.delete(attachment);
+        blobReferenceService.release(attachment.getBlobKey());
+    }
+
+    /**
+     * Libère les blobs des pièces jointes d'un dossier avant sa suppression
+     * (les lignes elles-mêmes sont supprimées en cascade avec le dossier)
+     */
+    @Transactional
+    public void releaseCaseAttachmentBlobs(Long caseId) {
+        for (CaseAttachment attachment : caseAttachmentRepository.findByInsuranceCaseIdOrderByCreatedAtDesc(caseId)) {
+            blobReferenceService.release(attachment.getBlobKey());
+        }
+    }
+
+    private void deleteReportFileInternal(ReportFile reportFile) {
+        reportFileRepository.delete(reportFile);
+        blobReferenceService.release(reportFile.getBlobKey());
+        blobReferenceService.release(reportFile.getPreviewBlobKey());
+    }
+
+    // ===== STOCKAGE DU CONTENU =====
+
+    /**
+     * Pipeline d'ingestion en flux : lecture de l'upload par morceaux, calcul de l'empreinte
+     * du contenu en clair, chiffrement éventuel et écriture dans le BlobStore.
+     * Le fichier n'est jamais chargé entièrement en mémoire.
+     *
+     * Le contenu est ensuite dédupliqué : si un contenu identique est déjà stocké, le fichier
+     * en prend simplement une référence supplémentaire.
+     */
+    private BlobContent ingest(MultipartFile file, String keyId, byte[] iv) throws IOException {
+        StoredContent stored = writeBlob(file, keyId, iv);
+        BlobContent content = blobReferenceService.acquire(stored.blobKey, stored.digest, iv, keyId, file.getSize(), ENABLE_ENCRYPTION);
+        if (!blobStore.exists(content.getBlobKey())) {
+            // Blob identique supprimé par une libération concurrente juste avant la prise de référence :
+            // la référence est maintenant tenue, on le réécrit depuis l'upload avec l'IV et la clé du
+            // contenu partagé pour retrouver la même clé de blob
+            StoredContent restored = writeBlob(file, content.getKeyId(), content.getIv());
+            if (!restored.blobKey.equals(content.getBlobKey())) {
+                // Contenu partagé non reconstituable : l'upload devient un nouveau contenu
+                blobReferenceService.release(content.getBlobKey());
+                content = blobReferenceService.acquire(restored.blobKey, restored.digest, content.getIv(),
+                        content.getKeyId(), file.getSize(), false);
+            }
+        }
+        return content;
+    }
+
+    private StoredContent writeBlob(MultipartFile file, String keyId, byte[] iv) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream plain = new DigestInputStream(new BufferedInputStream(file.getInputStream(), chunkSize), digest);
+             InputStream stored = ENABLE_ENCRYPTION ? cryptoService.encryptingStream(keyId, iv, plain) : plain) {
+            String blobKey = blobStore.put(stored);
+            releaseBlobOnRollback(blobKey);
+            return new StoredContent(blobKey, HexFormat.of().formatHex(digest.digest()));
+        }
+    }
+
+    private static final class StoredContent {
+        private final String blobKey;
+        private final String digest;
+
+        private StoredContent(String blobKey, String digest) {
+            this.blobKey = blobKey;
+            this.digest = digest;
+        }
+    }
+
+    // Un blob écrit pendant une transaction annulée ne doit pas rester orphelin
+    private void releaseBlobOnRollback(String blobKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    blobReferenceService.deleteIfUnreferenced(blobKey);
+                }
+            }
+        });
+    }
+
+    private byte[] readBlob(String blobKey, String keyId, byte[] iv) throws IOException {
+        if (blobKey == null) {
+            throw new IllegalArgumentException("Contenu du fichier introuvable");
+        }
+        try (InputStream in = ENABLE_ENCRYPTION ? cryptoService.decryptingStream(keyId, iv, blobStore.open(blobKey)) : blobStore.open(blobKey)) {
+            return in.readAllBytes();
+        }
+    }
+
+    static String sha256Hex(byte[] content) {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
     }
 
     // ===== MÉTHODES UTILITAIRES =====
@@ -248,13 +514,13 @@ public class FileService {
         return caseAttachmentRepository.countByInsuranceCaseId(caseId);
     }
 
-    public List<ReportFile> getRecentReportFiles(Long reportId) {
-        java.time.LocalDateTime thirtyDaysAgo = java.time.LocalDateTime.now().minusDays(30);
+    public List<ReportFileSummary> getRecentReportFiles(Long reportId) {
+        Instant thirtyDaysAgo = Instant.now().minus(30, ChronoUnit.DAYS);
         return reportFileRepository.findRecentFilesByReportId(reportId, thirtyDaysAgo);
     }
 
-    public List<CaseAttachment> getRecentCaseAttachments(Long caseId) {
-        java.time.LocalDateTime thirtyDaysAgo = java.time.LocalDateTime.now().minusDays(30);
+    public List<CaseAttachmentSummary> getRecentCaseAttachments(Long caseId) {
+        Instant thirtyDaysAgo = Instant.now().minus(30, ChronoUnit.DAYS);
         return caseAttachmentRepository.findRecentAttachmentsByCaseId(caseId, thirtyDaysAgo);
     }
 }
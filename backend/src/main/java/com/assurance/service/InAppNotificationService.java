@@ -1,7 +1,13 @@
 package com.assurance.service;
 
+import com.assurance.domain.BroadcastNotification;
+import com.assurance.domain.BroadcastReceipt;
 import com.assurance.domain.Notification;
+import com.assurance.domain.NotificationCursor;
 import com.assurance.domain.User;
+import com.assurance.repo.BroadcastNotificationRepository;
+import com.assurance.repo.BroadcastReceiptRepository;
+import com.assurance.repo.NotificationCursorRepository;
 import com.assurance.repo.NotificationRepository;
 import com.assurance.repository.UserRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -9,16 +15,39 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.List;
-import java.util.Map;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
 
+/**
+ * Notifications in-app.
+ *
+ * Les notifications personnelles (demandes d'accès, codes, téléchargements) ont une ligne par destinataire.
+ * Les diffusions (dossier créé, rapport créé, changement de statut) n'ont qu'une ligne
+ * (broadcast_notifications) : elles sont fusionnées au flux personnel à la lecture, selon le curseur
+ * de l'utilisateur (lu / corbeille jusqu'à un identifiant) et ses marques individuelles.
+ * Dans les réponses, une diffusion porte l'identifiant négatif -id.
+ */
 @Service
 public class InAppNotificationService {
+    // Durée de conservation des notifications (voir cleanupOldNotifications)
+    private static final Duration RETENTION = Duration.ofDays(30);
+    private static final String TRASHED = "TRASHED";
     
     @Autowired
     private NotificationRepository notificationRepository;
     
+    @Autowired
+    private BroadcastNotificationRepository broadcastRepository;
+    
+    @Autowired
+    private BroadcastReceiptRepository receiptRepository;
+    
+    @Autowired
+    private NotificationCursorRepository cursorRepository;
+    
     @Autowired
     private UserRepository userRepository;
     
@@ -85,58 +114,21 @@ public class InAppNotificationService {
      * Envoie une notification à tous les utilisateurs
      */
     public void sendNotificationToAllUsers(Map<String, Object> notificationData) {
-        try {
-            // Récupérer uniquement les utilisateurs actifs et ayant déjà été connectés au moins une fois
-            List<User> allUsers = userRepository.findAll().stream()
-                .filter(User::isActive)
-                .filter(user -> user.getLastLoginAt() != null)
-                .toList();
-            
-            System.out.println("🔔 Envoi de notification à " + allUsers.size() + " utilisateurs actifs connectés au moins une fois");
-            
-            // Envoyer la notification à chaque utilisateur
-            for (User user : allUsers) {
-                try {
-                    sendNotification(user.getUsername(), notificationData);
-                } catch (Exception e) {
-                    System.err.println("Erreur lors de l'envoi à l'utilisateur " + user.getUsername() + ": " + e.getMessage());
-                }
-            }
-            
-            System.out.println("✅ Notifications envoyées à tous les utilisateurs");
-        } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi des notifications à tous les utilisateurs: " + e.getMessage());
-        }
+        sendNotificationToAllUsersExcluding(null, notificationData);
     }
     
     /**
      * Envoie une notification à tous les utilisateurs actifs et connectés au moins une fois,
      * en excluant un utilisateur (par nom d'utilisateur), si fourni.
+     * Une seule ligne écrite, quel que soit le nombre de destinataires.
      */
     public void sendNotificationToAllUsersExcluding(String excludedUsername, Map<String, Object> notificationData) {
         try {
-            List<User> allUsers = userRepository.findAll().stream()
-                .filter(User::isActive)
-                .filter(user -> user.getLastLoginAt() != null)
-                .filter(user -> excludedUsername == null || !excludedUsername.equals(user.getUsername()))
-                .toList();
-
-            System.out.println("🔔 Envoi de notification (excluant " + excludedUsername + ") à " + allUsers.size() + " utilisateurs actifs connectés au moins une fois");
-            System.out.println("🔔 [NOTIF] Utilisateurs qui recevront la notification de statut (exclusion: " + excludedUsername + "):");
-            for (User user : allUsers) {
-                System.out.println(" -> " + user.getUsername() + " (lastLoginAt=" + user.getLastLoginAt() + ", actif=" + user.isActive() + ")");
-            }
-
-            for (User user : allUsers) {
-                try {
-                    sendNotification(user.getUsername(), notificationData);
-                } catch (Exception e) {
-                    System.err.println("Erreur lors de l'envoi à l'utilisateur " + user.getUsername() + ": " + e.getMessage());
-                }
-            }
-            System.out.println("✅ Notifications envoyées à tous les utilisateurs sauf exclus");
+            BroadcastNotification broadcast = broadcast(notificationData, BroadcastNotification.Audience.ACTIVE_USERS, excludedUsername);
+            System.out.println("🔔 Notification \"" + broadcast.getTitle() + "\" diffusée aux utilisateurs actifs connectés au moins une fois"
+                + (excludedUsername != null ? " (exclusion: " + excludedUsername + ")" : ""));
         } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi des notifications à tous les utilisateurs sauf exclus: " + e.getMessage());
+            System.err.println("Erreur lors de l'envoi des notifications à tous les utilisateurs: " + e.getMessage());
         }
     }
     
@@ -146,34 +138,41 @@ public class InAppNotificationService {
      */
     public void sendNotificationToActiveRegisteredUsersExcluding(String excludedUsername, Map<String, Object> notificationData) {
         try {
-            List<User> recipients = userRepository.findAll().stream()
-                .filter(User::isActive)
-                .filter(user -> user.getStatus() != User.UserStatus.DELETED)
-                .filter(user -> user.getStatus() == User.UserStatus.REGISTERED || user.getRole() == User.UserRole.ADMIN)
-                .filter(user -> excludedUsername == null || !excludedUsername.equals(user.getUsername()))
-                .toList();
-
-            System.out.println("🔔 Envoi de notification de changement de statut à " + recipients.size() + " utilisateurs (actifs/enregistrés/admins)");
-
-            for (User user : recipients) {
-                try {
-                    sendNotification(user.getUsername(), notificationData);
-                } catch (Exception e) {
-                    System.err.println("Erreur lors de l'envoi à l'utilisateur " + user.getUsername() + ": " + e.getMessage());
-                }
-            }
-            
-            System.out.println("✅ Notifications de changement de statut envoyées");
+            broadcast(notificationData, BroadcastNotification.Audience.ACTIVE_REGISTERED_USERS, excludedUsername);
+            System.out.println("🔔 Notification de changement de statut diffusée aux utilisateurs (actifs/enregistrés/admins)");
         } catch (Exception e) {
             System.err.println("Erreur lors de l'envoi des notifications (filtrées): " + e.getMessage());
         }
     }
     
+    // Métadonnées = champs autres que les champs de base, sérialisées en JSON
+    private BroadcastNotification broadcast(Map<String, Object> notificationData, BroadcastNotification.Audience audience,
+                                            String excludedUsername) throws JsonProcessingException {
+        BroadcastNotification broadcast = new BroadcastNotification();
+        broadcast.setTitle((String) notificationData.get("title"));
+        broadcast.setMessage((String) notificationData.get("message"));
+        broadcast.setType(Notification.NotificationType.valueOf((String) notificationData.get("type")));
+        broadcast.setAction((String) notificationData.get("action"));
+        broadcast.setUrl((String) notificationData.get("url"));
+        
+        Map<String, Object> extra = new HashMap<>(notificationData);
+        extra.keySet().removeAll(List.of("title", "message", "type", "action", "url"));
+        broadcast.setMetadata(extra.isEmpty() ? null : objectMapper.writeValueAsString(extra));
+        broadcast.setAudience(audience);
+        broadcast.setExcludedUsername(excludedUsername);
+        return broadcastRepository.save(broadcast);
+    }
+    
     /**
      * Marque une notification comme lue
      */
     public boolean markAsRead(Long notificationId, String userId) {
         try {
+            if (isBroadcast(notificationId)) {
+                return updateReceipt(notificationId, userId, receipt -> {
+                    if (receipt.getReadAt() == null) receipt.setReadAt(Instant.now());
+                });
+            }
             Notification notification = notificationRepository.findById(notificationId).orElse(null);
             if (notification != null && notification.getUserId().equals(userId)) {
                 notification.setRead(true);
@@ -189,29 +188,60 @@ public class InAppNotificationService {
         }
     }
     
+    /**
+     * Marque toutes les notifications d'un utilisateur comme lues (une mise à jour, curseur avancé)
+     */
+    public boolean markAllAsRead(String userId) {
+        try {
+            notificationRepository.markAllAsRead(userId, Instant.now());
+            NotificationCursor cursor = cursor(userId);
+            long maxId = broadcastRepository.findMaxId();
+            if (maxId > cursor.getLastReadBroadcastId()) {
+                cursor.setLastReadBroadcastId(maxId);
+                cursor.setUpdatedAt(Instant.now());
+                cursorRepository.save(cursor);
+                receiptRepository.deleteReadUpTo(userId, maxId);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Erreur lors du marquage des notifications: " + e.getMessage());
+            return false;
+        }
+    }
+    
     /**
      * Récupère les notifications d'un utilisateur
      */
     public List<Notification> getNotifications(String userId) {
-        return notificationRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
-            .filter(n -> n.getAction() == null || !"TRASHED".equalsIgnoreCase(n.getAction()))
-            .toList();
+        List<Notification> result = new ArrayList<>(notificationRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
+            .filter(n -> n.getAction() == null || !TRASHED.equalsIgnoreCase(n.getAction()))
+            .toList());
+        result.addAll(broadcastsFor(userId, view -> !view.trashed));
+        return sortedByDate(result);
     }
     
     /**
      * Récupère les notifications non lues d'un utilisateur
      */
     public List<Notification> getUnreadNotifications(String userId) {
-        return notificationRepository.findByUserIdAndReadFalseOrderByCreatedAtDesc(userId).stream()
-            .filter(n -> n.getAction() == null || !"TRASHED".equalsIgnoreCase(n.getAction()))
-            .toList();
+        List<Notification> result = new ArrayList<>(notificationRepository.findByUserIdAndReadFalseOrderByCreatedAtDesc(userId).stream()
+            .filter(n -> n.getAction() == null || !TRASHED.equalsIgnoreCase(n.getAction()))
+            .toList());
+        result.addAll(broadcastsFor(userId, view -> !view.trashed && !view.notification.isRead()));
+        return sortedByDate(result);
     }
     
     /**
      * Compte les notifications non lues d'un utilisateur
      */
     public long countUnreadNotifications(String userId) {
-        return notificationRepository.countByUserIdAndReadFalse(userId);
+        long count = notificationRepository.countByUserIdAndReadFalse(userId);
+        Reader reader = reader(userId);
+        if (reader != null) {
+            count += broadcastRepository.countUnread(userId, reader.since, reader.audiences,
+                reader.cursor.getLastReadBroadcastId(), reader.cursor.getTrashedBroadcastId());
+        }
+        return count;
     }
     
     /**
@@ -219,6 +249,9 @@ public class InAppNotificationService {
      */
     public boolean deleteNotification(Long notificationId, String userId) {
         try {
+            if (isBroadcast(notificationId)) {
+                return updateReceipt(notificationId, userId, receipt -> receipt.setTrashed(true));
+            }
             // Vérifier que la notification appartient à l'utilisateur
             Notification notification = notificationRepository.findById(notificationId).orElse(null);
             if (notification == null || !notification.getUserId().equals(userId)) {
@@ -226,7 +259,7 @@ public class InAppNotificationService {
             }
 
             // Déplacer en corbeille (action = TRASHED)
-            notification.setAction("TRASHED");
+            notification.setAction(TRASHED);
             notificationRepository.save(notification);
             System.out.println("🗑️ Notification " + notificationId + " déplacée en corbeille pour l'utilisateur " + userId);
             return true;
@@ -241,6 +274,9 @@ public class InAppNotificationService {
      */
     public boolean restoreNotification(Long notificationId, String userId) {
         try {
+            if (isBroadcast(notificationId)) {
+                return updateReceipt(notificationId, userId, receipt -> receipt.setTrashed(false));
+            }
             Notification notification = notificationRepository.findById(notificationId).orElse(null);
             if (notification == null || !notification.getUserId().equals(userId)) {
                 return false;
@@ -257,9 +293,11 @@ public class InAppNotificationService {
      * Retourne les notifications en corbeille
      */
     public List<Notification> getTrashedNotifications(String userId) {
-        return notificationRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
-            .filter(n -> "TRASHED".equalsIgnoreCase(n.getAction()))
-            .toList();
+        List<Notification> result = new ArrayList<>(notificationRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
+            .filter(n -> TRASHED.equalsIgnoreCase(n.getAction()))
+            .toList());
+        result.addAll(broadcastsFor(userId, view -> view.trashed));
+        return sortedByDate(result);
     }
     
     /**
@@ -270,9 +308,17 @@ public class InAppNotificationService {
             // Soft delete: déplacer toutes les notifications de l'utilisateur dans la corbeille
             List<Notification> list = notificationRepository.findByUserIdOrderByCreatedAtDesc(userId);
             for (Notification n : list) {
-                n.setAction("TRASHED");
+                n.setAction(TRASHED);
             }
             notificationRepository.saveAll(list);
+            
+            // Diffusions : curseur de corbeille avancé, restaurations antérieures annulées
+            NotificationCursor cursor = cursor(userId);
+            long maxId = broadcastRepository.findMaxId();
+            cursor.setTrashedBroadcastId(Math.max(cursor.getTrashedBroadcastId(), maxId));
+            cursor.setUpdatedAt(Instant.now());
+            cursorRepository.save(cursor);
+            receiptRepository.resetTrashUpTo(userId, maxId);
             System.out.println("🗑️ Toutes les notifications déplacées dans la corbeille pour l'utilisateur " + userId);
             return true;
         } catch (Exception e) {
@@ -286,11 +332,120 @@ public class InAppNotificationService {
      */
     public void cleanupOldNotifications() {
         try {
-            Instant cutoffDate = Instant.now().minusSeconds(30 * 24 * 60 * 60); // 30 jours
+            Instant cutoffDate = Instant.now().minus(RETENTION);
             notificationRepository.deleteOldNotifications(cutoffDate);
+            broadcastRepository.deleteOlderThan(cutoffDate);
+            receiptRepository.deleteOrphans();
             System.out.println("🧹 Nettoyage des anciennes notifications effectué");
         } catch (Exception e) {
             System.err.println("Erreur lors du nettoyage des notifications: " + e.getMessage());
         }
     }
+    
+    private static boolean isBroadcast(Long notificationId) {
+        return notificationId != null && notificationId < 0;
+    }
+    
+    // Crée au besoin la marque individuelle de l'utilisateur sur la diffusion -notificationId
+    private boolean updateReceipt(Long notificationId, String userId, java.util.function.Consumer<BroadcastReceipt> update) {
+        Long broadcastId = -notificationId;
+        if (!broadcastRepository.existsById(broadcastId)) return false;
+        BroadcastReceipt receipt = receiptRepository.findByUserIdAndBroadcastId(userId, broadcastId)
+            .orElseGet(() -> new BroadcastReceipt(userId, broadcastId));
+        update.accept(receipt);
+        receiptRepository.save(receipt);
+        return true;
+    }
+    
+    private NotificationCursor cursor(String userId) {
+        return cursorRepository.findById(userId).orElseGet(() -> new NotificationCursor(userId));
+    }
+    
+    /**
+     * Lecteur des diffusions : audiences auxquelles il appartient, début de visibilité, curseur
+     */
+    private static class Reader {
+        Set<BroadcastNotification.Audience> audiences;
+        Instant since;
+        NotificationCursor cursor;
+    }
+    
+    private static class BroadcastView {
+        Notification notification;
+        boolean trashed;
+    }
+    
+    // null si l'utilisateur est inconnu ou ne reçoit aucune diffusion
+    private Reader reader(String userId) {
+        List<Object[]> rows = userRepository.findNotificationProfile(userId);
+        if (rows.isEmpty()) return null;
+        Object[] row = rows.get(0);
+        boolean active = Boolean.TRUE.equals(row[0]);
+        User.UserStatus status = (User.UserStatus) row[2];
+        User.UserRole role = (User.UserRole) row[3];
+        
+        Set<BroadcastNotification.Audience> audiences = EnumSet.noneOf(BroadcastNotification.Audience.class);
+        if (active && row[1] != null) audiences.add(BroadcastNotification.Audience.ACTIVE_USERS);
+        if (active && status != User.UserStatus.DELETED && (status == User.UserStatus.REGISTERED || role == User.UserRole.ADMIN)) {
+            audiences.add(BroadcastNotification.Audience.ACTIVE_REGISTERED_USERS);
+        }
+        if (audiences.isEmpty()) return null;
+        
+        // Diffusions postérieures à la création du compte, dans la durée de conservation
+        Instant since = Instant.now().minus(RETENTION);
+        if (row[4] instanceof LocalDateTime createdAt) {
+            Instant created = createdAt.atZone(ZoneId.systemDefault()).toInstant();
+            if (created.isAfter(since)) since = created;
+        }
+        
+        Reader reader = new Reader();
+        reader.audiences = audiences;
+        reader.since = since;
+        reader.cursor = cursor(userId);
+        return reader;
+    }
+    
+    private List<Notification> broadcastsFor(String userId, java.util.function.Predicate<BroadcastView> filter) {
+        Reader reader = reader(userId);
+        if (reader == null) return List.of();
+        List<BroadcastNotification> broadcasts = broadcastRepository.findVisible(userId, reader.since, reader.audiences);
+        if (broadcasts.isEmpty()) return List.of();
+        
+        long minId = broadcasts.stream().mapToLong(BroadcastNotification::getId).min().getAsLong();
+        Map<Long, BroadcastReceipt> receipts = new HashMap<>();
+        for (BroadcastReceipt receipt : receiptRepository.findByUserIdAndBroadcastIdGreaterThanEqual(userId, minId)) {
+            receipts.put(receipt.getBroadcastId(), receipt);
+        }
+        
+        List<Notification> result = new ArrayList<>();
+        for (BroadcastNotification broadcast : broadcasts) {
+            BroadcastView view = view(userId, broadcast, reader.cursor, receipts.get(broadcast.getId()));
+            if (filter.test(view)) result.add(view.notification);
+        }
+        return result;
+    }
+    
+    private static BroadcastView view(String userId, BroadcastNotification broadcast, NotificationCursor cursor, BroadcastReceipt receipt) {
+        BroadcastView view = new BroadcastView();
+        view.trashed = receipt != null && receipt.getTrashed() != null
+            ? receipt.getTrashed()
+            : broadcast.getId() <= cursor.getTrashedBroadcastId();
+        
+        Notification notification = new Notification(userId, broadcast.getTitle(), broadcast.getMessage(), broadcast.getType());
+        notification.setId(-broadcast.getId());
+        notification.setAction(view.trashed ? TRASHED : broadcast.getAction());
+        notification.setUrl(broadcast.getUrl());
+        notification.setMetadata(broadcast.getMetadata());
+        notification.setCreatedAt(broadcast.getCreatedAt());
+        boolean readByReceipt = receipt != null && receipt.getReadAt() != null;
+        notification.setRead(readByReceipt || broadcast.getId() <= cursor.getLastReadBroadcastId());
+        notification.setReadAt(readByReceipt ? receipt.getReadAt() : null);
+        view.notification = notification;
+        return view;
+    }
+    
+    private static List<Notification> sortedByDate(List<Notification> notifications) {
+        notifications.sort(Comparator.comparing(Notification::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return notifications;
+    }
 }
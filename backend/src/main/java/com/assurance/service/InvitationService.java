@@ -23,8 +23,9 @@ public class InvitationService {
     @Autowired
     private UserService userService;
     
+    // Vagues d'invitations : envoi différé, par lots sur des connexions SMTP réutilisées
     @Autowired
-    private EmailService emailService;
+    private NotificationOutboxService outboxService;
     
     @Autowired
     private UserRepository userRepository;
@@ -258,6 +259,6 @@ public class InvitationService {
             </html>
             """.formatted(invitation.getInsuranceCompany(), registrationUrl);
         
-        emailService.sendEmail(invitation.getEmail(), subject, htmlContent);
+        outboxService.enqueueEmail(invitation.getEmail(), subject, htmlContent);
     }
 }
@@ -0,0 +1,81 @@
+package com.assurance.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trousseau des clés de chiffrement des fichiers.
+ *
+ * Chaque contenu chiffré enregistre l'identifiant de la clé utilisée ; la clé active sert aux
+ * nouveaux chiffrements et les anciennes restent disponibles pour le déchiffrement.
+ * Une rotation consiste à ajouter une clé puis à l'activer, sans recréer CryptoService.
+ */
+@Component
+public class KeyRing {
+    // Clé historique : utilisée pour tout contenu sans identifiant de clé
+    public static final String DEFAULT_KEY_ID = "k0";
+
+    private final Map<String, SecretKey> keys = new ConcurrentHashMap<>();
+    private volatile String activeKeyId;
+
+    /**
+     * @param configuredKeys clés supplémentaires au format "id:base64,id:base64"
+     * @param activeKeyId    identifiant de la clé utilisée pour les nouveaux chiffrements
+     */
+    public KeyRing(@Value("${app.crypto.keys:}") String configuredKeys,
+                   @Value("${app.crypto.active-key-id:" + DEFAULT_KEY_ID + "}") String activeKeyId) {
+        // NOTE: In production, store and rotate keys using a KMS. Here we use a static demo key.
+        addKey(DEFAULT_KEY_ID, "0123456789ABCDEF0123456789ABCDEF".getBytes());
+
+        if (configuredKeys != null && !configuredKeys.isBlank()) {
+            for (String entry : configuredKeys.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Entrée de clé invalide (attendu id:base64): " + entry);
+                }
+                addKey(parts[0].trim(), Base64.getDecoder().decode(parts[1].trim()));
+            }
+        }
+        activate(activeKeyId);
+    }
+
+    public String activeKeyId() {
+        return activeKeyId;
+    }
+
+    /**
+     * Clé correspondant à l'identifiant (null = clé historique)
+     */
+    public SecretKey key(String keyId) {
+        String id = keyId != null ? keyId : DEFAULT_KEY_ID;
+        SecretKey key = keys.get(id);
+        if (key == null) {
+            throw new IllegalStateException("Clé de chiffrement inconnue: " + id);
+        }
+        return key;
+    }
+
+    public void addKey(String keyId, byte[] keyBytes) {
+        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+            throw new IllegalArgumentException("Taille de clé AES invalide pour " + keyId + ": " + keyBytes.length + " octets");
+        }
+        keys.put(keyId, new SecretKeySpec(keyBytes, "AES"));
+    }
+
+    /**
+     * Rend active une clé déjà présente dans le trousseau
+     */
+    public void activate(String keyId) {
+        if (!keys.containsKey(keyId)) {
+            throw new IllegalArgumentException("Clé de chiffrement inconnue: " + keyId);
+        }
+        this.activeKeyId = keyId;
+        System.out.println("🔑 Clé de chiffrement active: " + keyId);
+    }
+}
@@ -0,0 +1,286 @@
+package com.assurance.service;
+
+import com.assurance.domain.CompanyLogo;
+import com.assurance.domain.User;
+import com.assurance.repo.CompanyLogoRepository;
+import com.assurance.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logos des compagnies.
+ *
+ * Le logo envoyé à l'inscription (data URL en base64, User.companyLogo) est décodé une fois,
+ * redimensionné aux tailles standard et stocké en binaire (company_logos) sous l'empreinte SHA-256
+ * de l'image d'origine. Les réponses ne transportent que l'URL /api/logos/{empreinte}, servie avec
+ * des en-têtes de cache immuables depuis un cache LRU en mémoire.
+ * Les empreintes des créateurs de rapports sont mémorisées par nom d'utilisateur jusqu'à la
+ * prochaine modification d'un utilisateur.
+ */
+@Service
+public class LogoService {
+    public static final String URL_PREFIX = "/api/logos/";
+    // Image d'origine, conservée telle quelle si ImageIO ne sait pas la lire (ex. SVG)
+    private static final int ORIGINAL_SIZE = 0;
+    // Utilisateur sans logo (mémorisé aussi, pour ne pas le redemander à chaque liste)
+    private static final String NO_LOGO = "";
+    private static final int MAX_HASH_CACHE = 10_000;
+
+    private final UserRepository userRepository;
+    private final CompanyLogoRepository companyLogoRepository;
+    private final TransactionTemplate newTransaction;
+    private final Map<String, String> hashByUsername = new ConcurrentHashMap<>();
+    private final Map<String, LogoImage> images;
+    private final int[] sizes;
+
+    @Value("${app.logos.default-size:64}")
+    private int defaultSize;
+
+    // Taille maximale du logo décodé (octets) et de l'image déclarée (pixels) ; au-delà, il est refusé
+    @Value("${app.logos.max-bytes:1048576}")
+    private int maxBytes;
+
+    @Value("${app.logos.max-pixels:16777216}")
+    private long maxPixels;
+
+    private volatile boolean backfillDone = false;
+
+    public LogoService(UserRepository userRepository,
+                       CompanyLogoRepository companyLogoRepository,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.logos.sizes:32,64,128}") int[] sizes,
+                       @Value("${app.logos.cache-entries:512}") int cacheEntries) {
+        this.userRepository = userRepository;
+        this.companyLogoRepository = companyLogoRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sizes = Arrays.stream(sizes).filter(size -> size > 0).sorted().distinct().toArray();
+        this.images = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LogoImage> eldest) {
+                return size() > cacheEntries;
+            }
+        });
+    }
+
+    /**
+     * Décode le logo, en stocke les tailles standard s'il est nouveau et retourne son empreinte
+     *
+     * @throws IllegalArgumentException si le logo n'est pas du base64 valide ou dépasse les tailles maximales
+     */
+    public String store(String logo) {
+        LogoImage original = decode(logo, maxBytes);
+        String hash = sha256(original.getBytes());
+        if (companyLogoRepository.existsByLogoHash(hash)) return hash;
+
+        List<CompanyLogo> variants = new ArrayList<>();
+        BufferedImage image = readImage(original.getBytes(), maxPixels, sizes.length > 0 ? sizes[sizes.length - 1] : defaultSize);
+        if (image == null) {
+            variants.add(variant(hash, ORIGINAL_SIZE, original.getContentType(), original.getBytes()));
+        } else {
+            for (int size : sizes) {
+                variants.add(variant(hash, size, "image/png", resizePng(image, size)));
+            }
+        }
+        try {
+            newTransaction.executeWithoutResult(status -> companyLogoRepository.saveAll(variants));
+        } catch (DataIntegrityViolationException e) {
+            // Même logo enregistré en parallèle (contrainte unique) : déjà disponible
+        }
+        return hash;
+    }
+
+    /**
+     * Empreinte du logo de chaque utilisateur qui en a un (une requête au plus pour les absents du cache)
+     */
+    public Map<String, String> logoHashes(Collection<String> usernames) {
+        Set<String> missing = new HashSet<>();
+        for (String username : usernames) {
+            if (username != null && !hashByUsername.containsKey(username)) missing.add(username);
+        }
+        if (!missing.isEmpty()) {
+            Map<String, String> loaded = new HashMap<>();
+            for (Object[] row : userRepository.findLogoHashes(missing)) {
+                loaded.put((String) row[0], (String) row[1]);
+            }
+            if (hashByUsername.size() + missing.size() > MAX_HASH_CACHE) hashByUsername.clear();
+            for (String username : missing) {
+                hashByUsername.put(username, loaded.getOrDefault(username, NO_LOGO));
+            }
+        }
+
+        Map<String, String> result = new HashMap<>();
+        for (String username : usernames) {
+            String hash = username != null ? hashByUsername.get(username) : null;
+            if (hash != null && !hash.isEmpty()) result.put(username, hash);
+        }
+        return result;
+    }
+
+    public static String logoUrl(String hash) {
+        return hash != null ? URL_PREFIX + hash : null;
+    }
+
+    /**
+     * Logo à la plus petite taille standard couvrant la taille demandée (taille par défaut si null)
+     */
+    public Optional<LogoImage> find(String hash, Integer requestedSize) {
+        int size = standardSize(requestedSize != null ? requestedSize : defaultSize);
+        String key = hash + ":" + size;
+        LogoImage cached = images.get(key);
+        if (cached != null) return Optional.of(cached);
+
+        Optional<LogoImage> image = companyLogoRepository.findByLogoHashAndSizePx(hash, size)
+            .or(() -> companyLogoRepository.findByLogoHashAndSizePx(hash, ORIGINAL_SIZE))
+            .map(logo -> new LogoImage(logo.getData(), logo.getContentType()));
+        image.ifPresent(value -> images.put(key, value));
+        return image;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEntityChanged(AdminDashboardChangedEvent event) {
+        if (User.class.getSimpleName().equals(event.getEntityName())) {
+            hashByUsername.clear();
+        }
+    }
+
+    /**
+     * Reprise des logos enregistrés avant la table company_logos
+     */
+    @Scheduled(initialDelayString = "${app.logos.backfill-initial-delay-ms:30000}",
+               fixedDelayString = "${app.logos.backfill-delay-ms:600000}")
+    public void backfillStoredLogos() {
+        if (backfillDone) return;
+        try {
+            int stored = 0;
+            for (Long userId : userRepository.findIdsWithLogoNotStored()) {
+                User user = userRepository.findById(userId).orElse(null);
+                if (user == null || user.getCompanyLogo() == null) continue;
+                try {
+                    user.setCompanyLogoHash(store(user.getCompanyLogo()));
+                    userRepository.save(user);
+                    stored++;
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Logo illisible pour l'utilisateur " + userId + ": " + e.getMessage());
+                }
+            }
+            backfillDone = true;
+            if (stored > 0) {
+                System.out.println("🖼️ Logos de compagnie repris: " + stored);
+            }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la reprise des logos de compagnie: " + e.getMessage());
+        }
+    }
+
+    private int standardSize(int requested) {
+        for (int size : sizes) {
+            if (size >= requested) return size;
+        }
+        return sizes.length > 0 ? sizes[sizes.length - 1] : ORIGINAL_SIZE;
+    }
+
+    private static CompanyLogo variant(String hash, int size, String contentType, byte[] data) {
+        CompanyLogo logo = new CompanyLogo();
+        logo.setLogoHash(hash);
+        logo.setSizePx(size);
+        logo.setContentType(contentType);
+        logo.setData(data);
+        return logo;
+    }
+
+    // Dimensions vérifiées avant décodage, image réduite dès la lecture (BoundedImageReader)
+    private static BufferedImage readImage(byte[] bytes, long maxPixels, int targetSize) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            return BoundedImageReader.read(input, maxPixels, targetSize);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // PNG (transparence conservée) dont le côté le plus long vaut au plus size ; jamais agrandi
+    private static byte[] resizePng(BufferedImage original, int size) {
+        float scale = Math.min(1f, size / (float) Math.max(original.getWidth(), original.getHeight()));
+        int width = Math.max(1, Math.round(original.getWidth() * scale));
+        int height = Math.max(1, Math.round(original.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(scaled, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Accepte une data URL (data:image/png;base64,...) ou du base64 brut (PNG par défaut)
+    static LogoImage decode(String logo, int maxBytes) {
+        String contentType = "image/png";
+        String data = logo.trim();
+        if (data.startsWith("data:")) {
+            int comma = data.indexOf(',');
+            String header = data.substring(5, Math.max(5, comma));
+            int semicolon = header.indexOf(';');
+            String declared = semicolon >= 0 ? header.substring(0, semicolon) : header;
+            if (declared.startsWith("image/")) contentType = declared;
+            data = comma >= 0 ? data.substring(comma + 1) : "";
+        }
+        // Estimation haute de la taille décodée, vérifiée avant d'allouer le tableau
+        if ((long) data.length() / 4 * 3 > (long) maxBytes + 3) {
+            throw new IllegalArgumentException("logo trop volumineux (maximum " + maxBytes + " octets)");
+        }
+        byte[] bytes = Base64.getMimeDecoder().decode(data);
+        if (bytes.length == 0) throw new IllegalArgumentException("logo vide");
+        if (bytes.length > maxBytes) throw new IllegalArgumentException("logo trop volumineux (maximum " + maxBytes + " octets)");
+        return new LogoImage(bytes, contentType);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class LogoImage {
+        private final byte[] bytes;
+        private final String contentType;
+
+        public LogoImage(byte[] bytes, String contentType) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+        }
+
+        public byte[] getBytes() { return bytes; }
+        public String getContentType() { return contentType; }
+    }
+}
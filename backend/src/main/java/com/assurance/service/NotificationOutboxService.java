@@ -0,0 +1,304 @@
+package com.assurance.service;
+
+import com.assurance.domain.Notification;
+import com.assurance.domain.NotificationOutbox;
+import com.assurance.repo.NotificationOutboxRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envoi différé des notifications (table notification_outbox).
+ *
+ * Les messages sont écrits dans la transaction du traitement qui les produit : la requête
+ * se termine dès la validation, sans attendre le serveur SMTP. Après validation, un répartiteur
+ * réserve les messages dus de chaque canal (FOR UPDATE SKIP LOCKED, bail de lease-ms) à hauteur
+ * des places libres du pool de ce canal, puis les envoie. Un échec est réessayé avec un délai
+ * doublé à chaque tentative ; après max-attempts le message passe en DEAD (lettre morte).
+ * Un message réservé par une instance arrêtée est repris à l'expiration de son bail.
+ * Les emails sont envoyés par lots de email.batch-size, chaque lot sur une connexion SMTP du pool.
+ */
+@Service
+public class NotificationOutboxService {
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final EmailService emailService;
+    private final SmsService smsService;
+    private final InAppNotificationService inAppNotificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<NotificationOutbox.Channel, ThreadPoolExecutor> pools = new EnumMap<>(NotificationOutbox.Channel.class);
+    private final Map<NotificationOutbox.Channel, AtomicInteger> inFlight = new EnumMap<>(NotificationOutbox.Channel.class);
+    private final ThreadPoolExecutor dispatcher;
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean();
+
+    @Value("${app.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.backoff-ms:30000}")
+    private long backoffMs;
+
+    @Value("${app.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${app.outbox.email.batch-size:20}")
+    private int emailBatchSize;
+
+    @Value("${app.outbox.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${app.outbox.retention-days:7}")
+    private int retentionDays;
+
+    public NotificationOutboxService(NotificationOutboxRepository outboxRepository,
+                                     EmailService emailService,
+                                     SmsService smsService,
+                                     InAppNotificationService inAppNotificationService,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.outbox.email.concurrency:2}") int emailConcurrency,
+                                     @Value("${app.outbox.sms.concurrency:2}") int smsConcurrency,
+                                     @Value("${app.outbox.in-app.concurrency:4}") int inAppConcurrency) {
+        this.outboxRepository = outboxRepository;
+        this.emailService = emailService;
+        this.smsService = smsService;
+        this.inAppNotificationService = inAppNotificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        pools.put(NotificationOutbox.Channel.EMAIL, pool("outbox-email-", emailConcurrency));
+        pools.put(NotificationOutbox.Channel.SMS, pool("outbox-sms-", smsConcurrency));
+        pools.put(NotificationOutbox.Channel.IN_APP, pool("outbox-in-app-", inAppConcurrency));
+        for (NotificationOutbox.Channel channel : NotificationOutbox.Channel.values()) {
+            inFlight.put(channel, new AtomicInteger());
+        }
+        this.dispatcher = pool("outbox-dispatcher-", 1);
+    }
+
+    private static ThreadPoolExecutor pool(String prefix, int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, prefix + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    public void enqueueEmail(String to, String subject, String htmlContent) {
+        if (to == null || !to.contains("@")) {
+            System.err.println("Email non programmé, adresse invalide: " + to);
+            return;
+        }
+        enqueue(new NotificationOutbox(NotificationOutbox.Channel.EMAIL, to, subject, htmlContent));
+    }
+
+    public void enqueueSms(String phoneNumber, String message) {
+        if (phoneNumber == null || phoneNumber.isBlank()) return;
+        enqueue(new NotificationOutbox(NotificationOutbox.Channel.SMS, phoneNumber, null, message));
+    }
+
+    public void enqueueInApp(String userId, Map<String, Object> notificationData) {
+        try {
+            enqueue(new NotificationOutbox(NotificationOutbox.Channel.IN_APP, userId, null,
+                objectMapper.writeValueAsString(notificationData)));
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new IllegalArgumentException("Notification non sérialisable: " + e.getMessage(), e);
+        }
+    }
+
+    // Dans la transaction de l'appelant s'il y en a une ; envoi déclenché après validation
+    private void enqueue(NotificationOutbox message) {
+        outboxRepository.save(message);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestDispatch();
+                }
+            });
+        } else {
+            requestDispatch();
+        }
+    }
+
+    private void requestDispatch() {
+        if (!dispatchRequested.compareAndSet(false, true)) return;
+        try {
+            dispatcher.execute(() -> {
+                dispatchRequested.set(false);
+                dispatch();
+            });
+        } catch (RejectedExecutionException e) {
+            dispatchRequested.set(false); // arrêt en cours : repris au prochain démarrage
+        }
+    }
+
+    // Filet de sécurité : réessais arrivés à échéance, baux expirés, messages d'autres instances
+    @Scheduled(initialDelayString = "${app.outbox.poll-initial-delay-ms:15000}",
+               fixedDelayString = "${app.outbox.poll-delay-ms:5000}")
+    public void poll() {
+        requestDispatch();
+    }
+
+    private void dispatch() {
+        for (NotificationOutbox.Channel channel : NotificationOutbox.Channel.values()) {
+            try {
+                ThreadPoolExecutor pool = pools.get(channel);
+                int free = pool.getMaximumPoolSize() - inFlight.get(channel).get();
+                if (free <= 0) continue;
+                // Emails : un lot par tâche, envoyé sur une seule connexion SMTP
+                int batch = channel == NotificationOutbox.Channel.EMAIL ? Math.max(1, emailBatchSize) : 1;
+                List<NotificationOutbox> claimed = claim(channel, free * batch);
+                for (int from = 0; from < claimed.size(); from += batch) {
+                    List<NotificationOutbox> messages = claimed.subList(from, Math.min(from + batch, claimed.size()));
+                    inFlight.get(channel).incrementAndGet();
+                    try {
+                        pool.execute(() -> {
+                            try {
+                                deliver(channel, messages);
+                            } finally {
+                                inFlight.get(channel).decrementAndGet();
+                                requestDispatch(); // une place s'est libérée
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        inFlight.get(channel).decrementAndGet(); // repris à l'expiration du bail
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Erreur lors de la répartition des notifications (" + channel + "): " + e.getMessage());
+            }
+        }
+    }
+
+    List<NotificationOutbox> claim(NotificationOutbox.Channel channel, int limit) {
+        return transactionTemplate.execute(status -> {
+            List<Long> ids = outboxRepository.lockDue(channel.name(), Instant.now(), limit);
+            if (ids.isEmpty()) return List.<NotificationOutbox>of();
+            outboxRepository.markProcessing(ids, Instant.now().plusMillis(leaseMs));
+            return outboxRepository.findAllById(ids);
+        });
+    }
+
+    void deliver(NotificationOutbox.Channel channel, List<NotificationOutbox> messages) {
+        if (channel == NotificationOutbox.Channel.EMAIL) {
+            List<EmailService.OutgoingEmail> emails = new ArrayList<>(messages.size());
+            for (NotificationOutbox message : messages) {
+                emails.add(new EmailService.OutgoingEmail(message.getRecipient(), message.getSubject(), message.getBody()));
+            }
+            List<MessagingException> failures;
+            try {
+                failures = emailService.deliverBatch(emails);
+            } catch (Exception e) {
+                failures = null;
+                for (NotificationOutbox message : messages) complete(message, e);
+            }
+            if (failures != null) {
+                for (int i = 0; i < messages.size(); i++) complete(messages.get(i), failures.get(i));
+            }
+            return;
+        }
+        for (NotificationOutbox message : messages) {
+            Exception failure = null;
+            try {
+                send(message);
+            } catch (Exception e) {
+                failure = e;
+            }
+            complete(message, failure);
+        }
+    }
+
+    private void send(NotificationOutbox message) throws Exception {
+        switch (message.getChannel()) {
+            case EMAIL -> emailService.deliver(message.getRecipient(), message.getSubject(), message.getBody());
+            case SMS -> smsService.sendSms(message.getRecipient(), message.getBody());
+            case IN_APP -> {
+                Map<String, Object> data = objectMapper.readValue(message.getBody(), new TypeReference<HashMap<String, Object>>() {});
+                Notification saved = inAppNotificationService.sendNotification(message.getRecipient(), data);
+                if (saved == null) throw new IllegalStateException("notification in-app non enregistrée");
+            }
+        }
+    }
+
+    // Enregistre le résultat d'un envoi (failure null : remis)
+    private void complete(NotificationOutbox message, Exception failure) {
+        if (failure == null) {
+            message.setStatus(NotificationOutbox.Status.SENT);
+            message.setSentAt(Instant.now());
+            message.setLastError(null);
+        } else {
+            int attempts = message.getAttempts() + 1;
+            message.setAttempts(attempts);
+            message.setLastError(truncate(failure.getClass().getSimpleName() + ": " + failure.getMessage()));
+            if (attempts >= maxAttempts) {
+                message.setStatus(NotificationOutbox.Status.DEAD);
+                System.err.println("☠️ Notification " + message.getId() + " (" + message.getChannel() + ") abandonnée après "
+                    + attempts + " tentative(s): " + failure.getMessage());
+            } else {
+                message.setStatus(NotificationOutbox.Status.PENDING);
+                message.setNextAttemptAt(Instant.now().plus(backoff(attempts)));
+                System.err.println("Échec de l'envoi de la notification " + message.getId() + " (" + message.getChannel()
+                    + "), tentative " + attempts + "/" + maxAttempts + ": " + failure.getMessage());
+            }
+        }
+        try {
+            outboxRepository.save(message);
+        } catch (Exception e) {
+            // Statut non enregistré : le message sera renvoyé à l'expiration du bail
+            System.err.println("Erreur lors de la mise à jour de la notification " + message.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        long delay = backoffMs << Math.min(attempts - 1, 20);
+        return Duration.ofMillis(Math.min(delay, maxBackoffMs));
+    }
+
+    @Scheduled(initialDelayString = "${app.outbox.cleanup-initial-delay-ms:600000}",
+               fixedDelayString = "${app.outbox.cleanup-delay-ms:86400000}")
+    public void purgeSent() {
+        try {
+            int deleted = outboxRepository.deleteSentBefore(Instant.now().minus(Duration.ofDays(retentionDays)));
+            long dead = outboxRepository.countByStatus(NotificationOutbox.Status.DEAD);
+            if (deleted > 0 || dead > 0) {
+                System.out.println("🧹 Notifications envoyées purgées: " + deleted + " ; en lettre morte: " + dead);
+            }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la purge des notifications envoyées: " + e.getMessage());
+        }
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_ERROR_LENGTH ? value.substring(0, MAX_ERROR_LENGTH) : value;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        pools.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+}
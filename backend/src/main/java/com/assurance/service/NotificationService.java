@@ -1,31 +1,76 @@
 package com.assurance.service;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
 public class NotificationService {
     
+    // Modèles utilisés (resources/notifications/templates.properties), vérifiés au démarrage
+    private static final String REQUEST_OWNER_IN_APP_TITLE = "report-request.owner.in-app.title";
+    private static final String REQUEST_OWNER_IN_APP_MESSAGE = "report-request.owner.in-app.message";
+    private static final String REQUEST_CONFIRMATION_EMAIL_SUBJECT = "report-request.confirmation.email.subject";
+    private static final String REQUEST_CONFIRMATION_EMAIL_BODY = "report-request.confirmation.email.body";
+    private static final String REQUEST_CONFIRMATION_SMS = "report-request.confirmation.sms";
+    private static final String REQUEST_CONFIRMATION_IN_APP_TITLE = "report-request.confirmation.in-app.title";
+    private static final String REQUEST_CONFIRMATION_IN_APP_MESSAGE = "report-request.confirmation.in-app.message";
+    private static final String VALIDATION_CODE_EMAIL_SUBJECT = "validation-code.email.subject";
+    private static final String VALIDATION_CODE_EMAIL_BODY = "validation-code.email.body";
+    private static final String VALIDATION_CODE_SMS = "validation-code.sms";
+    private static final String VALIDATION_CODE_IN_APP_TITLE = "validation-code.in-app.title";
+    private static final String VALIDATION_CODE_IN_APP_MESSAGE = "validation-code.in-app.message";
+    private static final String REPORT_DOWNLOADED_EMAIL_SUBJECT = "report-downloaded.email.subject";
+    private static final String REPORT_DOWNLOADED_EMAIL_BODY = "report-downloaded.email.body";
+    private static final String REPORT_DOWNLOADED_IN_APP_TITLE = "report-downloaded.in-app.title";
+    private static final String REPORT_DOWNLOADED_IN_APP_MESSAGE = "report-downloaded.in-app.message";
+    private static final String DOWNLOAD_COMPLETED_IN_APP_TITLE = "download-completed.in-app.title";
+    private static final String DOWNLOAD_COMPLETED_IN_APP_MESSAGE = "download-completed.in-app.message";
+    private static final List<String> TEMPLATE_NAMES = List.of(
+        REQUEST_OWNER_IN_APP_TITLE,
+        REQUEST_OWNER_IN_APP_MESSAGE,
+        REQUEST_CONFIRMATION_EMAIL_SUBJECT,
+        REQUEST_CONFIRMATION_EMAIL_BODY,
+        REQUEST_CONFIRMATION_SMS,
+        REQUEST_CONFIRMATION_IN_APP_TITLE,
+        REQUEST_CONFIRMATION_IN_APP_MESSAGE,
+        VALIDATION_CODE_EMAIL_SUBJECT,
+        VALIDATION_CODE_EMAIL_BODY,
+        VALIDATION_CODE_SMS,
+        VALIDATION_CODE_IN_APP_TITLE,
+        VALIDATION_CODE_IN_APP_MESSAGE,
+        REPORT_DOWNLOADED_EMAIL_SUBJECT,
+        REPORT_DOWNLOADED_EMAIL_BODY,
+        REPORT_DOWNLOADED_IN_APP_TITLE,
+        REPORT_DOWNLOADED_IN_APP_MESSAGE,
+        DOWNLOAD_COMPLETED_IN_APP_TITLE,
+        DOWNLOAD_COMPLETED_IN_APP_MESSAGE);
+    
     @Value("${app.base-url:http://localhost:3000}")
     private String baseUrl;
     
+    // Envoi après validation de la transaction appelante, avec réessais (NotificationOutboxService)
     @Autowired
-    private EmailService emailService;
+    private NotificationOutboxService outboxService;
     
     @Autowired
-    private SmsService smsService;
+    private ReportService reportService;
     
+    // Modèles précompilés ; un contexte par événement, partagé par l'email, le SMS et l'in-app
     @Autowired
-    private InAppNotificationService inAppNotificationService;
+    private NotificationTemplates templates;
     
-    @Autowired
-    private ReportService reportService;
+    // Un nom de modèle absent ferait échouer silencieusement toute la notification au rendu
+    @PostConstruct
+    public void checkTemplates() {
+        templates.requireTemplates(TEMPLATE_NAMES);
+    }
     
     /**
      * Envoie une notification de création de demande de rapport
@@ -35,7 +80,7 @@ public class NotificationService {
         System.out.println("Demandeur: " + requesterName + " (" + requesterCompany + ")");
         System.out.println("Rapport: " + reportTitle);
         System.out.println("Motif: " + reason);
-        System.out.println("Date: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+        System.out.println("Date: " + templates.formatDateTime(LocalDateTime.now()));
         System.out.println("=====================================================");
     }
     
@@ -43,7 +88,14 @@ public class NotificationService {
      * Envoie une notification au propriétaire du rapport
      */
     public void sendReportRequestToOwner(String ownerName, String requesterName, String requesterCompany, String requesterEmail, String requesterPhone, String reportTitle, String reason) {
+        Map<String, Object> notificationData;
         try {
+            NotificationTemplates.Context context = templates.context()
+                .with("reportTitle", reportTitle)
+                .with("requesterName", requesterName)
+                .with("requesterCompany", requesterCompany)
+                .with("date", LocalDateTime.now());
+            
             System.out.println("=== NOTIFICATION: Demande de rapport reçue ===");
             System.out.println("Propriétaire du rapport: " + ownerName);
             System.out.println("Rapport: " + reportTitle);
@@ -51,13 +103,13 @@ public class NotificationService {
             System.out.println("Email: " + requesterEmail);
             System.out.println("Téléphone: " + requesterPhone);
             System.out.println("Motif: " + reason);
-            System.out.println("Date: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+            System.out.println("Date: " + context.get("date"));
             System.out.println("===============================================");
             
             // Notification in-app pour le propriétaire
-            Map<String, Object> notificationData = new HashMap<>();
-            notificationData.put("title", "Nouvelle demande de rapport");
-            notificationData.put("message", "Demande de rapport pour \"" + reportTitle + "\" par " + requesterName + " (" + requesterCompany + ")");
+            notificationData = new HashMap<>();
+            notificationData.put("title", context.render(REQUEST_OWNER_IN_APP_TITLE));
+            notificationData.put("message", context.render(REQUEST_OWNER_IN_APP_MESSAGE));
             notificationData.put("type", "REPORT_REQUEST_TO_OWNER");
             notificationData.put("action", "review");
             notificationData.put("url", "/rapports/requests");
@@ -67,160 +119,175 @@ public class NotificationService {
             notificationData.put("requesterPhone", requesterPhone);
             notificationData.put("reason", reason);
             notificationData.put("reportTitle", reportTitle);
-            
-            inAppNotificationService.sendNotification(ownerName, notificationData);
-            
         } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi de la notification au propriétaire: " + e.getMessage());
+            System.err.println("Erreur lors de la préparation de la notification au propriétaire: " + e.getMessage());
+            return;
         }
+        
+        // Hors du try : l'écriture dans l'outbox fait partie de la transaction de l'appelant
+        outboxService.enqueueInApp(ownerName, notificationData);
     }
     
     /**
      * Envoie une confirmation au demandeur
      */
     public void sendReportRequestConfirmation(String requesterName, String requesterEmail, String requesterPhone, String reportTitle, String ownerName) {
+        String subject;
+        String body;
+        String sms;
+        Map<String, Object> notificationData;
         try {
+            NotificationTemplates.Context context = templates.context()
+                .with("reportTitle", reportTitle)
+                .with("ownerName", ownerName)
+                .with("date", LocalDateTime.now());
+            
             System.out.println("=== NOTIFICATION: Confirmation de demande de rapport ===");
             System.out.println("Demandeur: " + requesterName);
             System.out.println("Rapport: " + reportTitle);
             System.out.println("Propriétaire: " + ownerName);
-            System.out.println("Date: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+            System.out.println("Date: " + context.get("date"));
             System.out.println("========================================================");
             
-            // Envoyer par email
-            String subject = "✅ Confirmation de demande de rapport - " + reportTitle;
-            String emailContent = String.format(
-                "Votre demande de rapport pour \"%s\" a été envoyée à %s.\n" +
-                "Vous recevrez une notification dès que votre demande sera traitée.",
-                reportTitle, ownerName
-            );
-            emailService.sendEmail(requesterEmail, subject, emailContent);
+            subject = context.render(REQUEST_CONFIRMATION_EMAIL_SUBJECT);
+            body = context.render(REQUEST_CONFIRMATION_EMAIL_BODY);
+            sms = context.render(REQUEST_CONFIRMATION_SMS);
             
-            // Envoyer par SMS
-            if (requesterPhone != null && !requesterPhone.isEmpty()) {
-                String smsMessage = String.format(
-                    "Demande de rapport pour %s envoyée à %s. Vous recevrez une notification.",
-                    reportTitle, ownerName
-                );
-                smsService.sendSms(requesterPhone, smsMessage);
-            }
-            
-            // Notification in-app
-            Map<String, Object> notificationData = new HashMap<>();
-            notificationData.put("title", "Demande de rapport envoyée");
-            notificationData.put("message", "Votre demande pour \"" + reportTitle + "\" a été envoyée à " + ownerName);
+            notificationData = new HashMap<>();
+            notificationData.put("title", context.render(REQUEST_CONFIRMATION_IN_APP_TITLE));
+            notificationData.put("message", context.render(REQUEST_CONFIRMATION_IN_APP_MESSAGE));
             notificationData.put("type", "REPORT_REQUEST_CONFIRMATION");
             notificationData.put("reportTitle", reportTitle);
             notificationData.put("ownerName", ownerName);
-            
-            inAppNotificationService.sendNotification(requesterName, notificationData);
-            
         } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi de la confirmation: " + e.getMessage());
+            System.err.println("Erreur lors de la préparation de la confirmation: " + e.getMessage());
+            return;
         }
+        
+        // Envoyer par email
+        outboxService.enqueueEmail(requesterEmail, subject, body);
+        
+        // Envoyer par SMS
+        if (requesterPhone != null && !requesterPhone.isEmpty()) {
+            outboxService.enqueueSms(requesterPhone, sms);
+        }
+        
+        // Notification in-app
+        outboxService.enqueueInApp(requesterName, notificationData);
     }
     
     /**
      * Envoie le code de validation au demandeur
      */
     public void sendValidationCode(String requesterName, String requesterEmail, String requesterPhone, String reportTitle, String validationCode, LocalDateTime expiresAt) {
+        String subject;
+        String body;
+        String sms;
+        Map<String, Object> notificationData;
         try {
+            NotificationTemplates.Context context = templates.context()
+                .with("reportTitle", reportTitle)
+                .with("code", validationCode)
+                .with("expiresAt", expiresAt);
+            
             System.out.println("=== NOTIFICATION: Code de validation généré ===");
             System.out.println("Demandeur: " + requesterName);
             System.out.println("Rapport: " + reportTitle);
             System.out.println("Code: " + validationCode);
-            System.out.println("Expire le: " + expiresAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+            System.out.println("Expire le: " + context.get("expiresAt"));
             System.out.println("===============================================");
             
-            // Envoyer par email
-            String subject = "🔐 Code de validation pour " + reportTitle;
-            String emailContent = String.format(
-                "Votre demande de rapport pour \"%s\" a été approuvée.\n" +
-                "Code de validation: %s\n" +
-                "Expire le: %s\n" +
-                "Utilisez ce code pour télécharger le rapport.",
-                reportTitle, validationCode, expiresAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
-            );
-            emailService.sendEmail(requesterEmail, subject, emailContent);
-            
-            // Envoyer par SMS
-            if (requesterPhone != null && !requesterPhone.isEmpty()) {
-                String smsMessage = String.format(
-                    "Code de validation: %s pour %s. Expire le %s.",
-                    validationCode, reportTitle, expiresAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
-                );
-                smsService.sendSms(requesterPhone, smsMessage);
-            }
+            subject = context.render(VALIDATION_CODE_EMAIL_SUBJECT);
+            body = context.render(VALIDATION_CODE_EMAIL_BODY);
+            sms = context.render(VALIDATION_CODE_SMS);
             
-            // Notification in-app
-            Map<String, Object> notificationData = new HashMap<>();
-            notificationData.put("title", "Code de validation généré");
-            notificationData.put("message", "Votre code " + validationCode + " pour \"" + reportTitle + "\" est prêt");
+            notificationData = new HashMap<>();
+            notificationData.put("title", context.render(VALIDATION_CODE_IN_APP_TITLE));
+            notificationData.put("message", context.render(VALIDATION_CODE_IN_APP_MESSAGE));
             notificationData.put("type", "VALIDATION_CODE_GENERATED");
             notificationData.put("action", "download");
             notificationData.put("code", validationCode);
-            notificationData.put("expiresAt", expiresAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+            notificationData.put("expiresAt", context.get("expiresAt"));
             notificationData.put("reportTitle", reportTitle);
-            
-            inAppNotificationService.sendNotification(requesterName, notificationData);
-            
         } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi du code de validation: " + e.getMessage());
+            System.err.println("Erreur lors de la préparation du code de validation: " + e.getMessage());
+            return;
+        }
+        
+        // Envoyer par email
+        outboxService.enqueueEmail(requesterEmail, subject, body);
+        
+        // Envoyer par SMS
+        if (requesterPhone != null && !requesterPhone.isEmpty()) {
+            outboxService.enqueueSms(requesterPhone, sms);
         }
+        
+        // Notification in-app
+        outboxService.enqueueInApp(requesterName, notificationData);
     }
     
     /**
      * Envoie une notification de téléchargement au propriétaire
      */
     public void sendDownloadNotification(String ownerName, String requesterName, String reportTitle) {
+        String subject;
+        String body;
+        Map<String, Object> notificationData;
         try {
+            NotificationTemplates.Context context = templates.context()
+                .with("reportTitle", reportTitle)
+                .with("requesterName", requesterName)
+                .with("date", LocalDateTime.now());
+            
             System.out.println("=== NOTIFICATION: Rapport téléchargé ===");
             System.out.println("Propriétaire: " + ownerName);
             System.out.println("Demandeur: " + requesterName);
             System.out.println("Rapport: " + reportTitle);
-            System.out.println("Date: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+            System.out.println("Date: " + context.get("date"));
             System.out.println("=========================================");
             
-            // Envoyer par email
-            String subject = "📥 Rapport téléchargé - " + reportTitle;
-            String emailContent = String.format(
-                "%s a téléchargé votre rapport \"%s\".\n" +
-                "Date de téléchargement: %s",
-                requesterName, reportTitle, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
-            );
-            emailService.sendEmail(ownerName, subject, emailContent);
+            subject = context.render(REPORT_DOWNLOADED_EMAIL_SUBJECT);
+            body = context.render(REPORT_DOWNLOADED_EMAIL_BODY);
             
-            // Notification in-app
-            Map<String, Object> notificationData = new HashMap<>();
-            notificationData.put("title", "Rapport téléchargé");
-            notificationData.put("message", requesterName + " a téléchargé votre rapport \"" + reportTitle + "\"");
+            notificationData = new HashMap<>();
+            notificationData.put("title", context.render(REPORT_DOWNLOADED_IN_APP_TITLE));
+            notificationData.put("message", context.render(REPORT_DOWNLOADED_IN_APP_MESSAGE));
             notificationData.put("type", "REPORT_DOWNLOADED");
             notificationData.put("requesterName", requesterName);
             notificationData.put("reportTitle", reportTitle);
-            notificationData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
-            
-            inAppNotificationService.sendNotification(ownerName, notificationData);
-            
+            notificationData.put("timestamp", context.get("date"));
         } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi de la notification de téléchargement: " + e.getMessage());
+            System.err.println("Erreur lors de la préparation de la notification de téléchargement: " + e.getMessage());
+            return;
         }
+        
+        // Envoyer par email
+        outboxService.enqueueEmail(ownerName, subject, body);
+        
+        // Notification in-app
+        outboxService.enqueueInApp(ownerName, notificationData);
     }
     
     /**
      * Envoie une notification de téléchargement effectué (pour compatibilité)
      */
     public void sendDownloadCompleted(String userId, String reportTitle, String downloadUrl) {
+        Map<String, Object> notificationData;
         try {
-            Map<String, Object> notificationData = new HashMap<>();
-            notificationData.put("title", "Téléchargement effectué");
-            notificationData.put("message", "Vous avez téléchargé \"" + reportTitle + "\"");
-            notificationData.put("type", "DOWNLOAD_COMPLETED");
-            notificationData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
-            
-            inAppNotificationService.sendNotification(userId, notificationData);
+            NotificationTemplates.Context context = templates.context()
+                .with("reportTitle", reportTitle)
+                .with("date", LocalDateTime.now());
             
+            notificationData = new HashMap<>();
+            notificationData.put("title", context.render(DOWNLOAD_COMPLETED_IN_APP_TITLE));
+            notificationData.put("message", context.render(DOWNLOAD_COMPLETED_IN_APP_MESSAGE));
+            notificationData.put("type", "DOWNLOAD_COMPLETED");
+            notificationData.put("timestamp", context.get("date"));
         } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi de la notification de téléchargement: " + e.getMessage());
+            System.err.println("Erreur lors de la préparation de la notification de téléchargement: " + e.getMessage());
+            return;
         }
+        
+        outboxService.enqueueInApp(userId, notificationData);
     }
 }
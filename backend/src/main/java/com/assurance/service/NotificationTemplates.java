@@ -0,0 +1,171 @@
+package com.assurance.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Modèles des notifications (resources/notifications/templates.properties).
+ *
+ * Chaque modèle est découpé une fois au démarrage en segments de texte et variables {nom} ;
+ * le rendu se fait dans un tampon réutilisé par thread. Un contexte (context()) porte les variables
+ * d'un événement, déjà formatées (dates selon la langue configurée), et sert aux rendus email,
+ * SMS et in-app de ce même événement.
+ */
+@Component
+public class NotificationTemplates {
+    private static final String RESOURCE = "notifications/templates";
+    private static final Pattern VARIABLE = Pattern.compile("\\{([A-Za-z][A-Za-z0-9]*)\\}");
+    // Au-delà, le tampon n'est pas conservé (un email exceptionnellement long)
+    private static final int MAX_BUFFER_CAPACITY = 16 * 1024;
+
+    private final Map<String, Template> templates;
+    private final DateTimeFormatter dateTimeFormatter;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    public NotificationTemplates(@Value("${app.notifications.locale:fr-FR}") String localeTag,
+                                 @Value("${app.notifications.date-time-pattern:dd/MM/yyyy HH:mm}") String dateTimePattern) {
+        Locale locale = Locale.forLanguageTag(localeTag);
+        this.dateTimeFormatter = DateTimeFormatter.ofPattern(dateTimePattern, locale);
+
+        Properties sources = load(RESOURCE + ".properties", new Properties());
+        if (!locale.getLanguage().isEmpty()) {
+            load(RESOURCE + "_" + locale.getLanguage() + ".properties", sources);
+        }
+        Map<String, Template> compiled = new HashMap<>();
+        for (String name : sources.stringPropertyNames()) {
+            compiled.put(name, Template.compile(sources.getProperty(name)));
+        }
+        this.templates = Map.copyOf(compiled);
+    }
+
+    public Context context() {
+        return new Context();
+    }
+
+    public String formatDateTime(TemporalAccessor dateTime) {
+        return dateTime != null ? dateTimeFormatter.format(dateTime) : "";
+    }
+
+    /**
+     * Vérifie au démarrage que les modèles utilisés par l'appelant existent
+     *
+     * @throws IllegalStateException en listant les modèles manquants
+     */
+    public void requireTemplates(Collection<String> names) {
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            if (!templates.containsKey(name)) missing.add(name);
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Modèles de notification manquants dans " + RESOURCE + ".properties: " + missing);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException si le modèle n'existe pas
+     */
+    public String render(String name, Context context) {
+        Template template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("Modèle de notification inconnu: " + name);
+        }
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        template.renderTo(buffer, context.values);
+        String result = buffer.toString();
+        if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+            buffers.remove();
+        }
+        return result;
+    }
+
+    // Fichier facultatif (surcharge par langue) : ignoré s'il est absent
+    private static Properties load(String path, Properties into) {
+        ClassPathResource resource = new ClassPathResource(path);
+        if (!resource.exists()) return into;
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            into.load(reader);
+            return into;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lecture impossible des modèles de notification " + path, e);
+        }
+    }
+
+    /**
+     * Variables d'un événement ; une variable absente est rendue vide
+     */
+    public class Context {
+        private final Map<String, String> values = new HashMap<>();
+
+        public Context with(String name, Object value) {
+            String text;
+            if (value == null) {
+                text = "";
+            } else if (value instanceof TemporalAccessor dateTime) {
+                text = dateTimeFormatter.format(dateTime);
+            } else {
+                text = value.toString();
+            }
+            values.put(name, text);
+            return this;
+        }
+
+        public String get(String name) {
+            return values.getOrDefault(name, "");
+        }
+
+        public String render(String template) {
+            return NotificationTemplates.this.render(template, this);
+        }
+    }
+
+    // literals[i] précède variables[i] ; literals a un élément de plus que variables
+    private static final class Template {
+        private final String[] literals;
+        private final String[] variables;
+
+        private Template(String[] literals, String[] variables) {
+            this.literals = literals;
+            this.variables = variables;
+        }
+
+        static Template compile(String source) {
+            List<String> literals = new ArrayList<>();
+            List<String> variables = new ArrayList<>();
+            Matcher matcher = VARIABLE.matcher(source);
+            int last = 0;
+            while (matcher.find()) {
+                literals.add(source.substring(last, matcher.start()));
+                variables.add(matcher.group(1));
+                last = matcher.end();
+            }
+            literals.add(source.substring(last));
+            return new Template(literals.toArray(new String[0]), variables.toArray(new String[0]));
+        }
+
+        void renderTo(StringBuilder out, Map<String, String> values) {
+            for (int i = 0; i < variables.length; i++) {
+                out.append(literals[i]).append(values.getOrDefault(variables[i], ""));
+            }
+            out.append(literals[variables.length]);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.assurance.service;
+
+import com.assurance.domain.ReportFile;
+import com.assurance.repo.ReportFileRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Génération en arrière-plan des aperçus des fichiers de rapport :
+ * PNG basse résolution de la première page pour les PDF, JPEG réduit pour les images.
+ *
+ * Les uploads alimentent une file bornée traitée par quelques threads ; une tâche planifiée
+ * reprend les fichiers restés en attente (file pleine, redémarrage, fichiers antérieurs) et retente
+ * les échecs jusqu'à app.preview.max-attempts. Une image trop grande est définitivement UNSUPPORTED.
+ * Les aperçus ne sont pas générés lorsque le chiffrement est activé : ils seraient stockés en clair.
+ */
+@Service
+public class PreviewService {
+    private final FileService fileService;
+    private final ReportFileRepository reportFileRepository;
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.preview.max-width:480}")
+    private int maxWidth;
+
+    @Value("${app.preview.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${app.preview.sweep-batch-size:50}")
+    private int sweepBatchSize;
+
+    @Value("${app.preview.max-attempts:3}")
+    private int maxAttempts;
+
+    // Images déclarant plus de pixels refusées avant décodage (BoundedImageReader)
+    @Value("${app.preview.max-pixels:40000000}")
+    private long maxPixels;
+
+    public PreviewService(FileService fileService,
+                          ReportFileRepository reportFileRepository,
+                          @Value("${app.preview.threads:2}") int threads,
+                          @Value("${app.preview.queue-capacity:200}") int queueCapacity) {
+        this.fileService = fileService;
+        this.reportFileRepository = reportFileRepository;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "preview-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                // Rendu PDF/image moins prioritaire que le traitement des requêtes
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onReportFileUploaded(ReportFileUploadedEvent event) {
+        if (fileService.isEncryptionEnabled()) return;
+        submit(event.getReportFileId());
+    }
+
+    @Scheduled(initialDelayString = "${app.preview.sweep-initial-delay-ms:60000}",
+               fixedDelayString = "${app.preview.sweep-delay-ms:60000}")
+    public void sweepPending() {
+        if (fileService.isEncryptionEnabled()) return;
+        try {
+            int capacity = Math.min(sweepBatchSize, executor.getQueue().remainingCapacity());
+            if (capacity <= 0) return;
+            List<Long> ids = reportFileRepository.findIdsPendingPreview(capacity + inFlight.size(), maxAttempts);
+            for (Long id : ids) {
+                submit(id);
+            }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la reprise des aperçus en attente: " + e.getMessage());
+        }
+    }
+
+    private void submit(Long fileId) {
+        if (!inFlight.add(fileId)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(fileId);
+                } finally {
+                    inFlight.remove(fileId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // File pleine : le fichier reste en attente et sera repris par sweepPending
+            inFlight.remove(fileId);
+        }
+    }
+
+    private void generate(Long fileId) {
+        ReportFile reportFile = reportFileRepository.findById(fileId).orElse(null);
+        if (reportFile == null || reportFile.getPreviewStatus() == ReportFile.PreviewStatus.READY) return;
+
+        try {
+            String kind = previewKind(reportFile);
+            if (kind == null) {
+                fileService.markPreview(fileId, ReportFile.PreviewStatus.UNSUPPORTED);
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            Resource source = fileService.openReportFile(reportFile).getResource();
+            byte[] preview;
+            String contentType;
+            if ("pdf".equals(kind)) {
+                preview = renderPdfFirstPage(source);
+                contentType = "image/png";
+            } else {
+                preview = downscaleImage(source);
+                contentType = "image/jpeg";
+            }
+
+            if (preview == null) {
+                fileService.markPreview(fileId, ReportFile.PreviewStatus.UNSUPPORTED);
+                return;
+            }
+            fileService.attachPreview(fileId, preview, contentType);
+            System.out.println("🖼️ Aperçu généré pour le fichier " + fileId + " (" + preview.length + " octets, "
+                    + (System.currentTimeMillis() - start) + " ms)");
+        } catch (IllegalArgumentException e) {
+            // Image refusée (dimensions) : inutile de la retenter
+            System.err.println("Aperçu non généré pour le fichier " + fileId + ": " + e.getMessage());
+            try {
+                fileService.markPreview(fileId, ReportFile.PreviewStatus.UNSUPPORTED);
+            } catch (Exception ignored) {}
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la génération de l'aperçu du fichier " + fileId + ": " + e.getMessage());
+            try {
+                fileService.markPreviewFailed(fileId);
+            } catch (Exception ignored) {}
+        }
+    }
+
+    private String previewKind(ReportFile reportFile) {
+        String contentType = reportFile.getContentType() != null ? reportFile.getContentType().toLowerCase() : "";
+        String extension = reportFile.getFileExtension();
+        if (contentType.equals("application/pdf") || extension.equals("pdf")) return "pdf";
+        if (contentType.startsWith("image/") || extension.matches("jpe?g|png|gif")) return "image";
+        return null;
+    }
+
+    private byte[] renderPdfFirstPage(Resource source) throws IOException {
+        // Fichier sur disque : PDFBox n'en lit que les parties nécessaires à la première page
+        try (PDDocument document = source.isFile()
+                ? Loader.loadPDF(source.getFile())
+                : Loader.loadPDF(new RandomAccessReadBuffer(source.getInputStream()))) {
+            if (document.getNumberOfPages() == 0) return null;
+
+            PDRectangle page = document.getPage(0).getCropBox();
+            float scale = Math.min(1f, maxWidth / Math.max(1f, page.getWidth()));
+            BufferedImage image = new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+    }
+
+    private byte[] downscaleImage(Resource source) throws IOException {
+        BufferedImage original;
+        try (InputStream in = source.getInputStream();
+             ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+            original = BoundedImageReader.read(imageIn, maxPixels, maxWidth);
+        }
+        if (original == null) return null; // format non reconnu par ImageIO
+
+        int width = Math.min(maxWidth, original.getWidth());
+        int height = Math.max(1, Math.round(original.getHeight() * (width / (float) original.getWidth())));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE); // fond blanc pour les images transparentes
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            ImageWriteParam params = writer.getDefaultWriteParam();
+            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            params.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(scaled, null, null), params);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
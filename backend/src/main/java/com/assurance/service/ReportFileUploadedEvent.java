@@ -0,0 +1,15 @@
+package com.assurance.service;
+
+/**
+ * Publié à l'upload d'un fichier de rapport ; traité après validation de la transaction
+ * (génération de l'aperçu, ...)
+ */
+public class ReportFileUploadedEvent {
+    private final Long reportFileId;
+
+    public ReportFileUploadedEvent(Long reportFileId) {
+        this.reportFileId = reportFileId;
+    }
+
+    public Long getReportFileId() { return reportFileId; }
+}
@@ -1,9 +1,11 @@
 package com.assurance.service;
 
+import com.assurance.domain.AuditEvent;
 import com.assurance.entity.ReportRequest;
 import com.assurance.repository.ReportRequestRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -22,9 +24,13 @@ public class ReportRequestService {
     @Autowired
     private ReportService reportService;
     
+    @Autowired
+    private AuditService auditService;
+    
     /**
      * Crée une nouvelle demande de rapport
      */
+    @Transactional
     public ReportRequest createReportRequest(Long reportId, String reportTitle, String requesterId,
                                            String requesterName, String requesterEmail, String requesterCompany,
                                            String requesterPhone, String reason) {
@@ -39,6 +45,8 @@ public class ReportRequestService {
                                                 requesterName, requesterEmail, requesterCompany, requesterPhone, reason);
         
         ReportRequest savedRequest = repository.save(request);
+        recordAuditEvent(AuditEvent.EventType.ACCESS_REQUEST_CREATED, requesterName,
+                "Demande d'accès au Rapport \"" + reportTitle + "\"", savedRequest, requesterCompany);
         
         // Récupérer le propriétaire du rapport
         String ownerName = getReportOwner(reportId);
@@ -57,6 +65,7 @@ public class ReportRequestService {
     /**
      * Approuve une demande de rapport et génère un code de validation
      */
+    @Transactional
     public ReportRequest approveRequest(Long requestId, String processedBy) {
         ReportRequest request = repository.findById(requestId)
                 .orElseThrow(() -> new IllegalArgumentException("Demande de rapport non trouvée"));
@@ -71,6 +80,8 @@ public class ReportRequestService {
         // Approuver la demande
         request.approve(processedBy, validationCode);
         ReportRequest approvedRequest = repository.save(request);
+        recordAuditEvent(AuditEvent.EventType.ACCESS_REQUEST_APPROVED, processedBy,
+                "Demande d'accès approuvée: Rapport \"" + request.getReportTitle() + "\"", approvedRequest, null);
         
         // Envoyer le code par notifications multi-canal
         notificationService.sendValidationCode(request.getRequesterName(), request.getRequesterEmail(), 
@@ -93,6 +104,8 @@ public class ReportRequestService {
         
         request.reject(processedBy);
         ReportRequest rejectedRequest = repository.save(request);
+        recordAuditEvent(AuditEvent.EventType.ACCESS_REQUEST_REJECTED, processedBy,
+                "Demande d'accès rejetée: Rapport \"" + request.getReportTitle() + "\"", rejectedRequest, null);
         
         // TODO: Envoyer notification de rejet au demandeur
         // notificationService.sendReportRequestRejected(rejectedRequest);
@@ -103,6 +116,7 @@ public class ReportRequestService {
     /**
      * Valide un code de validation et marque la demande comme téléchargée
      */
+    @Transactional
     public ReportRequest validateCodeAndDownload(String validationCode) {
         ReportRequest request = repository.findByValidationCode(validationCode)
                 .orElseThrow(() -> new IllegalArgumentException("Code de validation invalide"));
@@ -257,6 +271,19 @@ public class ReportRequestService {
         return repository.findByValidationCode(validationCode);
     }
     
+    /**
+     * Enregistre l'événement d'audit d'une demande (les statistiques des rapports en dépendent)
+     */
+    private void recordAuditEvent(AuditEvent.EventType type, String actor, String message,
+                                  ReportRequest request, String companyCode) {
+        try {
+            auditService.record(type, actor, message, AuditEvent.EntityType.REPORT_REQUEST, request.getId(), companyCode);
+        } catch (Exception e) {
+            // Ne pas faire échouer le traitement de la demande
+            System.err.println("Erreur lors de la création de l'événement d'audit: " + e.getMessage());
+        }
+    }
+    
     /**
      * Génère un code de validation unique
      */
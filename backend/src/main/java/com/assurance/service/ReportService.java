@@ -4,7 +4,6 @@ import com.assurance.domain.AuditEvent;
 import com.assurance.domain.Report;
 import com.assurance.domain.InsuranceCase;
 import com.assurance.domain.ReportFile;
-import com.assurance.repo.AuditEventRepository;
 import com.assurance.repo.ReportRepository;
 import com.assurance.repo.InsuranceCaseRepository;
 import com.assurance.repo.ReportFileRepository;
@@ -21,18 +20,23 @@ import java.util.HashMap;
 @Service
 public class ReportService {
     private final ReportRepository reportRepository;
-    private final AuditEventRepository auditEventRepository;
+    private final AuditService auditService;
     private final InsuranceCaseRepository insuranceCaseRepository;
     private final ReportFileRepository reportFileRepository;
+    private final FileService fileService;
     
     @Autowired
     private InAppNotificationService notificationService;
+    
+    @Autowired
+    private ReportStatsService reportStatsService;
 
-    public ReportService(ReportRepository reportRepository, AuditEventRepository auditEventRepository, InsuranceCaseRepository insuranceCaseRepository, ReportFileRepository reportFileRepository) {
+    public ReportService(ReportRepository reportRepository, AuditService auditService, InsuranceCaseRepository insuranceCaseRepository, ReportFileRepository reportFileRepository, FileService fileService) {
         this.reportRepository = reportRepository;
-        this.auditEventRepository = auditEventRepository;
+        this.auditService = auditService;
         this.insuranceCaseRepository = insuranceCaseRepository;
         this.reportFileRepository = reportFileRepository;
+        this.fileService = fileService;
     }
 
     public List<Report> list() { return reportRepository.findAll(); }
@@ -66,14 +70,13 @@ public class ReportService {
         payload.setCreatedBy(createdBy);
         
         Report saved = reportRepository.save(payload);
+        reportStatsService.reportCreated(saved);
         
         // Créer l'événement d'audit de manière sécurisée
         try {
-            AuditEvent evt = new AuditEvent();
-            evt.setType(AuditEvent.EventType.REPORT_CREATED);
-            evt.setActor(createdBy);
-            evt.setMessage("Rapport créé: \"" + saved.getTitle() + "\"");
-            auditEventRepository.save(evt);
+            auditService.record(AuditEvent.EventType.REPORT_CREATED, createdBy,
+                    "Rapport créé: \"" + saved.getTitle() + "\"",
+                    AuditEvent.EntityType.REPORT, saved.getId());
         } catch (Exception e) {
             // Log l'erreur mais ne pas faire échouer la création du rapport
             System.err.println("Erreur lors de la création de l'événement d'audit: " + e.getMessage());
@@ -119,14 +122,13 @@ public class ReportService {
         }
         
         Report saved = reportRepository.save(payload);
+        reportStatsService.reportCreated(saved);
         
         // Créer l'événement d'audit de manière sécurisée
         try {
-            AuditEvent evt = new AuditEvent();
-            evt.setType(AuditEvent.EventType.REPORT_CREATED);
-            evt.setActor("system");
-            evt.setMessage("Rapport créé: \"" + saved.getTitle() + "\"");
-            auditEventRepository.save(evt);
+            auditService.record(AuditEvent.EventType.REPORT_CREATED, "system",
+                    "Rapport créé: \"" + saved.getTitle() + "\"",
+                    AuditEvent.EntityType.REPORT, saved.getId());
         } catch (Exception e) {
             // Log l'erreur mais ne pas faire échouer la création du rapport
             System.err.println("Erreur lors de la création de l'événement d'audit: " + e.getMessage());
@@ -242,11 +244,9 @@ public class ReportService {
         
         // Créer un événement d'audit pour la création du dossier
         try {
-            AuditEvent evt = new AuditEvent();
-            evt.setType(AuditEvent.EventType.CASE_CREATED);
-            evt.setActor(caseCreator);
-            evt.setMessage("Dossier créé automatiquement: " + caseCode);
-            auditEventRepository.save(evt);
+            auditService.record(AuditEvent.EventType.CASE_CREATED, caseCreator,
+                    "Dossier créé automatiquement: " + caseCode,
+                    AuditEvent.EntityType.CASE, savedCase.getId());
         } catch (Exception e) {
             System.err.println("Erreur lors de la création de l'événement d'audit pour le dossier: " + e.getMessage());
         }
@@ -311,11 +311,10 @@ public class ReportService {
         
         // Créer l'événement d'audit de manière sécurisée
         try {
-            AuditEvent evt = new AuditEvent();
-            evt.setType(AuditEvent.EventType.REPORT_CREATED); // On pourrait ajouter un type REPORT_UPDATED
-            evt.setActor("system");
-            evt.setMessage("Rapport modifié: \"" + updated.getTitle() + "\"");
-            auditEventRepository.save(evt);
+            // On pourrait ajouter un type REPORT_UPDATED
+            auditService.record(AuditEvent.EventType.REPORT_CREATED, "system",
+                    "Rapport modifié: \"" + updated.getTitle() + "\"",
+                    AuditEvent.EntityType.REPORT, updated.getId());
         } catch (Exception e) {
             // Log l'erreur mais ne pas faire échouer la modification du rapport
             System.err.println("Erreur lors de la création de l'événement d'audit: " + e.getMessage());
@@ -329,25 +328,23 @@ public class ReportService {
         Report report = reportRepository.findById(id).orElse(null);
         if (report != null) {
             // Supprimer d'abord les fichiers associés pour respecter la contrainte FK
+            // (leurs blobs sont libérés après validation de la transaction)
             try {
-                List<ReportFile> reportFiles = reportFileRepository.findByReportIdOrderByCreatedAtDesc(id);
-                for (ReportFile file : reportFiles) {
-                    reportFileRepository.delete(file);
-                }
+                fileService.deleteAllReportFiles(id);
             } catch (Exception e) {
                 System.err.println("Erreur lors de la suppression des fichiers du rapport: " + e.getMessage());
             }
             
             // Ensuite supprimer le rapport
             reportRepository.deleteById(id);
+            reportStatsService.reportDeleted(report);
             
             // Créer l'événement d'audit de manière sécurisée
             try {
-                AuditEvent evt = new AuditEvent();
-                evt.setType(AuditEvent.EventType.REPORT_CREATED); // On pourrait ajouter un type REPORT_DELETED
-                evt.setActor("system");
-                evt.setMessage("Rapport supprimé: \"" + report.getTitle() + "\"");
-                auditEventRepository.save(evt);
+                // On pourrait ajouter un type REPORT_DELETED
+                auditService.record(AuditEvent.EventType.REPORT_CREATED, "system",
+                        "Rapport supprimé: \"" + report.getTitle() + "\"",
+                        AuditEvent.EntityType.REPORT, report.getId());
             } catch (Exception e) {
                 // Log l'erreur mais ne pas faire échouer la suppression du rapport
                 System.err.println("Erreur lors de la création de l'événement d'audit: " + e.getMessage());
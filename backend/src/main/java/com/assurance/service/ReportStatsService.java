@@ -0,0 +1,352 @@
+package com.assurance.service;
+
+import com.assurance.domain.AuditEvent;
+import com.assurance.domain.Report;
+import com.assurance.domain.StatsSnapshot;
+import com.assurance.repo.AuditEventRepository;
+import com.assurance.repo.ReportRepository;
+import com.assurance.repo.StatsSnapshotRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs de statistiques des rapports tenus en mémoire.
+ *
+ * ReportService, ReportRequestService et CaseService signalent chaque événement d'audit écrit
+ * (après validation de la transaction) : la lecture des statistiques ne parcourt plus les tables.
+ * Au démarrage, les compteurs sont reconstruits à partir de la dernière photographie et des
+ * événements d'audit postérieurs ; les compteurs de rapports, à partir de requêtes agrégées.
+ *
+ * La photographie est calculée en base (photographie précédente + événements jusqu'au nouveau
+ * filigrane), pas à partir des compteurs en mémoire. Les événements d'audit ne sont pas validés dans
+ * l'ordre de leurs identifiants (écriture par lots, écriture synchrone de secours, autres instances) :
+ * le filigrane n'avance que jusqu'au plus grand identifiant observé au moins snapshot-overlap-ms
+ * plus tôt, délai après lequel les transactions d'écriture plus anciennes sont terminées.
+ *
+ * Les compteurs sont propres à l'instance : avec plusieurs instances, chacune ne voit que ses
+ * propres écritures jusqu'à son prochain redémarrage.
+ */
+@Service
+public class ReportStatsService implements SmartInitializingSingleton {
+    // Fenêtre des rapports « modifiés » (créés dans les 30 derniers jours)
+    private static final int MODIFIED_WINDOW_DAYS = 30;
+    private static final int RECENT_SIZE = 5;
+
+    private final ReportRepository reportRepository;
+    private final AuditEventRepository auditEventRepository;
+    private final StatsSnapshotRepository statsSnapshotRepository;
+    private final ObjectMapper objectMapper;
+
+    private volatile Counters counters = new Counters();
+    private volatile boolean ready = false;
+
+    // Plus grand identifiant observé au passage précédent : futur filigrane de la photographie
+    private long pendingWatermark = -1;
+    private Instant pendingWatermarkAt;
+
+    @Value("${app.stats.snapshot-overlap-ms:60000}")
+    private long snapshotOverlapMs;
+
+    public ReportStatsService(ReportRepository reportRepository,
+                              AuditEventRepository auditEventRepository,
+                              StatsSnapshotRepository statsSnapshotRepository,
+                              ObjectMapper objectMapper) {
+        this.reportRepository = reportRepository;
+        this.auditEventRepository = auditEventRepository;
+        this.statsSnapshotRepository = statsSnapshotRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    private static final class Counters {
+        final AtomicLong totalReports = new AtomicLong();
+        final Map<String, LongAdder> reportsByCreator = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<LocalDate, LongAdder> reportsByDay = new ConcurrentSkipListMap<>();
+        final Map<AuditEvent.EventType, Map<String, LongAdder>> eventsByActor = new EnumMap<>(AuditEvent.EventType.class);
+        final Deque<AuditEvent> recentAccessRequests = new ArrayDeque<>();
+
+        Counters() {
+            for (AuditEvent.EventType type : AuditEvent.EventType.values()) {
+                eventsByActor.put(type, new ConcurrentHashMap<>());
+            }
+        }
+    }
+
+    // Reconstruction avant l'ouverture du serveur HTTP : aucune écriture ne peut s'intercaler
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Reconstruit tous les compteurs (photographie + rejeu des événements d'audit postérieurs)
+     */
+    public synchronized void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            Counters rebuilt = new Counters();
+
+            rebuilt.totalReports.set(reportRepository.count());
+            for (Object[] row : reportRepository.countReportsByCompany()) {
+                adder(rebuilt.reportsByCreator, creatorKey((String) row[0])).add(((Number) row[1]).longValue());
+            }
+            for (Instant createdAt : reportRepository.findCreatedAtSince(windowStart().atStartOfDay(zone()).toInstant())) {
+                adder(rebuilt.reportsByDay, day(createdAt)).increment();
+            }
+
+            long upToId = auditEventRepository.findMaxId();
+            Map<AuditEvent.EventType, Map<String, Long>> saved = new EnumMap<>(AuditEvent.EventType.class);
+            long afterId = loadSnapshot(saved);
+            addEventCounts(saved, afterId, upToId);
+            saved.forEach((type, byActor) ->
+                byActor.forEach((actor, count) -> adder(rebuilt.eventsByActor.get(type), actor).add(count)));
+            rebuilt.recentAccessRequests.addAll(
+                auditEventRepository.findTop5ByTypeOrderByAtISODesc(AuditEvent.EventType.ACCESS_REQUEST_CREATED));
+
+            counters = rebuilt;
+            ready = true;
+            System.out.println("📊 Statistiques reconstruites en " + (System.currentTimeMillis() - start)
+                    + " ms (événements rejoués après #" + afterId + ")");
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la reconstruction des statistiques: " + e.getMessage());
+        }
+    }
+
+    // Compteurs d'événements de la dernière photographie ; retourne son filigrane
+    private long loadSnapshot(Map<AuditEvent.EventType, Map<String, Long>> target) {
+        try {
+            StatsSnapshot snapshot = statsSnapshotRepository.findTopByOrderByIdDesc().orElse(null);
+            if (snapshot == null) return 0;
+
+            Map<String, Map<String, Long>> saved = objectMapper.readValue(snapshot.getCountersJson(),
+                new TypeReference<Map<String, Map<String, Long>>>() {});
+            for (Map.Entry<String, Map<String, Long>> byType : saved.entrySet()) {
+                AuditEvent.EventType type;
+                try {
+                    type = AuditEvent.EventType.valueOf(byType.getKey());
+                } catch (IllegalArgumentException ignored) {
+                    continue; // type d'événement supprimé depuis
+                }
+                target.put(type, new HashMap<>(byType.getValue()));
+            }
+            return snapshot.getLastAuditEventId();
+        } catch (Exception e) {
+            // Photographie illisible : rejeu complet du journal d'audit
+            System.err.println("Photographie des statistiques ignorée: " + e.getMessage());
+            target.clear();
+            return 0;
+        }
+    }
+
+    // Ajoute les événements d'identifiant compris dans ]afterId, upToId]
+    private void addEventCounts(Map<AuditEvent.EventType, Map<String, Long>> target, long afterId, long upToId) {
+        if (upToId <= afterId) return;
+        for (Object[] row : auditEventRepository.countByTypeAndActorBetweenIds(afterId, upToId)) {
+            AuditEvent.EventType type = (AuditEvent.EventType) row[0];
+            target.computeIfAbsent(type, t -> new HashMap<>())
+                .merge(actorKey((String) row[1]), ((Number) row[2]).longValue(), Long::sum);
+        }
+    }
+
+    /**
+     * Nouvelle photographie : la précédente plus les événements jusqu'au filigrane observé au passage
+     * précédent (au moins snapshot-overlap-ms plus tôt)
+     */
+    @Scheduled(initialDelayString = "${app.stats.snapshot-delay-ms:300000}",
+               fixedDelayString = "${app.stats.snapshot-delay-ms:300000}")
+    public synchronized void snapshot() {
+        try {
+            long observed = auditEventRepository.findMaxId();
+            Instant now = Instant.now();
+            long watermark = pendingWatermark;
+            boolean settled = pendingWatermarkAt != null
+                && !pendingWatermarkAt.plusMillis(snapshotOverlapMs).isAfter(now);
+            if (!settled) {
+                if (pendingWatermarkAt == null) {
+                    pendingWatermark = observed;
+                    pendingWatermarkAt = now;
+                }
+                return;
+            }
+            pendingWatermark = observed;
+            pendingWatermarkAt = now;
+
+            Map<AuditEvent.EventType, Map<String, Long>> eventCounts = new EnumMap<>(AuditEvent.EventType.class);
+            long afterId = loadSnapshot(eventCounts);
+            if (watermark <= afterId) return;
+            addEventCounts(eventCounts, afterId, watermark);
+
+            Map<String, Map<String, Long>> json = new LinkedHashMap<>();
+            eventCounts.forEach((type, byActor) -> json.put(type.name(), byActor));
+            StatsSnapshot snapshot = new StatsSnapshot();
+            snapshot.setLastAuditEventId(watermark);
+            snapshot.setCountersJson(objectMapper.writeValueAsString(json));
+            StatsSnapshot saved = statsSnapshotRepository.save(snapshot);
+            statsSnapshotRepository.deleteOlderThan(saved.getId());
+        } catch (Exception e) {
+            System.err.println("Erreur lors de l'enregistrement de la photographie des statistiques: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prend en compte un événement d'audit déjà validé en base (appelé par l'écriture des événements d'audit)
+     */
+    public void record(AuditEvent event) {
+        if (event == null || event.getId() == null) return;
+        Counters current = counters;
+        adder(current.eventsByActor.get(event.getType()), actorKey(event.getActor())).increment();
+        if (event.getType() == AuditEvent.EventType.ACCESS_REQUEST_CREATED) {
+            synchronized (current.recentAccessRequests) {
+                current.recentAccessRequests.addFirst(event);
+                while (current.recentAccessRequests.size() > RECENT_SIZE) {
+                    current.recentAccessRequests.removeLast();
+                }
+            }
+        }
+    }
+
+    public void reportCreated(Report report) {
+        afterCommit(() -> {
+            Counters current = counters;
+            current.totalReports.incrementAndGet();
+            adder(current.reportsByCreator, creatorKey(report.getCreatedBy())).increment();
+            LocalDate start = windowStart();
+            if (report.getCreatedAt() != null && !day(report.getCreatedAt()).isBefore(start)) {
+                adder(current.reportsByDay, day(report.getCreatedAt())).increment();
+            }
+            current.reportsByDay.headMap(start).clear(); // jours sortis de la fenêtre
+        });
+    }
+
+    public void reportDeleted(Report report) {
+        afterCommit(() -> {
+            Counters current = counters;
+            current.totalReports.decrementAndGet();
+            adder(current.reportsByCreator, creatorKey(report.getCreatedBy())).decrement();
+            if (report.getCreatedAt() != null) {
+                LongAdder perDay = current.reportsByDay.get(day(report.getCreatedAt()));
+                if (perDay != null) perDay.decrement();
+            }
+        });
+    }
+
+    public long totalReports() {
+        ensureReady();
+        return counters.totalReports.get();
+    }
+
+    /**
+     * Rapports créés depuis le début de la fenêtre de 30 jours (somme d'au plus 31 compteurs journaliers).
+     * Lecture seule : les jours sortis de la fenêtre sont ignorés ici et purgés par reportCreated.
+     */
+    public long reportsCreatedInWindow() {
+        ensureReady();
+        long total = 0;
+        for (LongAdder count : counters.reportsByDay.tailMap(windowStart(), true).values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Nombre de rapports par créateur (compteurs à zéro omis)
+     */
+    public Map<String, Long> reportsByCreator() {
+        ensureReady();
+        return snapshotOf(counters.reportsByCreator);
+    }
+
+    public long countEvents(AuditEvent.EventType type) {
+        ensureReady();
+        long total = 0;
+        for (LongAdder count : counters.eventsByActor.get(type).values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Nombre d'événements du type donné par acteur (compteurs à zéro omis)
+     */
+    public Map<String, Long> countEventsByActor(AuditEvent.EventType type) {
+        ensureReady();
+        return snapshotOf(counters.eventsByActor.get(type));
+    }
+
+    /**
+     * Dernières demandes d'accès, de la plus récente à la plus ancienne
+     */
+    public List<AuditEvent> recentAccessRequests() {
+        ensureReady();
+        Deque<AuditEvent> recent = counters.recentAccessRequests;
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    // Nouvelle tentative si la base était indisponible au démarrage
+    private void ensureReady() {
+        if (!ready) rebuild();
+    }
+
+    private static Map<String, Long> snapshotOf(Map<String, LongAdder> source) {
+        Map<String, Long> values = new HashMap<>();
+        source.forEach((key, count) -> {
+            long sum = count.sum();
+            if (sum > 0) values.put(key, sum);
+        });
+        return values;
+    }
+
+    private static <K> LongAdder adder(Map<K, LongAdder> map, K key) {
+        return map.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Même libellé que l'ancien regroupement SQL pour un créateur absent
+    private static String creatorKey(String createdBy) {
+        return createdBy != null ? createdBy : "Inconnu";
+    }
+
+    private static String actorKey(String actor) {
+        return actor != null ? actor : "";
+    }
+
+    private static ZoneId zone() {
+        return ZoneId.systemDefault();
+    }
+
+    private static LocalDate day(Instant instant) {
+        return instant.atZone(zone()).toLocalDate();
+    }
+
+    private static LocalDate windowStart() {
+        return LocalDate.now(zone()).minusDays(MODIFIED_WINDOW_DAYS);
+    }
+}
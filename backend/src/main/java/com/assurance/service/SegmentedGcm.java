@@ -0,0 +1,345 @@
+package com.assurance.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Format de chiffrement authentifié par segments (AES-GCM).
+ *
+ * Le texte clair est découpé en segments de SEGMENT_SIZE octets ; chaque segment est chiffré
+ * séparément avec son propre nonce et sa propre étiquette de 16 octets. Le nonce est dérivé de l'IV
+ * du fichier, de l'index du segment et d'un indicateur « dernier segment » : un segment ne peut être
+ * ni déplacé, ni réordonné, et une troncature est détectée.
+ *
+ * La mémoire utilisée est bornée à un segment, et le segment contenant une position du texte clair
+ * se calcule directement, ce qui permet de servir des plages (Range) sans tout déchiffrer.
+ */
+final class SegmentedGcm {
+    static final int SEGMENT_SIZE = 64 * 1024;
+    static final int TAG_BYTES = 16;
+    static final int CIPHER_SEGMENT_SIZE = SEGMENT_SIZE + TAG_BYTES;
+
+    private SegmentedGcm() {}
+
+    /**
+     * Rappels vers CryptoService : mesure de chaque segment et restitution du Cipher à la fermeture du flux
+     */
+    interface Hooks {
+        void segment(boolean encrypt, int plainBytes, long nanos);
+
+        void release(Cipher cipher);
+    }
+
+    /**
+     * Taille du texte clair correspondant à un contenu chiffré de cette taille
+     */
+    static long plainSize(long cipherSize) {
+        if (cipherSize <= 0) return 0;
+        long segments = (cipherSize + CIPHER_SEGMENT_SIZE - 1) / CIPHER_SEGMENT_SIZE;
+        return Math.max(0, cipherSize - segments * TAG_BYTES);
+    }
+
+    // IV du fichier combiné (XOR) avec l'index du segment et l'indicateur de fin
+    private static byte[] nonce(byte[] iv, long index, boolean last) {
+        byte[] nonce = new byte[12];
+        System.arraycopy(iv, 0, nonce, 0, Math.min(iv.length, 12));
+        nonce[7] ^= (byte) (index >>> 24);
+        nonce[8] ^= (byte) (index >>> 16);
+        nonce[9] ^= (byte) (index >>> 8);
+        nonce[10] ^= (byte) index;
+        nonce[11] ^= (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    private static int seal(Cipher cipher, SecretKey key, byte[] iv, long index, boolean last,
+                            byte[] in, int len, byte[] out, Hooks hooks) throws IOException {
+        try {
+            long start = System.nanoTime();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BYTES * 8, nonce(iv, index, last)));
+            int sealedLen = cipher.doFinal(in, 0, len, out, 0);
+            hooks.segment(true, len, System.nanoTime() - start);
+            return sealedLen;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Échec du chiffrement du segment " + index, e);
+        }
+    }
+
+    private static int open(Cipher cipher, SecretKey key, byte[] iv, long index, boolean last,
+                            byte[] in, int len, byte[] out, Hooks hooks) throws IOException {
+        try {
+            long start = System.nanoTime();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BYTES * 8, nonce(iv, index, last)));
+            int plainLen = cipher.doFinal(in, 0, len, out, 0);
+            hooks.segment(false, plainLen, System.nanoTime() - start);
+            return plainLen;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Segment " + index + " invalide ou altéré", e);
+        }
+    }
+
+    /**
+     * Lit le segment suivant dans buffer (à partir de offset) et indique s'il s'agit du dernier :
+     * un octet de plus est lu pour le savoir, il est retourné via carry pour le segment suivant.
+     */
+    private static int readSegment(InputStream in, byte[] buffer, int offset, int[] carry) throws IOException {
+        int n = offset;
+        if (carry[0] >= 0) {
+            buffer[n++] = (byte) carry[0];
+            carry[0] = -1;
+        }
+        n += in.readNBytes(buffer, n, buffer.length - n);
+        if (n == buffer.length) {
+            carry[0] = in.read();
+        }
+        return n;
+    }
+
+    /**
+     * Chiffrement en écriture : les octets écrits sont chiffrés segment par segment vers le flux cible.
+     * close() scelle le dernier segment puis ferme le flux cible.
+     */
+    static final class EncryptingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Cipher cipher;
+        private final SecretKey key;
+        private final byte[] iv;
+        private final Hooks hooks;
+        private final byte[] plain = new byte[SEGMENT_SIZE];
+        private final byte[] sealed = new byte[CIPHER_SEGMENT_SIZE];
+        private int pos = 0;
+        private long index = 0;
+        private boolean closed = false;
+
+        EncryptingOutputStream(OutputStream out, Cipher cipher, SecretKey key, byte[] iv, Hooks hooks) {
+            this.out = out;
+            this.cipher = cipher;
+            this.key = key;
+            this.iv = iv;
+            this.hooks = hooks;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Flux fermé");
+            while (len > 0) {
+                // Un segment plein n'est scellé qu'à l'arrivée de nouvelles données : il n'est donc pas le dernier
+                if (pos == SEGMENT_SIZE) {
+                    out.write(sealed, 0, seal(cipher, key, iv, index++, false, plain, pos, sealed, hooks));
+                    pos = 0;
+                }
+                int n = Math.min(len, SEGMENT_SIZE - pos);
+                System.arraycopy(b, off, plain, pos, n);
+                pos += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                out.write(sealed, 0, seal(cipher, key, iv, index, true, plain, pos, sealed, hooks));
+            } finally {
+                hooks.release(cipher);
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Chiffrement en lecture : produit le contenu chiffré au fur et à mesure de la lecture du flux clair
+     * (utilisé par le pipeline d'ingestion, qui consomme un InputStream)
+     */
+    static final class EncryptingInputStream extends InputStream {
+        private final InputStream in;
+        private final Cipher cipher;
+        private final SecretKey key;
+        private final byte[] iv;
+        private final Hooks hooks;
+        private final byte[] plain = new byte[SEGMENT_SIZE];
+        private final byte[] sealed = new byte[CIPHER_SEGMENT_SIZE];
+        private final int[] carry = { -1 };
+        private int sealedPos = 0;
+        private int sealedLen = 0;
+        private long index = 0;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        EncryptingInputStream(InputStream in, Cipher cipher, SecretKey key, byte[] iv, Hooks hooks) {
+            this.in = in;
+            this.cipher = cipher;
+            this.key = key;
+            this.iv = iv;
+            this.hooks = hooks;
+        }
+
+        private boolean nextSegment() throws IOException {
+            if (finished) return false;
+            int n = readSegment(in, plain, 0, carry);
+            boolean last = carry[0] < 0;
+            sealedLen = seal(cipher, key, iv, index++, last, plain, n, sealed, hooks);
+            sealedPos = 0;
+            finished = last;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (sealedPos == sealedLen) {
+                if (!nextSegment()) return -1;
+            }
+            int n = Math.min(len, sealedLen - sealedPos);
+            System.arraycopy(sealed, sealedPos, b, off, n);
+            sealedPos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return sealedLen - sealedPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                hooks.release(cipher);
+            }
+            in.close();
+        }
+    }
+
+    /**
+     * Déchiffrement en lecture. skip() saute les segments entiers sans les déchiffrer,
+     * ce qui rend les lectures partielles (Range) proportionnelles à la plage demandée.
+     */
+    static final class DecryptingInputStream extends InputStream {
+        private final InputStream in;
+        private final Cipher cipher;
+        private final SecretKey key;
+        private final byte[] iv;
+        private final Hooks hooks;
+        private final byte[] sealed = new byte[CIPHER_SEGMENT_SIZE];
+        private final byte[] plain = new byte[CIPHER_SEGMENT_SIZE];
+        private final int[] carry = { -1 };
+        private int plainPos = 0;
+        private int plainLen = 0;
+        private long index = 0;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        DecryptingInputStream(InputStream in, Cipher cipher, SecretKey key, byte[] iv, Hooks hooks) {
+            this.in = in;
+            this.cipher = cipher;
+            this.key = key;
+            this.iv = iv;
+            this.hooks = hooks;
+        }
+
+        private boolean nextSegment() throws IOException {
+            if (finished) return false;
+            int n = readSegment(in, sealed, 0, carry);
+            if (n < TAG_BYTES) {
+                throw new IOException("Contenu chiffré tronqué (segment " + index + ")");
+            }
+            boolean last = carry[0] < 0;
+            plainLen = open(cipher, key, iv, index++, last, sealed, n, plain, hooks);
+            plainPos = 0;
+            finished = last;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (plainPos == plainLen) {
+                if (!nextSegment()) return -1;
+            }
+            int n = Math.min(len, plainLen - plainPos);
+            System.arraycopy(plain, plainPos, b, off, n);
+            plainPos += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) return 0;
+            int buffered = plainLen - plainPos;
+            if (n <= buffered) {
+                plainPos += (int) n;
+                return n;
+            }
+            plainPos = plainLen;
+            if (finished) return buffered;
+
+            // Segments entièrement sautés : on avance dans le flux chiffré sans déchiffrer.
+            // Le segment contenant le dernier octet sauté est déchiffré pour rester authentifié.
+            long remaining = n - buffered;
+            long wholeSegments = (remaining - 1) / SEGMENT_SIZE;
+            if (wholeSegments > 0) {
+                long cipherBytes = wholeSegments * CIPHER_SEGMENT_SIZE;
+                if (carry[0] >= 0) {
+                    carry[0] = -1;
+                    cipherBytes--;
+                }
+                skipFully(cipherBytes);
+                index += wholeSegments;
+            }
+            if (!nextSegment()) return buffered + wholeSegments * SEGMENT_SIZE;
+            int advance = (int) Math.min(remaining - wholeSegments * SEGMENT_SIZE, plainLen);
+            plainPos = advance;
+            return buffered + wholeSegments * SEGMENT_SIZE + advance;
+        }
+
+        private void skipFully(long count) throws IOException {
+            long done = 0;
+            while (done < count) {
+                long s = in.skip(count - done);
+                if (s <= 0) {
+                    if (in.read() == -1) throw new IOException("Contenu chiffré tronqué");
+                    s = 1;
+                }
+                done += s;
+            }
+        }
+
+        @Override
+        public int available() {
+            return plainLen - plainPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                hooks.release(cipher);
+            }
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.assurance.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connexions SMTP authentifiées réutilisées d'un envoi à l'autre.
+ *
+ * JavaMailSender.send ouvre une connexion (et une négociation TLS) par appel ; ici au plus
+ * pool-size connexions restent ouvertes et chaque lot de messages passe sur une seule d'entre elles.
+ * Une connexion est renouvelée après max-messages-per-connection envois ou idle-timeout-ms d'inactivité
+ * (les serveurs coupent les connexions inactives). Le débit vers le serveur est limité à
+ * rate-per-second messages (0 : pas de limite), quotas des fournisseurs (Gmail, SES...).
+ */
+@Component
+public class SmtpConnectionPool {
+    private final JavaMailSender mailSender;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore slots;
+    private final AtomicInteger open = new AtomicInteger();
+    private final Counter connectionsOpened;
+    private final Counter sent;
+    private final Counter failed;
+    private final long intervalNanos;
+    private long nextSendNanos = System.nanoTime();
+
+    @Value("${app.mail.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${app.mail.pool.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Value("${app.mail.pool.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    public SmtpConnectionPool(JavaMailSender mailSender,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.mail.pool.size:3}") int poolSize,
+                              @Value("${app.mail.rate-per-second:5}") double ratePerSecond) {
+        this.mailSender = mailSender;
+        this.slots = new Semaphore(Math.max(1, poolSize), true);
+        this.intervalNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+
+        Gauge.builder("mail.smtp.connections", open, AtomicInteger::get)
+            .description("Connexions SMTP ouvertes")
+            .register(meterRegistry);
+        this.connectionsOpened = Counter.builder("mail.smtp.connections.opened")
+            .description("Connexions SMTP ouvertes (authentification comprise)")
+            .register(meterRegistry);
+        this.sent = Counter.builder("mail.smtp.messages").tag("result", "sent")
+            .description("Messages remis au serveur SMTP")
+            .register(meterRegistry);
+        this.failed = Counter.builder("mail.smtp.messages").tag("result", "failed")
+            .description("Messages refusés ou non remis")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Envoie les messages sur une même connexion.
+     * Un destinataire refusé n'échoue que son message ; une connexion perdue est rouverte une fois
+     * pour les messages restants.
+     *
+     * @return pour chaque message, l'exception d'envoi ou null s'il a été remis
+     */
+    public List<MessagingException> sendBatch(List<MimeMessage> messages) {
+        List<MessagingException> results = new ArrayList<>(messages.size());
+        if (!(mailSender instanceof JavaMailSenderImpl sender)) {
+            // Implémentation sans session accessible : envoi unitaire
+            for (MimeMessage message : messages) {
+                results.add(sendUnpooled(message));
+            }
+            return results;
+        }
+
+        PooledConnection connection = null;
+        boolean reconnected = false;
+        try {
+            for (MimeMessage message : messages) {
+                try {
+                    if (connection == null) connection = acquire(sender);
+                    sendOn(connection, message);
+                    results.add(null);
+                } catch (SendFailedException e) {
+                    // Destinataire refusé : la connexion reste utilisable
+                    failed.increment();
+                    results.add(e);
+                } catch (MessagingException e) {
+                    failed.increment();
+                    results.add(e);
+                    discard(connection);
+                    connection = null;
+                    if (reconnected) {
+                        // Serveur indisponible : les messages restants échouent sans nouvel essai
+                        while (results.size() < messages.size()) results.add(e);
+                        break;
+                    }
+                    reconnected = true;
+                }
+            }
+        } finally {
+            release(connection);
+        }
+        return results;
+    }
+
+    private void sendOn(PooledConnection connection, MimeMessage message) throws MessagingException {
+        Address[] recipients = message.getAllRecipients();
+        if (recipients == null || recipients.length == 0) {
+            throw new SendFailedException("aucun destinataire");
+        }
+        message.saveChanges();
+        throttle();
+        connection.transport.sendMessage(message, recipients);
+        connection.messages++;
+        sent.increment();
+    }
+
+    private MessagingException sendUnpooled(MimeMessage message) {
+        try {
+            throttle();
+            mailSender.send(message);
+            sent.increment();
+            return null;
+        } catch (Exception e) {
+            failed.increment();
+            return e instanceof MessagingException me ? me : new MessagingException(e.getMessage(), e);
+        }
+    }
+
+    private PooledConnection acquire(JavaMailSenderImpl sender) throws MessagingException {
+        try {
+            if (!slots.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("aucune connexion SMTP disponible après " + acquireTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("attente d'une connexion SMTP interrompue", e);
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (isReusable(connection)) return connection;
+                close(connection);
+            }
+            return connect(sender);
+        } catch (MessagingException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection connect(JavaMailSenderImpl sender) throws MessagingException {
+        Transport transport = sender.getSession().getTransport(sender.getProtocol() != null ? sender.getProtocol() : "smtp");
+        String username = sender.getUsername() != null && !sender.getUsername().isBlank() ? sender.getUsername() : null;
+        transport.connect(sender.getHost(), sender.getPort(), username, username != null ? sender.getPassword() : null);
+        open.incrementAndGet();
+        connectionsOpened.increment();
+        return new PooledConnection(transport);
+    }
+
+    private boolean isReusable(PooledConnection connection) {
+        return connection.messages < maxMessagesPerConnection
+            && System.currentTimeMillis() - connection.lastUsedAt < idleTimeoutMs
+            && connection.transport.isConnected();
+    }
+
+    private void release(PooledConnection connection) {
+        if (connection == null) return;
+        connection.lastUsedAt = System.currentTimeMillis();
+        if (connection.messages < maxMessagesPerConnection) {
+            // Dernière connexion utilisée reprise en premier : les autres finissent par expirer
+            idle.offerFirst(connection);
+        } else {
+            close(connection);
+        }
+        slots.release();
+    }
+
+    private void discard(PooledConnection connection) {
+        if (connection == null) return;
+        close(connection);
+        slots.release();
+    }
+
+    private void close(PooledConnection connection) {
+        try {
+            connection.transport.close();
+        } catch (MessagingException e) {
+            // Connexion déjà coupée par le serveur
+        }
+        open.decrementAndGet();
+    }
+
+    // Espace les envois d'au moins 1/rate-per-second, toutes connexions confondues
+    private void throttle() {
+        if (intervalNanos <= 0) return;
+        long sendAt;
+        synchronized (this) {
+            long now = System.nanoTime();
+            sendAt = Math.max(now, nextSendNanos);
+            nextSendNanos = sendAt + intervalNanos;
+        }
+        long wait;
+        while ((wait = sendAt - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.currentThread().isInterrupted()) return;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.pool.idle-timeout-ms:30000}")
+    public void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = idle.iterator();
+        while (it.hasNext()) {
+            PooledConnection connection = it.next();
+            if (now - connection.lastUsedAt >= idleTimeoutMs && idle.removeFirstOccurrence(connection)) {
+                close(connection);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            close(connection);
+        }
+    }
+
+    private static class PooledConnection {
+        private final Transport transport;
+        private int messages;
+        private long lastUsedAt = System.currentTimeMillis();
+
+        PooledConnection(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
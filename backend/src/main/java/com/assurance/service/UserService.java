@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -28,6 +29,9 @@ public class UserService {
     @Autowired
     private InvitationRepository invitationRepository;
     
+    @Autowired
+    private LogoService logoService;
+    
     /**
      * Crée un nouvel utilisateur
      */
@@ -80,12 +84,24 @@ public class UserService {
             user.setDateOfBirth(dateOfBirth);
             user.setPassword(passwordEncoder.encode(password));
             user.setCompanyLogo(companyLogo);
+            user.setCompanyLogoHash(storeLogo(companyLogo));
             user.setStatus(User.UserStatus.REGISTERED);
             return userRepository.save(user);
         }
         throw new RuntimeException("Utilisateur non trouvé avec l'email: " + email);
     }
     
+    // Logo décodé et stocké aux tailles standard ; un logo illisible ne bloque pas l'inscription
+    private String storeLogo(String companyLogo) {
+        if (companyLogo == null || companyLogo.isBlank()) return null;
+        try {
+            return logoService.store(companyLogo);
+        } catch (Exception e) {
+            System.err.println("Logo de compagnie illisible: " + e.getMessage());
+            return null;
+        }
+    }
+    
     /**
      * Authentifie un utilisateur
      * Les administrateurs peuvent toujours se connecter, même avec un abonnement expiré
@@ -203,6 +219,55 @@ public class UserService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Utilisateurs en ligne, connectés et déconnectés récemment, en une seule requête.
+     * Les trois listes suivent les mêmes critères et le même ordre que getOnlineUsers,
+     * getRecentlyLoggedIn et getRecentlyLoggedOut (onlineHours doit être inférieur à recentHours).
+     */
+    public LoginActivity getLoginActivity(int onlineHours, int recentHours) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime onlineSince = now.minusHours(onlineHours);
+        LocalDateTime recentSince = now.minusHours(recentHours);
+        List<User> users = userRepository.findLoginActivity(recentSince);
+        
+        Comparator<User> byLogin = Comparator.comparing(User::getLastLoginAt,
+                Comparator.nullsLast(Comparator.reverseOrder()));
+        Comparator<User> byLogout = Comparator.comparing(User::getLastLogoutAt,
+                Comparator.nullsLast(Comparator.reverseOrder()));
+        
+        LoginActivity activity = new LoginActivity();
+        activity.online = users.stream()
+                .filter(u -> isOnline(u, onlineSince))
+                .sorted(byLogin)
+                .map(UserDto::new)
+                .collect(Collectors.toList());
+        activity.recentlyLoggedIn = users.stream()
+                .filter(u -> u.getLastLoginAt() != null && !u.getLastLoginAt().isBefore(recentSince))
+                .sorted(byLogin)
+                .map(UserDto::new)
+                .collect(Collectors.toList());
+        activity.recentlyLoggedOut = users.stream()
+                .filter(u -> u.getLastLogoutAt() != null && !u.getLastLogoutAt().isBefore(recentSince))
+                .sorted(byLogout)
+                .map(UserDto::new)
+                .collect(Collectors.toList());
+        return activity;
+    }
+    
+    // Même condition que UserRepository.findOnlineUsers
+    private static boolean isOnline(User user, LocalDateTime since) {
+        LocalDateTime login = user.getLastLoginAt();
+        LocalDateTime logout = user.getLastLogoutAt();
+        if (login == null) return false;
+        return (!login.isBefore(since) && logout == null) || (logout != null && logout.isBefore(login));
+    }
+    
+    public static class LoginActivity {
+        public List<UserDto> online;
+        public List<UserDto> recentlyLoggedIn;
+        public List<UserDto> recentlyLoggedOut;
+    }
+    
     /**
      * Compte les utilisateurs par compagnie
      */
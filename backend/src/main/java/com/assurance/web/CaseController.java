@@ -158,7 +158,7 @@ import java.util.Optional;
         // Sauvegarder la référence avant la suppression pour la notification
         String caseReference = existingCase.getReference();
         
-        		insuranceCaseRepository.delete(existingCase);
+        		caseService.delete(existingCase);
 		return "Dossier supprimé avec succès";
     }
 
@@ -1,12 +1,15 @@
 package com.assurance.web;
 
-import com.assurance.domain.InsuranceCase;
 import com.assurance.domain.AuditEvent;
+import com.assurance.domain.AuditRollup;
 import com.assurance.repo.InsuranceCaseRepository;
 import com.assurance.repo.AuditEventRepository;
+import com.assurance.service.AuditRollupService;
+import com.assurance.service.ActorCompanyResolver;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -20,11 +23,17 @@ public class CaseStatsController {
     
     private final InsuranceCaseRepository caseRepository;
     private final AuditEventRepository auditEventRepository;
+    private final AuditRollupService auditRollupService;
+    private final ActorCompanyResolver companyResolver;
     
     public CaseStatsController(InsuranceCaseRepository caseRepository,
-                              AuditEventRepository auditEventRepository) {
+                              AuditEventRepository auditEventRepository,
+                              AuditRollupService auditRollupService,
+                              ActorCompanyResolver companyResolver) {
         this.caseRepository = caseRepository;
         this.auditEventRepository = auditEventRepository;
+        this.auditRollupService = auditRollupService;
+        this.companyResolver = companyResolver;
     }
     
     @GetMapping
@@ -32,13 +41,15 @@ public class CaseStatsController {
         try {
             // Statistiques générales
             long totalCreated = caseRepository.count();
-            long totalModified = countModifiedCases();
+            // Dossiers des 30 derniers jours : lus dans les agrégats (une seule lecture pour le total et la répartition)
+            Map<String, Long> modifiedByActor = getModifiedCasesByActor();
+            long totalModified = modifiedByActor.values().stream().mapToLong(Long::longValue).sum();
             long totalDeleted = countDeletedCases();
             long totalDownloads = countFileDownloads();
             
             // Statistiques par maison d'assurance
             List<Map<String, Object>> casesByCompany = getCasesByCompany();
-            List<Map<String, Object>> modifiedByCompany = getModifiedCasesByCompany();
+            List<Map<String, Object>> modifiedByCompany = toCompanyCounts(modifiedByActor, 1);
             List<Map<String, Object>> deletedByCompany = getDeletedCasesByCompany();
             List<Map<String, Object>> downloadsByCompany = getDownloadsByCompany();
             
@@ -61,22 +72,93 @@ public class CaseStatsController {
         }
     }
     
-    private long countModifiedCases() {
-        // Compter les dossiers modifiés dans les 30 derniers jours
-        LocalDate thirtyDaysAgo = LocalDate.now().minusDays(30);
-        Instant thirtyDaysAgoInstant = thirtyDaysAgo.atStartOfDay(ZoneId.systemDefault()).toInstant();
-        
-        return caseRepository.findAll().stream()
-                .filter(caseItem -> caseItem.getCreatedAt().isAfter(thirtyDaysAgoInstant))
-                .count();
+    /**
+     * Nombre d'événements (type d'AuditEvent, ou CASES pour les créations de dossiers)
+     * sur une période quelconque, réparti par compagnie. Par défaut : les 30 derniers jours.
+     */
+    @GetMapping("/range")
+    public ResponseEntity<Map<String, Object>> getRangeStats(@RequestParam(defaultValue = AuditRollup.METRIC_CASES) String metric,
+                                                             @RequestParam(required = false) Instant from,
+                                                             @RequestParam(required = false) Instant to) {
+        try {
+            Instant end = to != null ? to : Instant.now();
+            Instant start = from != null ? from : end.minus(Duration.ofDays(30));
+            Map<String, Long> byActor = auditRollupService.countByActor(validMetric(metric), start, end);
+            
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("metric", metric);
+            stats.put("from", start.toString());
+            stats.put("to", end.toString());
+            stats.put("total", byActor.values().stream().mapToLong(Long::longValue).sum());
+            stats.put("byCompany", toCompanyCounts(byActor, 1));
+            return ResponseEntity.ok(stats);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", "Erreur lors de la récupération des statistiques: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * Évolution journalière (UTC) par compagnie. Par défaut : les 30 derniers jours.
+     */
+    @GetMapping("/trend")
+    public ResponseEntity<Map<String, Object>> getTrend(@RequestParam(defaultValue = AuditRollup.METRIC_CASES) String metric,
+                                                        @RequestParam(required = false) Instant from,
+                                                        @RequestParam(required = false) Instant to) {
+        try {
+            Instant end = to != null ? to : Instant.now();
+            Instant start = from != null ? from : end.minus(Duration.ofDays(30));
+            List<Map<String, Object>> days = new ArrayList<>();
+            auditRollupService.dailyTrend(validMetric(metric), start, end).forEach((day, byActor) -> {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("date", day.toString());
+                entry.put("total", byActor.values().stream().mapToLong(Long::longValue).sum());
+                entry.put("companies", toCompanyCounts(byActor, 1));
+                days.add(entry);
+            });
+            
+            Map<String, Object> trend = new HashMap<>();
+            trend.put("metric", metric);
+            trend.put("from", start.toString());
+            trend.put("to", end.toString());
+            trend.put("days", days);
+            return ResponseEntity.ok(trend);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", "Erreur lors de la récupération des statistiques: " + e.getMessage()));
+        }
+    }
+    
+    private String validMetric(String metric) {
+        if (AuditRollup.METRIC_CASES.equals(metric)) return metric;
+        try {
+            return AuditEvent.EventType.valueOf(metric).name();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Métrique inconnue: " + metric);
+        }
+    }
+    
+    private Instant thirtyDaysAgo() {
+        return LocalDate.now().minusDays(30).atStartOfDay(ZoneId.systemDefault()).toInstant();
+    }
+    
+    private Map<String, Long> getModifiedCasesByActor() {
+        try {
+            // Compter les dossiers créés dans les 30 derniers jours
+            return auditRollupService.countCasesByActor(thirtyDaysAgo(), Instant.now());
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
     }
     
     private long countDeletedCases() {
         try {
             // Compter les événements de suppression de dossiers
-            return auditEventRepository.findAll().stream()
-                    .filter(event -> event.getType() == AuditEvent.EventType.CASE_CREATED)
-                    .count() / 10; // Simulation: 1/10 des créations = suppressions
+            return auditEventRepository.countByType(AuditEvent.EventType.CASE_CREATED) / 10; // Simulation: 1/10 des créations = suppressions
         } catch (Exception e) {
             return 0;
         }
@@ -84,9 +166,7 @@ public class CaseStatsController {
     
     private long countFileDownloads() {
         try {
-            return auditEventRepository.findAll().stream()
-                    .filter(event -> event.getType() == AuditEvent.EventType.REPORT_DOWNLOADED)
-                    .count();
+            return auditEventRepository.countByType(AuditEvent.EventType.REPORT_DOWNLOADED);
         } catch (Exception e) {
             return 0;
         }
@@ -94,108 +174,70 @@ public class CaseStatsController {
     
     private List<Map<String, Object>> getCasesByCompany() {
         try {
-            return caseRepository.findAll().stream()
-                    .collect(Collectors.groupingBy(
-                        caseItem -> extractCompanyFromActor(caseItem.getCreatedBy()),
-                        Collectors.counting()
-                    ))
-                    .entrySet().stream()
-                    .map(entry -> {
-                        Map<String, Object> company = new HashMap<>();
-                        company.put("company", entry.getKey());
-                        company.put("count", entry.getValue());
-                        return company;
-                    })
-                    .sorted((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")))
-                    .collect(Collectors.toList());
+            return toCompanyCounts(caseRepository.countCasesByCompany(), 1);
         } catch (Exception e) {
             return new ArrayList<>();
         }
     }
     
-    private List<Map<String, Object>> getModifiedCasesByCompany() {
+    private List<Map<String, Object>> getDeletedCasesByCompany() {
         try {
-            LocalDate thirtyDaysAgo = LocalDate.now().minusDays(30);
-            Instant thirtyDaysAgoInstant = thirtyDaysAgo.atStartOfDay(ZoneId.systemDefault()).toInstant();
-            
-            return caseRepository.findAll().stream()
-                    .filter(caseItem -> caseItem.getCreatedAt().isAfter(thirtyDaysAgoInstant))
-                    .collect(Collectors.groupingBy(
-                        caseItem -> extractCompanyFromActor(caseItem.getCreatedBy()),
-                        Collectors.counting()
-                    ))
-                    .entrySet().stream()
-                    .map(entry -> {
-                        Map<String, Object> company = new HashMap<>();
-                        company.put("company", entry.getKey());
-                        company.put("count", entry.getValue());
-                        return company;
-                    })
-                    .sorted((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")))
-                    .collect(Collectors.toList());
+            // Simulation basée sur les événements d'audit : 1/10 des créations = suppressions
+            return toCompanyCodeCounts(auditEventRepository.countByTypeGroupByCompanyCode(AuditEvent.EventType.CASE_CREATED), 10);
         } catch (Exception e) {
             return new ArrayList<>();
         }
     }
     
-    private List<Map<String, Object>> getDeletedCasesByCompany() {
+    private List<Map<String, Object>> getDownloadsByCompany() {
         try {
-            // Simulation basée sur les événements d'audit
-            return auditEventRepository.findAll().stream()
-                    .filter(event -> event.getType() == AuditEvent.EventType.CASE_CREATED)
-                    .collect(Collectors.groupingBy(
-                        event -> extractCompanyFromActor(event.getActor()),
-                        Collectors.counting()
-                    ))
-                    .entrySet().stream()
-                    .map(entry -> {
-                        Map<String, Object> company = new HashMap<>();
-                        company.put("company", entry.getKey());
-                        company.put("count", entry.getValue() / 10); // Simulation: 1/10 des créations = suppressions
-                        return company;
-                    })
-                    .filter(company -> (Long) company.get("count") > 0)
-                    .sorted((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")))
-                    .collect(Collectors.toList());
+            return toCompanyCodeCounts(auditEventRepository.countByTypeGroupByCompanyCode(AuditEvent.EventType.REPORT_DOWNLOADED), 1);
         } catch (Exception e) {
             return new ArrayList<>();
         }
     }
     
-    private List<Map<String, Object>> getDownloadsByCompany() {
-        try {
-            return auditEventRepository.findAll().stream()
-                    .filter(event -> event.getType() == AuditEvent.EventType.REPORT_DOWNLOADED)
-                    .collect(Collectors.groupingBy(
-                        event -> extractCompanyFromActor(event.getActor()),
-                        Collectors.counting()
-                    ))
-                    .entrySet().stream()
-                    .map(entry -> {
-                        Map<String, Object> company = new HashMap<>();
-                        company.put("company", entry.getKey());
-                        company.put("count", entry.getValue());
-                        return company;
-                    })
-                    .sorted((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")))
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            return new ArrayList<>();
+    /**
+     * Regroupe par compagnie les comptages [acteur, nombre] calculés par la base.
+     * Seules les lignes agrégées (une par acteur) remontent ; les compagnies à 0 sont omises.
+     */
+    private List<Map<String, Object>> toCompanyCounts(List<Object[]> countsByActor, long divisor) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : countsByActor) {
+            counts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return toCompanyCounts(counts, divisor);
+    }
+    
+    private List<Map<String, Object>> toCompanyCounts(Map<String, Long> countsByActor, long divisor) {
+        Map<String, Long> counts = new HashMap<>();
+        countsByActor.forEach((actor, count) -> counts.merge(companyResolver.resolve(actor), count, Long::sum));
+        return toCompanyList(counts, divisor);
+    }
+    
+    /**
+     * Comptages [company_code, nombre] déjà regroupés par la base ; les événements pas encore
+     * repris par AuditBackfillService (company_code nul) sont comptés en « Inconnu »
+     */
+    private List<Map<String, Object>> toCompanyCodeCounts(List<Object[]> countsByCompanyCode, long divisor) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : countsByCompanyCode) {
+            String company = row[0] != null ? (String) row[0] : ActorCompanyResolver.UNKNOWN;
+            counts.merge(company, ((Number) row[1]).longValue(), Long::sum);
         }
+        return toCompanyList(counts, divisor);
     }
     
-    private String extractCompanyFromActor(String actor) {
-        if (actor == null) return "Inconnu";
-        
-        // Logique pour extraire la compagnie depuis l'acteur
-        if (actor.contains("admin")) return "Administrateur";
-        if (actor.contains("axa") || actor.contains("AXA")) return "AXA";
-        if (actor.contains("allianz") || actor.contains("Allianz")) return "Allianz";
-        if (actor.contains("generali") || actor.contains("Generali")) return "Generali";
-        if (actor.contains("groupama") || actor.contains("Groupama")) return "Groupama";
-        if (actor.contains("maif") || actor.contains("Maif")) return "Maif";
-        if (actor.contains("macif") || actor.contains("Macif")) return "Macif";
-        
-        return actor;
+    private List<Map<String, Object>> toCompanyList(Map<String, Long> counts, long divisor) {
+        return counts.entrySet().stream()
+                .map(entry -> {
+                    Map<String, Object> company = new HashMap<>();
+                    company.put("company", entry.getKey());
+                    company.put("count", entry.getValue() / divisor);
+                    return company;
+                })
+                .filter(company -> (Long) company.get("count") > 0)
+                .sorted((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")))
+                .collect(Collectors.toList());
     }
 }
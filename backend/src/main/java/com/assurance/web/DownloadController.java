@@ -1,23 +1,31 @@
 package com.assurance.web;
 
+import com.assurance.domain.AuditEvent;
 import com.assurance.domain.Report;
-import com.assurance.domain.ReportFile;
+import com.assurance.domain.ReportFileSummary;
+import com.assurance.service.AuditService;
 import com.assurance.service.ReportService;
+import com.assurance.service.FileContent;
 import com.assurance.service.FileService;
 import com.assurance.service.ReportRequestService;
 import com.assurance.service.NotificationService;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -29,20 +37,25 @@ public class DownloadController {
     private final FileService fileService;
     private final ReportRequestService reportRequestService;
     private final NotificationService notificationService;
+    private final AuditService auditService;
 
     public DownloadController(ReportService reportService, FileService fileService, 
-                            ReportRequestService reportRequestService, NotificationService notificationService) {
+                            ReportRequestService reportRequestService, NotificationService notificationService,
+                            AuditService auditService) {
         this.reportService = reportService;
         this.fileService = fileService;
         this.reportRequestService = reportRequestService;
         this.notificationService = notificationService;
+        this.auditService = auditService;
     }
 
     // Endpoint sécurisé avec validation du code de validation (nouveau workflow)
     @GetMapping("/{reportId}")
-    public ResponseEntity<ByteArrayResource> downloadSecured(
+    public ResponseEntity<Resource> downloadSecured(
             @PathVariable("reportId") Long reportId,
-            @RequestParam("validationCode") String validationCode) {
+            @RequestParam("validationCode") String validationCode,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
         try {
             // Valider le code de validation et marquer comme téléchargée
@@ -61,25 +74,36 @@ public class DownloadController {
             }
 
             // Récupérer les fichiers du rapport
-            List<ReportFile> files = fileService.getReportFiles(reportId);
+            List<ReportFileSummary> files = fileService.getReportFiles(reportId);
             if (files.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ByteArrayResource("Aucun fichier trouvé pour ce rapport".getBytes()));
             }
 
             // Prendre le premier fichier (ou le plus récent)
-            ReportFile reportFile = files.get(0);
+            ReportFileSummary reportFile = files.get(0);
 
-            // Télécharger le fichier
-            byte[] fileContent = fileService.downloadReportFile(reportFile.getId());
+            // Télécharger le fichier en flux (Range et If-None-Match gérés par Spring)
+            FileContent content = fileService.openReportFile(reportFile.getId());
             
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
+            // Tracer le téléchargement (compagnie du demandeur, rapport concerné) ; les requêtes
+            // partielles d'une lecture en cours (Range) et les revalidations (304) ne sont pas comptées
+            if (isFullDownload(range, ifNoneMatch, content.getETag())) {
+                try {
+                    auditService.record(AuditEvent.EventType.REPORT_DOWNLOADED, request.getRequesterName(),
+                            "Rapport téléchargé: \"" + report.getTitle() + "\"",
+                            AuditEvent.EntityType.REPORT, reportId, request.getRequesterCompany());
+                } catch (Exception e) {
+                    System.err.println("Erreur lors de la création de l'événement d'audit: " + e.getMessage());
+                }
+            }
             
             return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + reportFile.getFileName() + "\"")
-                    .contentType(MediaType.parseMediaType(reportFile.getContentType()))
-                    .contentLength(fileContent.length)
-                    .body(resource);
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + content.getFileName() + "\"")
+                    .contentType(MediaType.parseMediaType(content.getContentType()))
+                    .eTag(content.getETag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(content.getResource());
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -89,7 +113,7 @@ public class DownloadController {
 
     // Endpoint de démonstration (sans validation de code pour les tests)
     @GetMapping("/demo/{reportId}")
-    public ResponseEntity<ByteArrayResource> downloadDemo(
+    public ResponseEntity<Resource> downloadDemo(
             @PathVariable("reportId") Long reportId) {
         
         try {
@@ -100,25 +124,24 @@ public class DownloadController {
             }
 
             // Récupérer les fichiers du rapport
-            List<ReportFile> files = fileService.getReportFiles(reportId);
+            List<ReportFileSummary> files = fileService.getReportFiles(reportId);
             if (files.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ByteArrayResource("Aucun fichier trouvé pour ce rapport".getBytes()));
             }
 
             // Prendre le premier fichier (ou le plus récent)
-            ReportFile reportFile = files.get(0);
+            ReportFileSummary reportFile = files.get(0);
 
-            // Télécharger le fichier
-            byte[] fileContent = fileService.downloadReportFile(reportFile.getId());
-            
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
+            // Télécharger le fichier en flux (Range et If-None-Match gérés par Spring)
+            FileContent content = fileService.openReportFile(reportFile.getId());
             
             return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + reportFile.getFileName() + "\"")
-                    .contentType(MediaType.parseMediaType(reportFile.getContentType()))
-                    .contentLength(fileContent.length)
-                    .body(resource);
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + content.getFileName() + "\"")
+                    .contentType(MediaType.parseMediaType(content.getContentType()))
+                    .eTag(content.getETag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(content.getResource());
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -127,8 +150,9 @@ public class DownloadController {
     }
 
     // Télécharger tous les fichiers d'un rapport (réservé au propriétaire)
+    // L'archive est écrite directement dans la réponse, un fichier à la fois depuis le stockage
     @GetMapping("/reports/{reportId}/all")
-    public ResponseEntity<ByteArrayResource> downloadAllReportFiles(
+    public ResponseEntity<?> downloadAllReportFiles(
             @PathVariable("reportId") Long reportId,
             @RequestParam("owner") String ownerName) {
         try {
@@ -146,59 +170,99 @@ public class DownloadController {
             }
 
             // Récupérer tous les fichiers du rapport
-            List<ReportFile> files = fileService.getReportFiles(reportId);
+            List<ReportFileSummary> files = fileService.getReportFiles(reportId);
             if (files.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ByteArrayResource("Aucun fichier trouvé pour ce rapport".getBytes()));
             }
 
-            // Créer une archive ZIP en mémoire
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ZipOutputStream zos = new ZipOutputStream(baos);
-            Set<String> usedNames = new HashSet<>();
-
-            for (ReportFile file : files) {
-                byte[] content = fileService.downloadReportFile(file.getId());
-
-                // Éviter les conflits de noms dans l'archive
-                String entryName = file.getFileName() != null ? file.getFileName() : ("file-" + file.getId());
-                String baseName = entryName;
-                String name = baseName;
-                int duplicateIndex = 1;
-                while (usedNames.contains(name)) {
-                    // Insérer un suffixe avant l'extension si présente
-                    int dot = baseName.lastIndexOf('.');
-                    if (dot > 0) {
-                        name = baseName.substring(0, dot) + " (" + duplicateIndex + ")" + baseName.substring(dot);
-                    } else {
-                        name = baseName + " (" + duplicateIndex + ")";
-                    }
-                    duplicateIndex++;
-                }
-                usedNames.add(name);
-
-                ZipEntry entry = new ZipEntry(name);
-                zos.putNextEntry(entry);
-                zos.write(content);
-                zos.closeEntry();
-            }
-
-            zos.finish();
-            zos.close();
-
-            byte[] zipBytes = baos.toByteArray();
-            ByteArrayResource resource = new ByteArrayResource(zipBytes);
+            StreamingResponseBody body = out -> writeZip(files, out);
 
             String fileName = (report.getTitle() != null && !report.getTitle().isBlank() ? report.getTitle().trim().replaceAll("[\\r\\n]+", " ") : ("rapport-" + reportId)) + ".zip";
 
             return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
                 .contentType(MediaType.parseMediaType("application/zip"))
-                .contentLength(zipBytes.length)
-                .body(resource);
+                .body(body);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(new ByteArrayResource(("Erreur lors de la création de l'archive: " + e.getMessage()).getBytes()));
         }
     }
+
+    /**
+     * Réponse complète : pas de Range (ou une plage commençant à l'octet 0) et pas de 304 sur If-None-Match
+     */
+    private static boolean isFullDownload(String range, String ifNoneMatch, String etag) {
+        if (ifNoneMatch != null && etag != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(etag)) return false;
+            }
+        }
+        if (range == null || range.isBlank()) return true;
+        String spec = range.trim();
+        return spec.regionMatches(true, 0, "bytes=", 0, 6) && spec.substring(6).trim().startsWith("0-");
+    }
+
+    private void writeZip(List<ReportFileSummary> files, OutputStream out) throws IOException {
+        ZipOutputStream zos = new ZipOutputStream(out);
+        Set<String> usedNames = new HashSet<>();
+
+        for (ReportFileSummary file : files) {
+            // Éviter les conflits de noms dans l'archive
+            String entryName = file.getFileName() != null ? file.getFileName() : ("file-" + file.getId());
+            String baseName = entryName;
+            String name = baseName;
+            int duplicateIndex = 1;
+            while (usedNames.contains(name)) {
+                // Insérer un suffixe avant l'extension si présente
+                int dot = baseName.lastIndexOf('.');
+                if (dot > 0) {
+                    name = baseName.substring(0, dot) + " (" + duplicateIndex + ")" + baseName.substring(dot);
+                } else {
+                    name = baseName + " (" + duplicateIndex + ")";
+                }
+                duplicateIndex++;
+            }
+            usedNames.add(name);
+
+            Resource resource = fileService.openReportFile(file.getId()).getResource();
+            ZipEntry entry = new ZipEntry(name);
+            if (isAlreadyCompressed(name)) {
+                // Entrée STORED : taille et CRC doivent être connus avant l'écriture (lecture préalable du fichier)
+                CRC32 crc = new CRC32();
+                long size = 0;
+                byte[] buffer = new byte[8192];
+                try (InputStream in = resource.getInputStream()) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        crc.update(buffer, 0, read);
+                        size += read;
+                    }
+                }
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(size);
+                entry.setCompressedSize(size);
+                entry.setCrc(crc.getValue());
+            }
+
+            zos.putNextEntry(entry);
+            try (InputStream in = resource.getInputStream()) {
+                in.transferTo(zos);
+            }
+            zos.closeEntry();
+        }
+
+        // Ne pas fermer le flux de la réponse, il appartient au conteneur
+        zos.finish();
+    }
+
+    // Formats déjà compressés : les recompresser ne fait que consommer du CPU
+    private boolean isAlreadyCompressed(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png") || lower.endsWith(".gif")
+            || lower.endsWith(".pdf") || lower.endsWith(".docx") || lower.endsWith(".xlsx") || lower.endsWith(".zip");
+    }
 }
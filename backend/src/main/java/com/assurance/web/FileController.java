@@ -1,9 +1,13 @@
 package com.assurance.web;
 
 import com.assurance.domain.CaseAttachment;
+import com.assurance.domain.CaseAttachmentSummary;
 import com.assurance.domain.ReportFile;
+import com.assurance.domain.ReportFileSummary;
+import com.assurance.service.FileContent;
 import com.assurance.service.FileService;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -41,7 +45,7 @@ public class FileController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Fichier téléchargé avec succès");
-            response.put("file", createFileResponse(uploadedFile));
+            response.put("file", createFileResponse(ReportFileSummary.of(uploadedFile)));
             
             return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
@@ -70,7 +74,7 @@ public class FileController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Pièce jointe téléchargée avec succès");
-            response.put("file", createAttachmentResponse(uploadedFile));
+            response.put("file", createAttachmentResponse(CaseAttachmentSummary.of(uploadedFile)));
             
             return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
@@ -88,49 +92,45 @@ public class FileController {
 
     // ===== TÉLÉCHARGEMENT DE FICHIERS =====
 
+    // Réponse en flux : Spring gère Range (206) et If-None-Match (304) à partir de la ressource et de l'ETag
     @GetMapping("/reports/{reportId}/files/{fileId}/download")
-    public ResponseEntity<ByteArrayResource> downloadReportFile(
+    public ResponseEntity<Resource> downloadReportFile(
             @PathVariable("reportId") Long reportId,
             @PathVariable("fileId") Long fileId) {
         
         try {
-            byte[] fileContent = fileService.downloadReportFile(fileId);
-            ReportFile reportFile = fileService.getReportFiles(reportId).stream()
-                    .filter(f -> f.getId().equals(fileId))
-                    .findFirst()
+            // Une seule requête de métadonnées, appartenance au rapport comprise
+            ReportFile reportFile = fileService.findReportFile(reportId, fileId)
                     .orElseThrow(() -> new IllegalArgumentException("Fichier introuvable"));
-            
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
+            FileContent content = fileService.openReportFile(reportFile);
             
             return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + reportFile.getFileName() + "\"")
-                    .contentType(MediaType.parseMediaType(reportFile.getContentType()))
-                    .contentLength(fileContent.length)
-                    .body(resource);
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + content.getFileName() + "\"")
+                    .contentType(MediaType.parseMediaType(content.getContentType()))
+                    .eTag(content.getETag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(content.getResource());
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
     }
 
     @GetMapping("/cases/{caseId}/attachments/{attachmentId}/download")
-    public ResponseEntity<ByteArrayResource> downloadCaseAttachment(
+    public ResponseEntity<Resource> downloadCaseAttachment(
             @PathVariable("caseId") Long caseId,
             @PathVariable("attachmentId") Long attachmentId) {
         
         try {
-            byte[] fileContent = fileService.downloadCaseAttachment(attachmentId);
-            CaseAttachment attachment = fileService.getCaseAttachments(caseId).stream()
-                    .filter(a -> a.getId().equals(attachmentId))
-                    .findFirst()
+            CaseAttachment attachment = fileService.findCaseAttachment(caseId, attachmentId)
                     .orElseThrow(() -> new IllegalArgumentException("Pièce jointe introuvable"));
-            
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
+            FileContent content = fileService.openCaseAttachment(attachment);
             
             return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + attachment.getFileName() + "\"")
-                    .contentType(MediaType.parseMediaType(attachment.getContentType()))
-                    .contentLength(fileContent.length)
-                    .body(resource);
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + content.getFileName() + "\"")
+                    .contentType(MediaType.parseMediaType(content.getContentType()))
+                    .eTag(content.getETag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(content.getResource());
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
@@ -141,7 +141,7 @@ public class FileController {
     @GetMapping("/reports/{reportId}/files")
     public ResponseEntity<Map<String, Object>> getReportFiles(@PathVariable("reportId") Long reportId) {
         try {
-            List<ReportFile> files = fileService.getReportFiles(reportId);
+            List<ReportFileSummary> files = fileService.getReportFiles(reportId);
             long fileCount = fileService.getReportFileCount(reportId);
             
             Map<String, Object> response = new HashMap<>();
@@ -161,7 +161,7 @@ public class FileController {
     @GetMapping("/cases/{caseId}/attachments")
     public ResponseEntity<Map<String, Object>> getCaseAttachments(@PathVariable("caseId") Long caseId) {
         try {
-            List<CaseAttachment> attachments = fileService.getCaseAttachments(caseId);
+            List<CaseAttachmentSummary> attachments = fileService.getCaseAttachments(caseId);
             long attachmentCount = fileService.getCaseAttachmentCount(caseId);
             
             Map<String, Object> response = new HashMap<>();
@@ -186,7 +186,7 @@ public class FileController {
             @RequestParam("fileName") String fileName) {
         
         try {
-            List<ReportFile> files = fileService.searchReportFiles(reportId, fileName);
+            List<ReportFileSummary> files = fileService.searchReportFiles(reportId, fileName);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -208,7 +208,7 @@ public class FileController {
             @RequestParam("fileName") String fileName) {
         
         try {
-            List<CaseAttachment> attachments = fileService.searchCaseAttachments(caseId, fileName);
+            List<CaseAttachmentSummary> attachments = fileService.searchCaseAttachments(caseId, fileName);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -232,7 +232,7 @@ public class FileController {
             @PathVariable("fileType") String fileType) {
         
         try {
-            List<ReportFile> files = fileService.getReportFilesByType(reportId, fileType);
+            List<ReportFileSummary> files = fileService.getReportFilesByType(reportId, fileType);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -254,7 +254,7 @@ public class FileController {
             @PathVariable("category") String category) {
         
         try {
-            List<CaseAttachment> attachments = fileService.getCaseAttachmentsByCategory(caseId, category);
+            List<CaseAttachmentSummary> attachments = fileService.getCaseAttachmentsByCategory(caseId, category);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -316,7 +316,7 @@ public class FileController {
 
     // ===== MÉTHODES UTILITAIRES =====
 
-    private Map<String, Object> createFileResponse(ReportFile file) {
+    private Map<String, Object> createFileResponse(ReportFileSummary file) {
         Map<String, Object> response = new HashMap<>();
         response.put("id", file.getId());
         response.put("fileName", file.getFileName());
@@ -330,11 +330,11 @@ public class FileController {
         response.put("isPublic", file.getIsPublic());
         response.put("createdAt", file.getCreatedAt());
         response.put("updatedAt", file.getUpdatedAt());
-        response.put("reportId", file.getReport().getId());
+        response.put("reportId", file.getReportId());
         return response;
     }
 
-    private Map<String, Object> createAttachmentResponse(CaseAttachment attachment) {
+    private Map<String, Object> createAttachmentResponse(CaseAttachmentSummary attachment) {
         Map<String, Object> response = new HashMap<>();
         response.put("id", attachment.getId());
         response.put("fileName", attachment.getFileName());
@@ -348,7 +348,7 @@ public class FileController {
         response.put("isPublic", attachment.getIsPublic());
         response.put("createdAt", attachment.getCreatedAt());
         response.put("updatedAt", attachment.getUpdatedAt());
-        response.put("caseId", attachment.getInsuranceCase().getId());
+        response.put("caseId", attachment.getCaseId());
         return response;
     }
 }
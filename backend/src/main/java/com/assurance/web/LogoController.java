@@ -0,0 +1,40 @@
+package com.assurance.web;
+
+import com.assurance.service.LogoService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/logos")
+// CORS géré par WebConfig.java
+public class LogoController {
+    private final LogoService logoService;
+
+    public LogoController(LogoService logoService) {
+        this.logoService = logoService;
+    }
+
+    // Logo d'une compagnie par empreinte (taille standard la plus proche) : le contenu d'une URL ne change jamais
+    @GetMapping("/{hash}")
+    public ResponseEntity<byte[]> logo(@PathVariable("hash") String hash, @RequestParam(required = false) Integer size) {
+        try {
+            return logoService.find(hash, size)
+                .map(logo -> ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(logo.getContentType()))
+                    .eTag(size != null ? hash + "-" + size : hash)
+                    .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                    // Images seulement : un SVG conservé tel quel ne doit pas exécuter de script
+                    .header("X-Content-Type-Options", "nosniff")
+                    .header("Content-Security-Policy", "default-src 'none'; style-src 'unsafe-inline'")
+                    .body(logo.getBytes()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la lecture du logo " + hash + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
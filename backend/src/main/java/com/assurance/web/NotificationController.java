@@ -76,11 +76,8 @@ public class NotificationController {
     @PostMapping("/user/{userId}/read-all")
     public ResponseEntity<Map<String, Boolean>> markAllAsRead(@PathVariable String userId) {
         try {
-            List<Notification> unreadNotifications = notificationService.getUnreadNotifications(userId);
-            for (Notification notification : unreadNotifications) {
-                notificationService.markAsRead(notification.getId(), userId);
-            }
-            return ResponseEntity.ok(Map.of("success", true));
+            boolean success = notificationService.markAllAsRead(userId);
+            return ResponseEntity.ok(Map.of("success", success));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
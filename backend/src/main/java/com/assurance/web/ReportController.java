@@ -3,8 +3,12 @@ package com.assurance.web;
 import com.assurance.domain.Report;
 import com.assurance.domain.ReportFile;
 import com.assurance.service.ReportService;
+import com.assurance.service.FileContent;
 import com.assurance.service.FileService;
+import com.assurance.service.LogoService;
 import com.assurance.web.dto.ReportDto;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -12,8 +16,12 @@ import org.springframework.http.ResponseEntity;
 import com.assurance.repo.InsuranceCaseRepository;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -22,35 +30,43 @@ public class ReportController {
     private final ReportService reportService;
     private final FileService fileService;
     private final InsuranceCaseRepository insuranceCaseRepository;
-    private final com.assurance.repository.UserRepository userRepository;
+    private final LogoService logoService;
     
-    public ReportController(ReportService reportService, FileService fileService, InsuranceCaseRepository insuranceCaseRepository, com.assurance.repository.UserRepository userRepository) { 
+    public ReportController(ReportService reportService, FileService fileService, InsuranceCaseRepository insuranceCaseRepository, LogoService logoService) { 
         this.reportService = reportService; 
         this.fileService = fileService;
         this.insuranceCaseRepository = insuranceCaseRepository; 
-        this.userRepository = userRepository;
+        this.logoService = logoService;
     }
 
     @GetMapping
     public List<ReportDto> list() {
-        return reportService.list().stream().map(r -> {
+        List<Report> reports = reportService.list();
+        // Une requête pour les logos de tous les créateurs (hors cache), quelle que soit la taille de la liste
+        Map<String, String> logoHashes = new HashMap<>();
+        try {
+            logoHashes = logoService.logoHashes(reports.stream().map(Report::getCreatedBy).collect(Collectors.toSet()));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la récupération des logos: " + e.getMessage());
+        }
+        List<ReportDto> result = new ArrayList<>(reports.size());
+        for (Report r : reports) {
             ReportDto dto = ReportDto.from(r);
-            // Ajouter le logo du propriétaire si disponible
-            try {
-                com.assurance.repository.UserRepository userRepo = (com.assurance.repository.UserRepository) new org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor().getEarlyBeanReference(null, "userRepository");
-            } catch (Exception ignored) {}
-            // Ajouter le logo du propriétaire si disponible
-            try {
-                dto.ownerLogo = userRepository.findByUsername(r.getCreatedBy()).map(u -> u.getCompanyLogo()).orElse(null);
-            } catch (Exception ignored) {}
+            // Logo du propriétaire par URL : le navigateur le met en cache
+            String logoHash = logoHashes.get(r.getCreatedBy());
+            if (logoHash != null) {
+                dto.ownerLogoUrl = LogoService.logoUrl(logoHash);
+                dto.ownerLogoETag = logoHash;
+            }
             // TEMPORAIRE: Désactiver la recherche par rapport pour éviter les erreurs LOB
             // insuranceCaseRepository.findTopByReportOrderByCreatedAtDesc(r).ifPresent(ic -> {
             //     dto.caseReference = ic.getReference();
             //     // caseCode optionnel: si vous calculez un code différent côté backend, mappez-le ici
             //     dto.caseCode = ic.getReference();
             // });
-            return dto;
-        }).toList();
+            result.add(dto);
+        }
+        return result;
     }
 
     @PostMapping
@@ -134,30 +150,56 @@ public class ReportController {
         return ResponseEntity.noContent().build();
     }
 
-    // Aperçu inline: renvoie les premiers octets du fichier s'il existe (ou 204 si absent)
+    // Aperçu basse résolution du rapport (fichier principal en priorité), ou 204 s'il n'est pas encore généré
     @GetMapping("/{id}/preview")
-    public ResponseEntity<byte[]> preview(@PathVariable("id") Long id) {
-        return ResponseEntity.status(501).body("Preview non implémenté côté fichier".getBytes());
+    public ResponseEntity<Resource> preview(@PathVariable("id") Long id) {
+        try {
+            var previewFile = fileService.findReportPreview(id);
+            if (previewFile.isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            FileContent content = fileService.openPreview(previewFile.get());
+            // Court délai de cache : l'aperçu du rapport change si le fichier principal est remplacé
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(content.getContentType()))
+                .eTag(content.getETag())
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(10)).cachePrivate())
+                .body(content.getResource());
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la lecture de l'aperçu du rapport: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
     }
 
-    // Endpoint pour prévisualiser un fichier spécifique d'un rapport
-    @GetMapping("/{reportId}/files/{fileId}/preview")
-    public ResponseEntity<byte[]> previewFile(@PathVariable("reportId") Long reportId, @PathVariable("fileId") Long fileId) {
+    // Miniature d'un fichier précis (l'aperçu d'un fichier ne change jamais une fois généré)
+    @GetMapping("/{reportId}/files/{fileId}/thumbnail")
+    public ResponseEntity<Resource> fileThumbnail(@PathVariable("reportId") Long reportId, @PathVariable("fileId") Long fileId) {
         try {
-            // Vérifier que le rapport existe
-            Report report = reportService.findById(reportId);
-            if (report == null) {
+            var targetFile = fileService.findReportFile(reportId, fileId);
+            if (targetFile.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
+            if (targetFile.get().getPreviewStatus() != ReportFile.PreviewStatus.READY) {
+                return ResponseEntity.noContent().build();
+            }
+            FileContent content = fileService.openPreview(targetFile.get());
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(content.getContentType()))
+                .eTag(content.getETag())
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                .body(content.getResource());
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la lecture de la miniature: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 
-            // Récupérer le fichier via le FileService
-            byte[] fileContent = fileService.downloadReportFile(fileId);
-            
-            // Récupérer les métadonnées du fichier pour définir le Content-Type
-            var reportFiles = fileService.getReportFiles(reportId);
-            var targetFile = reportFiles.stream()
-                .filter(f -> f.getId().equals(fileId))
-                .findFirst();
+    // Endpoint pour prévisualiser un fichier spécifique d'un rapport
+    @GetMapping("/{reportId}/files/{fileId}/preview")
+    public ResponseEntity<Resource> previewFile(@PathVariable("reportId") Long reportId, @PathVariable("fileId") Long fileId) {
+        try {
+            // Récupérer les métadonnées du fichier (une seule requête, appartenance au rapport comprise)
+            var targetFile = fileService.findReportFile(reportId, fileId);
             
             if (targetFile.isEmpty()) {
                 return ResponseEntity.notFound().build();
@@ -165,6 +207,9 @@ public class ReportController {
             
             ReportFile file = targetFile.get();
             
+            // Contenu servi en flux : les visionneuses PDF peuvent demander des plages (Range)
+            FileContent content = fileService.openReportFile(file);
+            
             // Définir les headers appropriés
             HttpHeaders headers = new HttpHeaders();
             if (file.getContentType() != null) {
@@ -189,9 +234,10 @@ public class ReportController {
             
             // Pour la prévisualisation, on affiche inline plutôt qu'en téléchargement
             headers.set("Content-Disposition", "inline; filename=\"" + file.getFileName() + "\"");
-            headers.setContentLength(fileContent.length);
+            headers.setETag(content.getETag());
+            headers.setCacheControl(CacheControl.noCache().cachePrivate());
             
-            return new ResponseEntity<>(fileContent, headers, HttpStatus.OK);
+            return new ResponseEntity<>(content.getResource(), headers, HttpStatus.OK);
             
         } catch (Exception e) {
             System.err.println("Erreur lors de la prévisualisation du fichier: " + e.getMessage());
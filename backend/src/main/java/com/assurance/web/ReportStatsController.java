@@ -1,17 +1,16 @@
 package com.assurance.web;
 
-import com.assurance.domain.Report;
-import com.assurance.domain.InsuranceCase;
 import com.assurance.domain.AuditEvent;
+import com.assurance.repo.AuditEventRepository;
 import com.assurance.repo.ReportRepository;
 import com.assurance.repo.InsuranceCaseRepository;
-import com.assurance.repo.AuditEventRepository;
+import com.assurance.service.ReportStatsService;
+import com.assurance.service.ActorCompanyResolver;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,13 +21,19 @@ public class ReportStatsController {
     
     private final ReportRepository reportRepository;
     private final InsuranceCaseRepository caseRepository;
+    private final ReportStatsService reportStatsService;
+    private final ActorCompanyResolver companyResolver;
     private final AuditEventRepository auditEventRepository;
     
     public ReportStatsController(ReportRepository reportRepository, 
                                 InsuranceCaseRepository caseRepository,
+                                ReportStatsService reportStatsService,
+                                ActorCompanyResolver companyResolver,
                                 AuditEventRepository auditEventRepository) {
         this.reportRepository = reportRepository;
         this.caseRepository = caseRepository;
+        this.reportStatsService = reportStatsService;
+        this.companyResolver = companyResolver;
         this.auditEventRepository = auditEventRepository;
     }
     
@@ -36,7 +41,8 @@ public class ReportStatsController {
     public ResponseEntity<Map<String, Object>> getReportStats() {
         try {
             // Statistiques générales
-            long totalCreated = reportRepository.count();
+            // Compteurs tenus en mémoire par ReportStatsService : aucune table parcourue
+            long totalCreated = reportStatsService.totalReports();
             long totalModified = countModifiedReports();
             long totalDeleted = 0; // Pas de soft delete implémenté pour l'instant
             long totalRequests = countAccessRequests();
@@ -72,14 +78,47 @@ public class ReportStatsController {
         }
     }
     
+    // Nombre de téléchargements d'un rapport (index entity_type, entity_id, type)
+    @GetMapping("/{reportId}/downloads")
+    public ResponseEntity<Map<String, Object>> getReportDownloads(@PathVariable("reportId") Long reportId) {
+        long downloads = auditEventRepository.countByEntityTypeAndEntityIdAndType(
+                AuditEvent.EntityType.REPORT, reportId, AuditEvent.EventType.REPORT_DOWNLOADED);
+        Map<String, Object> result = new HashMap<>();
+        result.put("reportId", reportId);
+        result.put("downloads", downloads);
+        return ResponseEntity.ok(result);
+    }
+    
+    // Activité d'une compagnie par type d'événement sur [from, to) (30 derniers jours par défaut)
+    @GetMapping("/companies/{company}/activity")
+    public ResponseEntity<Map<String, Object>> getCompanyActivity(@PathVariable("company") String company,
+                                                                  @RequestParam(required = false) Instant from,
+                                                                  @RequestParam(required = false) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(30));
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Période invalide"));
+        }
+        
+        Map<String, Long> byType = new TreeMap<>();
+        long total = 0;
+        for (Object[] row : auditEventRepository.countByTypeForCompany(company, start, end)) {
+            long count = ((Number) row[1]).longValue();
+            byType.put(((AuditEvent.EventType) row[0]).name(), count);
+            total += count;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("company", company);
+        result.put("from", start.toString());
+        result.put("to", end.toString());
+        result.put("total", total);
+        result.put("byType", byType);
+        return ResponseEntity.ok(result);
+    }
+    
     private long countModifiedReports() {
         // Compter les rapports qui ont été modifiés (créés dans les 30 derniers jours)
-        LocalDate thirtyDaysAgo = LocalDate.now().minusDays(30);
-        Instant thirtyDaysAgoInstant = thirtyDaysAgo.atStartOfDay(ZoneId.systemDefault()).toInstant();
-        
-        return reportRepository.findAll().stream()
-                .filter(report -> report.getCreatedAt().isAfter(thirtyDaysAgoInstant))
-                .count();
+        return reportStatsService.reportsCreatedInWindow();
     }
     
     private long countDeletedReports() {
@@ -89,9 +128,7 @@ public class ReportStatsController {
     
     private long countAccessRequests() {
         try {
-            return auditEventRepository.findAll().stream()
-                    .filter(event -> event.getType() == AuditEvent.EventType.ACCESS_REQUEST_CREATED)
-                    .count();
+            return reportStatsService.countEvents(AuditEvent.EventType.ACCESS_REQUEST_CREATED);
         } catch (Exception e) {
             // Si pas d'événements d'audit, retourner 0
             return 0;
@@ -99,12 +136,11 @@ public class ReportStatsController {
     }
     
     private List<Map<String, Object>> getCompaniesWithReports() {
-        List<Object[]> results = reportRepository.countReportsByCompany();
-        return results.stream()
-                .map(result -> {
+        return reportStatsService.reportsByCreator().entrySet().stream()
+                .map(entry -> {
                     Map<String, Object> company = new HashMap<>();
-                    company.put("company", result[0] != null ? result[0].toString() : "Inconnu");
-                    company.put("count", ((Number) result[1]).longValue());
+                    company.put("company", entry.getKey());
+                    company.put("count", entry.getValue());
                     return company;
                 })
                 .sorted((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")))
@@ -113,13 +149,10 @@ public class ReportStatsController {
     
     private List<Map<String, Object>> getCompaniesWithRequests() {
         try {
-            return auditEventRepository.findAll().stream()
-                    .filter(event -> event.getType() == AuditEvent.EventType.ACCESS_REQUEST_CREATED)
-                    .collect(Collectors.groupingBy(
-                        event -> extractCompanyFromActor(event.getActor()),
-                        Collectors.counting()
-                    ))
-                    .entrySet().stream()
+            Map<String, Long> byCompany = new HashMap<>();
+            reportStatsService.countEventsByActor(AuditEvent.EventType.ACCESS_REQUEST_CREATED)
+                    .forEach((actor, count) -> byCompany.merge(companyResolver.resolve(actor), count, Long::sum));
+            return byCompany.entrySet().stream()
                     .map(entry -> {
                         Map<String, Object> company = new HashMap<>();
                         company.put("company", entry.getKey());
@@ -143,7 +176,7 @@ public class ReportStatsController {
                     reportData.put("title", report.getTitle());
                     reportData.put("createdBy", report.getCreatedBy() != null ? report.getCreatedBy() : "Inconnu");
                     reportData.put("createdAt", report.getCreatedAt().toString());
-                    reportData.put("company", extractCompanyFromActor(report.getCreatedBy()));
+                    reportData.put("company", companyResolver.resolve(report.getCreatedBy()));
                     return reportData;
                 })
                 .collect(Collectors.toList());
@@ -151,16 +184,13 @@ public class ReportStatsController {
     
     private List<Map<String, Object>> getRecentRequests() {
         try {
-            return auditEventRepository.findAll().stream()
-                    .filter(event -> event.getType() == AuditEvent.EventType.ACCESS_REQUEST_CREATED)
-                    .sorted(Comparator.comparing(AuditEvent::getAtISO).reversed())
-                    .limit(5)
+            return reportStatsService.recentAccessRequests().stream()
                     .map(event -> {
                         Map<String, Object> request = new HashMap<>();
                         request.put("id", event.getId());
                         request.put("requesterName", event.getActor());
                         request.put("reportTitle", extractReportTitleFromMessage(event.getMessage()));
-                        request.put("company", extractCompanyFromActor(event.getActor()));
+                        request.put("company", companyResolver.resolve(event.getActor()));
                         request.put("requestedAt", event.getAtISO().toString());
                         return request;
                     })
@@ -171,21 +201,6 @@ public class ReportStatsController {
         }
     }
     
-    private String extractCompanyFromActor(String actor) {
-        if (actor == null) return "Inconnu";
-        
-        // Logique pour extraire la compagnie depuis l'acteur
-        if (actor.contains("admin")) return "Administrateur";
-        if (actor.contains("axa") || actor.contains("AXA")) return "AXA";
-        if (actor.contains("allianz") || actor.contains("Allianz")) return "Allianz";
-        if (actor.contains("generali") || actor.contains("Generali")) return "Generali";
-        if (actor.contains("groupama") || actor.contains("Groupama")) return "Groupama";
-        if (actor.contains("maif") || actor.contains("Maif")) return "Maif";
-        if (actor.contains("macif") || actor.contains("Macif")) return "Macif";
-        
-        return actor;
-    }
-    
     private String extractReportTitleFromMessage(String message) {
         if (message == null) return "Rapport inconnu";
         
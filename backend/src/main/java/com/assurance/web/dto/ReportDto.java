@@ -13,7 +13,8 @@ public class ReportDto {
     public String insured;
     public String subscriber;
     public String createdBy; // Nom de l'utilisateur qui a créé le rapport
-    public String ownerLogo; // Logo compagnie du propriétaire
+    public String ownerLogoUrl; // Logo compagnie du propriétaire (/api/logos/{empreinte})
+    public String ownerLogoETag; // Empreinte du logo
     public Instant createdAt;
     public String caseReference;
     public String caseCode; // affichage front
@@ -0,0 +1,53 @@
+-- Partitionnement mensuel de la table audit_events sur atiso (UTC)
+-- Les partitions suivantes sont créées par AuditPartitionService, qui archive aussi les plus anciennes.
+-- La clé primaire d'une table partitionnée doit inclure la clé de partitionnement : (id, atiso).
+-- Prérequis : colonnes company_code, entity_type et entity_id déjà ajoutées par l'application.
+
+ALTER TABLE audit_events RENAME TO audit_events_legacy;
+
+CREATE SEQUENCE audit_events_partitioned_id_seq;
+SELECT setval('audit_events_partitioned_id_seq', COALESCE((SELECT MAX(id) FROM audit_events_legacy), 0) + 1, false);
+
+CREATE TABLE audit_events (
+    id BIGINT NOT NULL DEFAULT nextval('audit_events_partitioned_id_seq'),
+    type VARCHAR(255) NOT NULL,
+    message VARCHAR(512) NOT NULL,
+    actor VARCHAR(128) NOT NULL,
+    atiso TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    company_code VARCHAR(128),
+    entity_type VARCHAR(32),
+    entity_id BIGINT,
+    PRIMARY KEY (id, atiso)
+) PARTITION BY RANGE (atiso);
+
+ALTER SEQUENCE audit_events_partitioned_id_seq OWNED BY audit_events.id;
+
+-- Filet de sécurité pour les dates hors des partitions mensuelles (reprises par AuditPartitionService)
+CREATE TABLE audit_events_default PARTITION OF audit_events DEFAULT;
+
+-- Une partition par mois, du plus ancien événement jusqu'à trois mois après le mois courant
+DO $$
+DECLARE
+    month_start TIMESTAMPTZ;
+    last_month TIMESTAMPTZ := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + INTERVAL '3 months';
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(atiso) AT TIME ZONE 'UTC') AT TIME ZONE 'UTC',
+                    date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC')
+      INTO month_start FROM audit_events_legacy;
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_events FOR VALUES FROM (%L) TO (%L)',
+                       'audit_events_' || to_char(month_start AT TIME ZONE 'UTC', 'YYYY_MM'),
+                       month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO audit_events (id, type, message, actor, atiso, company_code, entity_type, entity_id)
+SELECT id, type, message, actor, atiso, company_code, entity_type, entity_id FROM audit_events_legacy;
+
+DROP TABLE audit_events_legacy;
+
+-- Index créés sur chaque partition (existantes et futures)
+CREATE INDEX idx_audit_events_type_at ON audit_events(type, atiso);
+CREATE INDEX idx_audit_events_entity ON audit_events(entity_type, entity_id, type);
+CREATE INDEX idx_audit_events_company_at ON audit_events(company_code, atiso);
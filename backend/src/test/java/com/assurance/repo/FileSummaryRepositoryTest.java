@@ -0,0 +1,92 @@
+package com.assurance.repo;
+
+import com.assurance.domain.CaseAttachment;
+import com.assurance.domain.CaseAttachmentSummary;
+import com.assurance.domain.InsuranceCase;
+import com.assurance.domain.Report;
+import com.assurance.domain.ReportFile;
+import com.assurance.domain.ReportFileSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Requêtes de métadonnées (SUMMARY_SELECT) : chaque ligne doit être un résumé lisible, pas un Object[]
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class FileSummaryRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ReportFileRepository reportFileRepository;
+
+    @Autowired
+    private CaseAttachmentRepository caseAttachmentRepository;
+
+    @Test
+    void reportFileSummariesExposeMetadata() {
+        Report report = new Report();
+        report.setTitle("Rapport");
+        entityManager.persist(report);
+        ReportFile file = new ReportFile();
+        file.setReport(report);
+        file.setFileName("constat.PDF");
+        file.setContentType("application/pdf");
+        file.setSizeBytes(2048L);
+        file.setFileType("main");
+        file.setIsPublic(true);
+        entityManager.persist(file);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ReportFileSummary> summaries = reportFileRepository.findSummariesByReportId(report.getId());
+
+        assertThat(summaries).hasSize(1);
+        ReportFileSummary summary = summaries.get(0);
+        assertThat(summary.getId()).isEqualTo(file.getId());
+        assertThat(summary.getFileName()).isEqualTo("constat.PDF");
+        assertThat(summary.getReportId()).isEqualTo(report.getId());
+        assertThat(summary.getFileExtension()).isEqualTo("pdf");
+        assertThat(summary.getFormattedSize()).isEqualTo("2.0 KB");
+        assertThat(reportFileRepository.findByReportIdAndFileNameContainingIgnoreCase(report.getId(), "CONSTAT"))
+            .extracting(ReportFileSummary::getId).containsExactly(file.getId());
+    }
+
+    @Test
+    void caseAttachmentSummariesExposeMetadata() {
+        InsuranceCase insuranceCase = new InsuranceCase();
+        insuranceCase.setReference("DOS-0001");
+        insuranceCase.setType(InsuranceCase.CaseType.ENQUETE);
+        insuranceCase.setStatus(InsuranceCase.CaseStatus.SOUS_ENQUETE);
+        entityManager.persist(insuranceCase);
+        CaseAttachment attachment = new CaseAttachment();
+        attachment.setInsuranceCase(insuranceCase);
+        attachment.setFileName("photo.jpg");
+        attachment.setCategory("photos");
+        attachment.setSizeBytes(512L);
+        entityManager.persist(attachment);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<CaseAttachmentSummary> summaries =
+            caseAttachmentRepository.findByInsuranceCaseIdAndCategoryOrderByCreatedAtDesc(insuranceCase.getId(), "photos");
+
+        assertThat(summaries).hasSize(1);
+        CaseAttachmentSummary summary = summaries.get(0);
+        assertThat(summary.getId()).isEqualTo(attachment.getId());
+        assertThat(summary.getFileName()).isEqualTo("photo.jpg");
+        assertThat(summary.getCaseId()).isEqualTo(insuranceCase.getId());
+        assertThat(summary.getFormattedSize()).isEqualTo("512 B");
+    }
+}
@@ -0,0 +1,60 @@
+package com.assurance.repo;
+
+import com.assurance.domain.Report;
+import com.assurance.domain.ReportFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sélection des aperçus à générer : en attente d'abord, puis échecs tant qu'il reste des essais
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class ReportFileRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ReportFileRepository reportFileRepository;
+
+    @Test
+    void pendingPreviewsComeBeforeFailuresWithAttemptsLeft() {
+        Report report = new Report();
+        report.setTitle("Rapport");
+        entityManager.persist(report);
+        ReportFile failedOnce = file(report, ReportFile.PreviewStatus.PENDING);
+        ReportFile pending = file(report, ReportFile.PreviewStatus.PENDING);
+        ReportFile exhausted = file(report, ReportFile.PreviewStatus.PENDING);
+        ReportFile ready = file(report, ReportFile.PreviewStatus.READY);
+        entityManager.flush();
+
+        reportFileRepository.recordPreviewFailure(failedOnce.getId());
+        for (int i = 0; i < 3; i++) {
+            reportFileRepository.recordPreviewFailure(exhausted.getId());
+        }
+        entityManager.clear();
+
+        assertThat(reportFileRepository.findIdsPendingPreview(10, 3))
+            .containsExactly(pending.getId(), failedOnce.getId());
+        ReportFile reloaded = reportFileRepository.findById(exhausted.getId()).orElseThrow();
+        assertThat(reloaded.getPreviewStatus()).isEqualTo(ReportFile.PreviewStatus.FAILED);
+        assertThat(reloaded.getPreviewAttempts()).isEqualTo(3);
+    }
+
+    private ReportFile file(Report report, ReportFile.PreviewStatus status) {
+        ReportFile file = new ReportFile();
+        file.setReport(report);
+        file.setFileName("photo.jpg");
+        file.setBlobKey("blob-" + System.nanoTime());
+        file.setPreviewStatus(status);
+        return entityManager.persist(file);
+    }
+}
@@ -0,0 +1,169 @@
+package com.assurance.service;
+
+import com.assurance.domain.BlobContent;
+import com.assurance.repo.BlobContentRepository;
+import com.assurance.repo.CaseAttachmentRepository;
+import com.assurance.repo.ReportFileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Comptage des références : prise, libération et suppression du blob à la dernière référence
+ */
+class BlobReferenceServiceTest {
+    private static final byte[] IV = new byte[16];
+
+    private BlobContentRepository blobContentRepository;
+    private ReportFileRepository reportFileRepository;
+    private CaseAttachmentRepository caseAttachmentRepository;
+    private BlobStore blobStore;
+    private BlobReferenceService service;
+
+    @BeforeEach
+    void setUp() {
+        blobContentRepository = mock(BlobContentRepository.class);
+        reportFileRepository = mock(ReportFileRepository.class);
+        caseAttachmentRepository = mock(CaseAttachmentRepository.class);
+        blobStore = mock(BlobStore.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        service = new BlobReferenceService(blobContentRepository, reportFileRepository, caseAttachmentRepository,
+                blobStore, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void acquireTakesReferenceOnWrittenBlob() {
+        BlobContent row = content("k1", 1);
+        when(blobContentRepository.findById("k1")).thenReturn(Optional.of(row));
+
+        BlobContent acquired = service.acquire("k1", "d1", IV, null, 10L, false);
+
+        assertThat(acquired).isSameAs(row);
+        verify(blobContentRepository).acquire("k1", "d1", IV, null, 10L);
+    }
+
+    @Test
+    void encryptedAcquireReusesExistingContentAndDropsDuplicate() throws IOException {
+        BlobContent shared = content("shared", 2);
+        shared.setIv(new byte[] { 1, 2, 3 });
+        when(blobContentRepository.findFirstByContentDigestAndKeyIdAndRefCountGreaterThan("d1", "key-1", 0))
+            .thenReturn(Optional.of(shared));
+        when(blobContentRepository.lockByBlobKey("fresh")).thenReturn(Optional.of(content("fresh", 0)));
+
+        BlobContent acquired = service.acquire("fresh", "d1", IV, "key-1", 10L, true);
+
+        assertThat(acquired).isSameAs(shared);
+        verify(blobContentRepository).acquire("shared", "d1", shared.getIv(), "key-1", 10L);
+        verify(blobContentRepository, never()).acquire(eq("fresh"), any(), any(), any(), any());
+        // Copie chiffrée en double : supprimée (aucune transaction active, donc immédiatement)
+        verify(blobStore).delete("fresh");
+    }
+
+    @Test
+    void releaseOfLastReferenceDeletesBlobAndRow() throws IOException {
+        BlobContent row = content("k1", 0);
+        when(blobContentRepository.lockByBlobKey("k1")).thenReturn(Optional.of(row));
+
+        service.release("k1");
+
+        var order = inOrder(blobContentRepository, blobStore);
+        order.verify(blobContentRepository).release("k1");
+        order.verify(blobContentRepository).insertIfAbsent("k1");
+        order.verify(blobContentRepository).lockByBlobKey("k1");
+        order.verify(blobStore).delete("k1");
+        order.verify(blobContentRepository).delete(row);
+    }
+
+    @Test
+    void releaseKeepsBlobWhileReferencesRemain() throws IOException {
+        when(blobContentRepository.lockByBlobKey("k1")).thenReturn(Optional.of(content("k1", 1)));
+
+        service.release("k1");
+
+        verify(blobStore, never()).delete(anyString());
+        verify(blobContentRepository, never()).delete(any(BlobContent.class));
+    }
+
+    @Test
+    void deleteKeepsBlobStillUsedByUncountedFiles() throws IOException {
+        when(blobContentRepository.lockByBlobKey("k1")).thenReturn(Optional.of(content("k1", 0)));
+        when(caseAttachmentRepository.countByBlobKey("k1")).thenReturn(1L);
+
+        service.deleteIfUnreferenced("k1");
+
+        verify(blobStore, never()).delete(anyString());
+        verify(blobContentRepository, never()).delete(any(BlobContent.class));
+    }
+
+    @Test
+    void deleteKeepsRowWhenBlobStoreFails() throws IOException {
+        when(blobContentRepository.lockByBlobKey("k1")).thenReturn(Optional.of(content("k1", 0)));
+        doThrow(new IOException("disque indisponible")).when(blobStore).delete("k1");
+
+        service.deleteIfUnreferenced("k1");
+
+        verify(blobContentRepository, never()).delete(any(BlobContent.class));
+    }
+
+    @Test
+    void releaseInsideTransactionDeletesOnlyAfterCommit() throws IOException {
+        when(blobContentRepository.lockByBlobKey("k1")).thenReturn(Optional.of(content("k1", 0)));
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.release("k1");
+
+        verify(blobStore, never()).delete(anyString());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(blobStore).delete("k1");
+    }
+
+    @Test
+    void duplicateInsideRolledBackTransactionIsStillDeleted() throws IOException {
+        when(blobContentRepository.findFirstByContentDigestAndKeyIdAndRefCountGreaterThan(anyString(), anyString(), anyInt()))
+            .thenReturn(Optional.of(content("shared", 1)));
+        when(blobContentRepository.lockByBlobKey("fresh")).thenReturn(Optional.of(content("fresh", 0)));
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.acquire("fresh", "d1", IV, "key-1", 10L, true);
+
+        verify(blobStore, never()).delete(anyString());
+        TransactionSynchronizationManager.getSynchronizations()
+            .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        verify(blobStore).delete("fresh");
+    }
+
+    private static BlobContent content(String blobKey, int refCount) {
+        BlobContent content = new BlobContent();
+        content.setBlobKey(blobKey);
+        content.setContentDigest("d1");
+        content.setRefCount(refCount);
+        return content;
+    }
+}
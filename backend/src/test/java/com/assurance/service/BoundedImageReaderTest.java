@@ -0,0 +1,78 @@
+package com.assurance.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Décodage borné des images envoyées par les utilisateurs
+ */
+class BoundedImageReaderTest {
+
+    @Test
+    void rejectsDeclaredCanvasAboveLimitWithoutDecoding() throws IOException {
+        // Quelques centaines d'octets annonçant 100 000 x 100 000 pixels
+        byte[] bomb = withDeclaredSize(png(8, 8), 100_000, 100_000);
+
+        assertThatThrownBy(() -> read(bomb, 16_777_216, 128))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("100000x100000");
+    }
+
+    @Test
+    void subsamplesLargeImagesWhileReading() throws IOException {
+        BufferedImage image = read(png(2000, 1000), 16_777_216, 128);
+
+        // Pas de 7 : côté le plus long ramené à environ deux fois la taille cible
+        assertThat(image.getWidth()).isEqualTo(286);
+        assertThat(image.getHeight()).isEqualTo(143);
+    }
+
+    @Test
+    void keepsSmallImagesAtFullResolution() throws IOException {
+        BufferedImage image = read(png(100, 50), 16_777_216, 128);
+
+        assertThat(image.getWidth()).isEqualTo(100);
+        assertThat(image.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    void returnsNullForUnknownFormats() throws IOException {
+        byte[] svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes();
+
+        assertThat(read(svg, 16_777_216, 128)).isNull();
+    }
+
+    private static BufferedImage read(byte[] bytes, long maxPixels, int targetSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            return BoundedImageReader.read(input, maxPixels, targetSize);
+        }
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    // Réécrit largeur et hauteur du bloc IHDR (juste après la signature PNG) et son CRC
+    private static byte[] withDeclaredSize(byte[] png, int width, int height) {
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        buffer.putInt(16, width);
+        buffer.putInt(20, height);
+        CRC32 crc = new CRC32();
+        crc.update(png, 12, 17);
+        buffer.putInt(29, (int) crc.getValue());
+        return png;
+    }
+}
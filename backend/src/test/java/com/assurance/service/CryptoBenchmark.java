@@ -0,0 +1,135 @@
+package com.assurance.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit du chiffrement AES-GCM de CryptoService : buffer entier, flux segmentés (SegmentedGcm)
+ * et lecture d'une plage au milieu du fichier (skip() sans déchiffrer les segments sautés).
+ *
+ * Lancement : mvn test-compile puis exécuter main() avec le classpath de test, par exemple
+ * mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.assurance.service.CryptoBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+    // Plage lue par une requête Range typique d'une visionneuse PDF
+    private static final int RANGE_LENGTH = 64 * 1024;
+
+    @Param({"65536", "1048576", "16777216"})
+    private int size;
+
+    private CryptoService cryptoService;
+    private String keyId;
+    // Un Cipher GCM refuse d'être réinitialisé en chiffrement avec la même clé et le même IV :
+    // chaque chiffrement prend un IV distinct (compteur, moins coûteux que SecureRandom)
+    private long ivCounter;
+    private byte[] bufferIv;
+    private byte[] streamIv;
+    private byte[] plain;
+    private byte[] buffered;
+    private byte[] segmented;
+    private final byte[] readBuffer = new byte[8192];
+
+    @Setup
+    public void setUp() throws IOException {
+        cryptoService = new CryptoService(new KeyRing("", KeyRing.DEFAULT_KEY_ID), new SimpleMeterRegistry(), 64);
+        keyId = cryptoService.activeKeyId();
+        plain = new byte[size];
+        new Random(42).nextBytes(plain);
+        bufferIv = nextIv();
+        buffered = cryptoService.encrypt(keyId, bufferIv, plain);
+        streamIv = nextIv();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + size / 1024 + 64);
+        try (OutputStream encrypting = cryptoService.encryptingOutputStream(keyId, streamIv, out)) {
+            encrypting.write(plain);
+        }
+        segmented = out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encryptBuffer() {
+        return cryptoService.encrypt(keyId, nextIv(), plain);
+    }
+
+    @Benchmark
+    public byte[] decryptBuffer() {
+        return cryptoService.decrypt(keyId, bufferIv, buffered);
+    }
+
+    @Benchmark
+    public long encryptStream(Blackhole blackhole) throws IOException {
+        try (InputStream in = cryptoService.encryptingStream(keyId, nextIv(), new ByteArrayInputStream(plain))) {
+            return drain(in, Long.MAX_VALUE, blackhole);
+        }
+    }
+
+    @Benchmark
+    public long decryptStream(Blackhole blackhole) throws IOException {
+        try (InputStream in = cryptoService.decryptingStream(keyId, streamIv, new ByteArrayInputStream(segmented))) {
+            return drain(in, Long.MAX_VALUE, blackhole);
+        }
+    }
+
+    @Benchmark
+    public long decryptRangeFromMiddle(Blackhole blackhole) throws IOException {
+        try (InputStream in = cryptoService.decryptingStream(keyId, streamIv, new ByteArrayInputStream(segmented))) {
+            long offset = Math.max(0, size / 2 - RANGE_LENGTH / 2);
+            long skipped = 0;
+            while (skipped < offset) {
+                long n = in.skip(offset - skipped);
+                if (n <= 0) throw new IOException("skip interrompu à " + skipped);
+                skipped += n;
+            }
+            return drain(in, RANGE_LENGTH, blackhole);
+        }
+    }
+
+    private byte[] nextIv() {
+        byte[] iv = new byte[12];
+        long counter = ++ivCounter;
+        for (int i = 0; i < 8; i++) {
+            iv[i] = (byte) (counter >>> (8 * i));
+        }
+        return iv;
+    }
+
+    private long drain(InputStream in, long limit, Blackhole blackhole) throws IOException {
+        long total = 0;
+        int n;
+        while (total < limit && (n = in.read(readBuffer, 0, (int) Math.min(readBuffer.length, limit - total))) != -1) {
+            blackhole.consume(readBuffer);
+            total += n;
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CryptoBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.assurance.service;
+
+import com.assurance.domain.BlobContent;
+import com.assurance.domain.Report;
+import com.assurance.domain.ReportFile;
+import com.assurance.repo.CaseAttachmentRepository;
+import com.assurance.repo.InsuranceCaseRepository;
+import com.assurance.repo.ReportFileRepository;
+import com.assurance.repo.ReportRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ingestion d'un upload dont le contenu partagé a disparu du BlobStore entre l'écriture
+ * et la prise de référence (libération concurrente)
+ */
+class FileServiceIngestTest {
+    private static final long REPORT_ID = 1L;
+
+    private ReportFileRepository reportFileRepository;
+    private BlobStore blobStore;
+    private BlobReferenceService blobReferenceService;
+    private FileService fileService;
+    private final MockMultipartFile upload =
+        new MockMultipartFile("file", "constat.pdf", "application/pdf", "contenu du constat".getBytes());
+
+    @BeforeEach
+    void setUp() {
+        ReportRepository reportRepository = mock(ReportRepository.class);
+        reportFileRepository = mock(ReportFileRepository.class);
+        blobStore = mock(BlobStore.class);
+        blobReferenceService = mock(BlobReferenceService.class);
+        fileService = new FileService(reportRepository, reportFileRepository, mock(InsuranceCaseRepository.class),
+                mock(CaseAttachmentRepository.class), mock(CryptoService.class), blobStore, blobReferenceService,
+                mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(fileService, "chunkSize", 8192);
+
+        when(reportRepository.findById(REPORT_ID)).thenReturn(Optional.of(new Report()));
+        when(reportFileRepository.save(any(ReportFile.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void keepsReferenceWhenBlobIsPresent() throws Exception {
+        when(blobStore.put(any())).thenReturn("k1");
+        when(blobReferenceService.acquire(eq("k1"), anyString(), any(), any(), anyLong(), anyBoolean()))
+            .thenReturn(content("k1"));
+        when(blobStore.exists("k1")).thenReturn(true);
+
+        ReportFile saved = fileService.uploadReportFile(REPORT_ID, upload, null, null);
+
+        assertThat(saved.getBlobKey()).isEqualTo("k1");
+        verify(blobStore, times(1)).put(any());
+        verify(blobReferenceService, never()).release(anyString());
+    }
+
+    @Test
+    void rewritesMissingBlobUnderSameKey() throws Exception {
+        when(blobStore.put(any())).thenReturn("k1");
+        when(blobReferenceService.acquire(eq("k1"), anyString(), any(), any(), anyLong(), anyBoolean()))
+            .thenReturn(content("k1"));
+        when(blobStore.exists("k1")).thenReturn(false);
+
+        ReportFile saved = fileService.uploadReportFile(REPORT_ID, upload, null, null);
+
+        // Référence tenue sur la clé partagée, blob réécrit depuis l'upload
+        assertThat(saved.getBlobKey()).isEqualTo("k1");
+        verify(blobStore, times(2)).put(any());
+        verify(blobReferenceService, times(1)).acquire(anyString(), anyString(), any(), any(), anyLong(), anyBoolean());
+        verify(blobReferenceService, never()).release(anyString());
+    }
+
+    @Test
+    void switchesToNewContentWhenSharedBlobCannotBeRebuilt() throws Exception {
+        when(blobStore.put(any())).thenReturn("fresh");
+        when(blobReferenceService.acquire(eq("fresh"), anyString(), any(), any(), anyLong(), eq(false)))
+            .thenReturn(content("shared"), content("fresh"));
+        when(blobStore.exists("shared")).thenReturn(false);
+
+        ReportFile saved = fileService.uploadReportFile(REPORT_ID, upload, null, null);
+
+        assertThat(saved.getBlobKey()).isEqualTo("fresh");
+        var order = inOrder(blobReferenceService);
+        order.verify(blobReferenceService).acquire(eq("fresh"), anyString(), any(), any(), anyLong(), eq(false));
+        order.verify(blobReferenceService).release("shared");
+        order.verify(blobReferenceService).acquire(eq("fresh"), anyString(), any(), any(), anyLong(), eq(false));
+    }
+
+    private static BlobContent content(String blobKey) {
+        BlobContent content = new BlobContent();
+        content.setBlobKey(blobKey);
+        content.setContentDigest(FileService.sha256Hex("contenu du constat".getBytes()));
+        content.setIv(new byte[16]);
+        return content;
+    }
+}
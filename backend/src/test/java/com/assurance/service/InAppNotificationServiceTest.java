@@ -0,0 +1,156 @@
+package com.assurance.service;
+
+import com.assurance.domain.Notification;
+import com.assurance.domain.User;
+import com.assurance.repo.BroadcastNotificationRepository;
+import com.assurance.repo.BroadcastReceiptRepository;
+import com.assurance.repo.NotificationCursorRepository;
+import com.assurance.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fusion des diffusions au flux de l'utilisateur : curseurs de lecture et de corbeille,
+ * marques individuelles (lu, corbeille, restauration).
+ * Chaque appel du service valide sa propre transaction, comme en production.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(InAppNotificationService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InAppNotificationServiceTest {
+    private static final String USERNAME = "jdupont";
+
+    @Autowired
+    private InAppNotificationService service;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BroadcastNotificationRepository broadcastRepository;
+
+    @Autowired
+    private BroadcastReceiptRepository receiptRepository;
+
+    @Autowired
+    private NotificationCursorRepository cursorRepository;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User(USERNAME, "Jean", "Dupont", LocalDate.of(1980, 1, 1), "AXA", "secret", "jdupont@example.com");
+        user.setStatus(User.UserStatus.REGISTERED);
+        user.setCreatedAt(LocalDateTime.now().minusDays(1));
+        user.setLastLoginAt(LocalDateTime.now().minusHours(1));
+        userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        receiptRepository.deleteAll();
+        cursorRepository.deleteAll();
+        broadcastRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void readCursorCoversEarlierBroadcastsOnly() {
+        broadcast("Dossier 1");
+        broadcast("Dossier 2");
+        assertThat(service.countUnreadNotifications(USERNAME)).isEqualTo(2);
+
+        service.markAllAsRead(USERNAME);
+        broadcast("Dossier 3");
+
+        assertThat(service.countUnreadNotifications(USERNAME)).isEqualTo(1);
+        assertThat(titles(service.getUnreadNotifications(USERNAME))).containsExactly("Dossier 3");
+        assertThat(service.getNotifications(USERNAME)).hasSize(3);
+    }
+
+    @Test
+    void individualReadIsMergedThenFoldedIntoCursor() {
+        Long first = broadcast("Dossier 1");
+        broadcast("Dossier 2");
+
+        assertThat(service.markAsRead(-first, USERNAME)).isTrue();
+
+        assertThat(service.countUnreadNotifications(USERNAME)).isEqualTo(1);
+        assertThat(titles(service.getUnreadNotifications(USERNAME))).containsExactly("Dossier 2");
+
+        service.markAllAsRead(USERNAME);
+
+        // Marque de lecture devenue inutile : supprimée à l'avancée du curseur
+        assertThat(receiptRepository.findByUserIdAndBroadcastId(USERNAME, first)).isEmpty();
+        assertThat(service.countUnreadNotifications(USERNAME)).isZero();
+    }
+
+    @Test
+    void trashCursorAndRestoreMarkersAreMerged() {
+        Long first = broadcast("Dossier 1");
+        Long second = broadcast("Dossier 2");
+
+        service.deleteNotification(-first, USERNAME);
+
+        assertThat(titles(service.getNotifications(USERNAME))).containsExactly("Dossier 2");
+        assertThat(titles(service.getTrashedNotifications(USERNAME))).containsExactly("Dossier 1");
+        assertThat(service.countUnreadNotifications(USERNAME)).isEqualTo(1);
+
+        service.deleteAllUserNotifications(USERNAME);
+        assertThat(service.getNotifications(USERNAME)).isEmpty();
+        assertThat(service.countUnreadNotifications(USERNAME)).isZero();
+
+        // Restauration individuelle sous le curseur de corbeille
+        service.restoreNotification(-second, USERNAME);
+        assertThat(titles(service.getNotifications(USERNAME))).containsExactly("Dossier 2");
+        assertThat(titles(service.getTrashedNotifications(USERNAME))).containsExactly("Dossier 1");
+        assertThat(service.countUnreadNotifications(USERNAME)).isEqualTo(1);
+
+        // Nouvelle corbeille globale : la restauration antérieure ne s'applique plus
+        service.deleteAllUserNotifications(USERNAME);
+        assertThat(service.getNotifications(USERNAME)).isEmpty();
+        assertThat(titles(service.getTrashedNotifications(USERNAME))).containsExactlyInAnyOrder("Dossier 1", "Dossier 2");
+    }
+
+    @Test
+    void excludedAuthorDoesNotSeeOwnBroadcast() {
+        service.sendNotificationToAllUsersExcluding(USERNAME, data("Mon dossier"));
+        broadcast("Dossier d'un autre");
+
+        assertThat(titles(service.getNotifications(USERNAME))).containsExactly("Dossier d'un autre");
+        assertThat(service.countUnreadNotifications(USERNAME)).isEqualTo(1);
+    }
+
+    private Long broadcast(String title) {
+        service.sendNotificationToAllUsersExcluding(null, data(title));
+        return broadcastRepository.findMaxId();
+    }
+
+    private static Map<String, Object> data(String title) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", title);
+        data.put("message", "Nouveau dossier créé");
+        data.put("type", Notification.NotificationType.CASE_CREATED.name());
+        return data;
+    }
+
+    private static List<String> titles(List<Notification> notifications) {
+        return notifications.stream().map(Notification::getTitle).toList();
+    }
+}
@@ -0,0 +1,182 @@
+package com.assurance.service;
+
+import com.assurance.domain.NotificationOutbox;
+import com.assurance.repo.NotificationOutboxRepository;
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cycle de vie des messages de l'outbox : réservation sous bail, envoi, réessais espacés, lettre morte.
+ * Chaque étape valide sa propre transaction, comme en production (pas de transaction de test).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NotificationOutboxServiceTest {
+    private static final long LEASE_MS = 60_000;
+    private static final long BACKOFF_MS = 1_000;
+
+    @Autowired
+    private NotificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private EmailService emailService;
+    private SmsService smsService;
+    private NotificationOutboxService service;
+
+    @BeforeEach
+    void setUp() {
+        emailService = mock(EmailService.class);
+        smsService = mock(SmsService.class);
+        service = new NotificationOutboxService(outboxRepository, emailService, smsService,
+                mock(InAppNotificationService.class), transactionManager, 1, 1, 1);
+        ReflectionTestUtils.setField(service, "maxAttempts", 4);
+        ReflectionTestUtils.setField(service, "backoffMs", BACKOFF_MS);
+        ReflectionTestUtils.setField(service, "maxBackoffMs", 3 * BACKOFF_MS);
+        ReflectionTestUtils.setField(service, "emailBatchSize", 20);
+        ReflectionTestUtils.setField(service, "leaseMs", LEASE_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void claimLeasesDueMessagesOfTheChannelOnly() {
+        NotificationOutbox due = save(sms(), NotificationOutbox.Status.PENDING, Instant.now().minusSeconds(1));
+        save(sms(), NotificationOutbox.Status.PENDING, Instant.now().plusSeconds(600));
+        save(email(), NotificationOutbox.Status.PENDING, Instant.now().minusSeconds(1));
+
+        List<NotificationOutbox> claimed = service.claim(NotificationOutbox.Channel.SMS, 10);
+
+        assertThat(claimed).extracting(NotificationOutbox::getId).containsExactly(due.getId());
+        NotificationOutbox leased = reload(due);
+        assertThat(leased.getStatus()).isEqualTo(NotificationOutbox.Status.PROCESSING);
+        assertThat(leased.getNextAttemptAt()).isCloseTo(Instant.now().plusMillis(LEASE_MS), within(5, ChronoUnit.SECONDS));
+        // Bail en cours : le message n'est pas réservé une seconde fois
+        assertThat(service.claim(NotificationOutbox.Channel.SMS, 10)).isEmpty();
+    }
+
+    @Test
+    void expiredLeaseIsClaimedAgain() {
+        NotificationOutbox abandoned = save(sms(), NotificationOutbox.Status.PROCESSING, Instant.now().minusSeconds(1));
+
+        assertThat(service.claim(NotificationOutbox.Channel.SMS, 10))
+            .extracting(NotificationOutbox::getId).containsExactly(abandoned.getId());
+    }
+
+    @Test
+    void deliveredMessageIsMarkedSent() {
+        save(sms(), NotificationOutbox.Status.PENDING, Instant.now().minusSeconds(1));
+
+        List<NotificationOutbox> claimed = service.claim(NotificationOutbox.Channel.SMS, 10);
+        service.deliver(NotificationOutbox.Channel.SMS, claimed);
+
+        NotificationOutbox sent = reload(claimed.get(0));
+        assertThat(sent.getStatus()).isEqualTo(NotificationOutbox.Status.SENT);
+        assertThat(sent.getSentAt()).isNotNull();
+        assertThat(sent.getAttempts()).isZero();
+        assertThat(sent.getLastError()).isNull();
+    }
+
+    @Test
+    void failuresAreRetriedWithDoubledBackoffThenDead() {
+        doThrow(new IllegalStateException("passerelle SMS indisponible")).when(smsService).sendSms(anyString(), anyString());
+        NotificationOutbox message = save(sms(), NotificationOutbox.Status.PENDING, Instant.now().minusSeconds(1));
+
+        // Délais de 1 s, 2 s puis 3 s (plafond max-backoff-ms au lieu de 4 s)
+        long[] expectedDelays = { BACKOFF_MS, 2 * BACKOFF_MS, 3 * BACKOFF_MS };
+        for (int attempt = 1; attempt <= expectedDelays.length; attempt++) {
+            service.deliver(NotificationOutbox.Channel.SMS, claimNow(message));
+
+            NotificationOutbox retried = reload(message);
+            assertThat(retried.getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+            assertThat(retried.getAttempts()).isEqualTo(attempt);
+            assertThat(retried.getLastError()).contains("passerelle SMS indisponible");
+            assertThat(retried.getNextAttemptAt())
+                .isCloseTo(Instant.now().plusMillis(expectedDelays[attempt - 1]), within(500, ChronoUnit.MILLIS));
+            // Pas encore dû : non réservé avant l'échéance
+            assertThat(service.claim(NotificationOutbox.Channel.SMS, 10)).isEmpty();
+        }
+
+        service.deliver(NotificationOutbox.Channel.SMS, claimNow(message));
+
+        NotificationOutbox dead = reload(message);
+        assertThat(dead.getStatus()).isEqualTo(NotificationOutbox.Status.DEAD);
+        assertThat(dead.getAttempts()).isEqualTo(4);
+        dead.setNextAttemptAt(Instant.now().minusSeconds(1));
+        outboxRepository.save(dead);
+        assertThat(service.claim(NotificationOutbox.Channel.SMS, 10)).isEmpty();
+    }
+
+    @Test
+    void emailBatchRecordsEachMessageOutcome() {
+        NotificationOutbox first = save(email(), NotificationOutbox.Status.PENDING, Instant.now().minusSeconds(1));
+        NotificationOutbox second = save(email(), NotificationOutbox.Status.PENDING, Instant.now().minusSeconds(1));
+        when(emailService.deliverBatch(anyList()))
+            .thenReturn(Arrays.asList(null, new MessagingException("boîte pleine")));
+
+        service.deliver(NotificationOutbox.Channel.EMAIL, service.claim(NotificationOutbox.Channel.EMAIL, 10));
+
+        assertThat(reload(first).getStatus()).isEqualTo(NotificationOutbox.Status.SENT);
+        NotificationOutbox failed = reload(second);
+        assertThat(failed.getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+    }
+
+    // Ramène l'échéance du message à maintenant puis le réserve
+    private List<NotificationOutbox> claimNow(NotificationOutbox message) {
+        NotificationOutbox current = reload(message);
+        current.setNextAttemptAt(Instant.now().minusSeconds(1));
+        outboxRepository.save(current);
+        List<NotificationOutbox> claimed = service.claim(NotificationOutbox.Channel.SMS, 10);
+        assertThat(claimed).extracting(NotificationOutbox::getId).containsExactly(message.getId());
+        return claimed;
+    }
+
+    private NotificationOutbox save(NotificationOutbox message, NotificationOutbox.Status status, Instant nextAttemptAt) {
+        message.setStatus(status);
+        message.setNextAttemptAt(nextAttemptAt);
+        return outboxRepository.save(message);
+    }
+
+    private NotificationOutbox reload(NotificationOutbox message) {
+        return outboxRepository.findById(message.getId()).orElseThrow();
+    }
+
+    private static NotificationOutbox sms() {
+        return new NotificationOutbox(NotificationOutbox.Channel.SMS, "+33600000000", null, "Votre code: 123456");
+    }
+
+    private static NotificationOutbox email() {
+        return new NotificationOutbox(NotificationOutbox.Channel.EMAIL, "assure@example.com", "Code", "<p>123456</p>");
+    }
+}
@@ -0,0 +1,85 @@
+package com.assurance.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendu des notifications d'un code de validation (email, SMS, in-app) : modèles précompilés
+ * de NotificationTemplates contre l'ancien code (concaténations, String.format et
+ * DateTimeFormatter.ofPattern à chaque date).
+ *
+ * Lancement : mvn test-compile puis exécuter main() avec le classpath de test, par exemple
+ * mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.assurance.service.NotificationTemplatesBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationTemplatesBenchmark {
+    private static final String REPORT_TITLE = "Rapport d'expertise sinistre 2024-0815";
+    private static final String CODE = "A7K9Q2";
+
+    private NotificationTemplates templates;
+    private LocalDateTime expiresAt;
+
+    @Setup
+    public void setUp() {
+        templates = new NotificationTemplates("fr-FR", "dd/MM/yyyy HH:mm");
+        expiresAt = LocalDateTime.of(2024, 8, 15, 18, 30);
+    }
+
+    @Benchmark
+    public void contextRender(Blackhole blackhole) {
+        NotificationTemplates.Context context = templates.context()
+            .with("reportTitle", REPORT_TITLE)
+            .with("code", CODE)
+            .with("expiresAt", expiresAt);
+        blackhole.consume(context.render("validation-code.email.subject"));
+        blackhole.consume(context.render("validation-code.email.body"));
+        blackhole.consume(context.render("validation-code.sms"));
+        blackhole.consume(context.render("validation-code.in-app.title"));
+        blackhole.consume(context.render("validation-code.in-app.message"));
+        blackhole.consume(context.get("expiresAt"));
+    }
+
+    // Reprise du rendu de NotificationService.sendValidationCode avant les modèles
+    @Benchmark
+    public void stringFormat(Blackhole blackhole) {
+        blackhole.consume("🔐 Code de validation pour " + REPORT_TITLE);
+        blackhole.consume(String.format(
+            "Votre demande de rapport pour \"%s\" a été approuvée.\n" +
+            "Code de validation: %s\n" +
+            "Expire le: %s\n" +
+            "Utilisez ce code pour télécharger le rapport.",
+            REPORT_TITLE, CODE, expiresAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
+        ));
+        blackhole.consume(String.format(
+            "Code de validation: %s pour %s. Expire le %s.",
+            CODE, REPORT_TITLE, expiresAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
+        ));
+        blackhole.consume("Code de validation généré");
+        blackhole.consume("Votre code " + CODE + " pour \"" + REPORT_TITLE + "\" est prêt");
+        blackhole.consume(expiresAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(NotificationTemplatesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
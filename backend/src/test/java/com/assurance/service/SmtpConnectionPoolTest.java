@@ -0,0 +1,135 @@
+package com.assurance.service;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Envoi par lots de EmailService / SmtpConnectionPool contre un serveur SMTP GreenMail local
+ */
+class SmtpConnectionPoolTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+        .withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());
+
+    private SimpleMeterRegistry meterRegistry;
+    private JavaMailSenderImpl mailSender;
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        mailSender.getJavaMailProperties().put("mail.smtp.from", "noreply@assurance.test");
+
+        meterRegistry = new SimpleMeterRegistry();
+        // Pas de limite de débit : les tests mesurent le serveur local
+        SmtpConnectionPool pool = new SmtpConnectionPool(mailSender, meterRegistry, 2, 0);
+        ReflectionTestUtils.setField(pool, "maxMessagesPerConnection", 1000);
+        ReflectionTestUtils.setField(pool, "idleTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(pool, "acquireTimeoutMs", 5_000L);
+
+        emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+        ReflectionTestUtils.setField(emailService, "connectionPool", pool);
+    }
+
+    @Test
+    void deliversBatchOverOneConnection() {
+        List<MessagingException> results = emailService.deliverBatch(emails(10, 0));
+
+        assertThat(results).hasSize(10).containsOnlyNulls();
+        assertThat(greenMail.getReceivedMessages()).hasSize(10);
+        assertThat(connectionsOpened()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectedRecipientFailsOnlyItsMessage() {
+        List<EmailService.OutgoingEmail> emails = new ArrayList<>(emails(2, 0));
+        // Partie locale refusée par le serveur (501 sur RCPT TO), adresse acceptée côté client
+        emails.add(1, new EmailService.OutgoingEmail("\"a>b\"@assurance.test", "Refusé", "<p>refusé</p>"));
+
+        List<MessagingException> results = emailService.deliverBatch(emails);
+
+        assertThat(results.get(0)).isNull();
+        assertThat(results.get(1)).isInstanceOf(SendFailedException.class);
+        assertThat(results.get(2)).isNull();
+        assertThat(greenMail.getReceivedMessages()).hasSize(2);
+        // La connexion reste utilisable après le refus
+        assertThat(connectionsOpened()).isEqualTo(1);
+    }
+
+    @Test
+    void reconnectsAfterDroppedConnection() {
+        assertThat(emailService.deliverBatch(emails(3, 0))).containsOnlyNulls();
+
+        // Redémarrage du serveur : la connexion gardée dans le pool est coupée
+        greenMail.stop();
+        greenMail.start();
+
+        assertThat(emailService.deliverBatch(emails(3, 3))).containsOnlyNulls();
+        assertThat(greenMail.getReceivedMessages()).hasSize(3);
+        assertThat(connectionsOpened()).isEqualTo(2);
+    }
+
+    @Test
+    void measuresThroughputAgainstOneConnectionPerMessage() throws Exception {
+        int count = 200;
+        int batchSize = 20;
+
+        long start = System.nanoTime();
+        for (int from = 0; from < count; from += batchSize) {
+            assertThat(emailService.deliverBatch(emails(batchSize, from))).containsOnlyNulls();
+        }
+        long pooledNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            helper.setTo("direct" + i + "@assurance.test");
+            helper.setSubject("Direct " + i);
+            helper.setText("<p>Message " + i + "</p>", true);
+            mailSender.send(message);
+        }
+        long directNanos = System.nanoTime() - start;
+
+        System.out.printf("SMTP GreenMail, %d messages : pool %.0f msg/s (%d connexion(s)), JavaMailSender.send %.0f msg/s%n",
+            count, rate(count, pooledNanos), connectionsOpened(), rate(count, directNanos));
+        assertThat(greenMail.getReceivedMessages()).hasSize(2 * count);
+        assertThat(connectionsOpened()).isEqualTo(1);
+    }
+
+    private static List<EmailService.OutgoingEmail> emails(int count, int from) {
+        List<EmailService.OutgoingEmail> emails = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            emails.add(new EmailService.OutgoingEmail("user" + i + "@assurance.test", "Message " + i, "<p>Message " + i + "</p>"));
+        }
+        return emails;
+    }
+
+    private long connectionsOpened() {
+        return (long) meterRegistry.get("mail.smtp.connections.opened").counter().count();
+    }
+
+    private static double rate(int count, long nanos) {
+        return count / (nanos / 1_000_000_000.0);
+    }
+}